@@ -8,6 +8,9 @@ import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.queue.ChallengeSender;
 import com.secondthorn.solitaire.pyramid.service.repository.BoardChallengeRepository;
 import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
+import com.secondthorn.solitaire.pyramid.service.solver.QuickBoardChallengeSolver;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,28 +29,41 @@ import java.util.List;
 public class BoardChallengeController extends ChallengeController {
     private BoardChallengeRepository repository;
     private ChallengeSender sender;
+    private int quickSolverBeamWidth;
 
-    public BoardChallengeController(BoardChallengeRepository repository, ChallengeSender sender) {
+    public BoardChallengeController(
+            BoardChallengeRepository repository,
+            ChallengeSender sender,
+            @Value("${pyramid-solitaire.quick-solver.beam-width:1024}") int quickSolverBeamWidth) {
         this.repository = repository;
         this.sender = sender;
+        this.quickSolverBeamWidth = quickSolverBeamWidth;
     }
 
     /**
-     * Each Board Challenge requires a valid deck of cards.
+     * Each Board Challenge requires a valid deck of cards, and optionally a
+     * position in the middle of the game to solve from.
      */
     class BoardChallengeParameters implements ChallengeParameters {
         private String deckString;
+        private Position position;
 
-        BoardChallengeParameters(String deckString) {
+        BoardChallengeParameters(String deckString, Position position) {
             this.deckString = deckString.trim();
+            this.position = position;
         }
 
         String getDeckString() {
             return deckString;
         }
 
+        Position getPosition() {
+            return position;
+        }
+
         public void validate() throws InvalidParameterException {
             Deck.validateDeckString(deckString);
+            validatePosition(deckString, position);
         }
     }
 
@@ -55,39 +71,68 @@ public class BoardChallengeController extends ChallengeController {
      * Retrieve a Board Challenge's solution if it exists.
      */
     @GetMapping("/pyramid-solitaire/solver/board")
-    public ResponseEntity<List<Solution>> getBoardChallenge(@RequestParam(value = "deck") String deckString) {
-        BoardChallengeParameters params = new BoardChallengeParameters(deckString);
+    public ResponseEntity<List<Solution>> getBoardChallenge(
+            @RequestParam(value = "deck") String deckString,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount) {
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        BoardChallengeParameters params = new BoardChallengeParameters(deckString, position);
         return getChallengeSolutions(params);
     }
 
     /**
      * Post a new Board Challenge to be solved.
      * It'll just return the answer if it's already been solved, otherwise it
-     * will solve the challenge and return the solution.
+     * will solve the challenge and return the solution.  While the best
+     * solution is being worked on, the response includes a quick solution
+     * that may take more steps, if one is found.
      */
     @PostMapping("/pyramid-solitaire/solver/board")
     public ResponseEntity<JsonNode> postBoardChallenge(
             @RequestParam(value = "deck") String deckString,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount,
             UriComponentsBuilder ucb) {
-        BoardChallengeParameters params = new BoardChallengeParameters(deckString);
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        BoardChallengeParameters params = new BoardChallengeParameters(deckString, position);
         return postChallenge(params, ucb);
     }
 
     protected Challenge queryChallenge(ChallengeParameters params) {
         String deckString = ((BoardChallengeParameters) params).getDeckString();
-        return repository.findByDeckString(deckString);
+        Position position = ((BoardChallengeParameters) params).getPosition();
+        return repository.findByDeckStringAndStartState(deckString, startState(deckString, position));
     }
 
     protected String challengeDescription(ChallengeParameters params) {
         String deckString = ((BoardChallengeParameters) params).getDeckString();
-        return "Board Challenge with deck (" + deckString + ")";
+        Position position = ((BoardChallengeParameters) params).getPosition();
+        return "Board Challenge with deck (" + deckString + ")" + positionDescription(position);
     }
 
-    protected Challenge saveNewChallenge(ChallengeParameters params) {
+    protected List<Solution> provisionalSolutions(ChallengeParameters params) {
+        String deckString = ((BoardChallengeParameters) params).getDeckString();
+        Position position = ((BoardChallengeParameters) params).getPosition();
+        QuickBoardChallengeSolver solver = new QuickBoardChallengeSolver(quickSolverBeamWidth);
+        solver.setStartState(startState(deckString, position));
+        return solver.solve(new Deck(deckString));
+    }
+
+    protected Challenge newChallenge(ChallengeParameters params) {
         String deckString = ((BoardChallengeParameters) params).getDeckString();
-        BoardChallenge challenge = new BoardChallenge(deckString);
-        challenge = repository.save(challenge);
-        sender.send(challenge.getId().toString());
+        Position position = ((BoardChallengeParameters) params).getPosition();
+        return new BoardChallenge(deckString, startState(deckString, position));
+    }
+
+    protected Challenge saveNewChallenge(ChallengeParameters params) {
+        Challenge challenge = repository.save((BoardChallenge) newChallenge(params));
+        sender.send(challenge);
         return challenge;
     }
+
+    protected Challenge saveSolvedChallenge(Challenge challenge) {
+        return repository.save((BoardChallenge) challenge);
+    }
 }
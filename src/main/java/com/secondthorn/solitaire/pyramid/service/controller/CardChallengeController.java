@@ -8,6 +8,7 @@ import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.queue.ChallengeSender;
 import com.secondthorn.solitaire.pyramid.service.repository.CardChallengeRepository;
 import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -39,15 +40,21 @@ public class CardChallengeController extends ChallengeController {
      * example, a goal could be "Remove 4 Aces" and you've removed two already
      * before the start of the game.  Then the actual goal is to remove two
      * more Aces.
+     * <p>
+     * When solving from the middle of a game, the current number is still
+     * the number removed before the start of the game, the cards removed so
+     * far are counted by the solver.
      */
     class CardChallengeParameters implements ChallengeParameters {
         private String deckString;
         private char goalRank;
         private int goalNum;
         private int currentNum;
+        private Position position;
 
-        CardChallengeParameters(String deckString, char goalRank, int goalNum, int currentNum) {
+        CardChallengeParameters(String deckString, char goalRank, int goalNum, int currentNum, Position position) {
             this.deckString = deckString.trim();
+            this.position = position;
             this.goalRank = goalRank;
             this.goalNum = goalNum;
             this.currentNum = currentNum;
@@ -73,6 +80,10 @@ public class CardChallengeController extends ChallengeController {
             return goalNum - currentNum;
         }
 
+        Position getPosition() {
+            return position;
+        }
+
         public void validate() throws InvalidParameterException {
             Deck.validateDeckString(deckString);
             if ("A23456789TJQK".indexOf(goalRank) == -1) {
@@ -85,6 +96,7 @@ public class CardChallengeController extends ChallengeController {
                         "goalNumberToRemove (%d) must be greater than currentNumberRemoved (%d)",
                         goalNum, currentNum));
             }
+            validatePosition(deckString, position);
         }
     }
 
@@ -96,8 +108,13 @@ public class CardChallengeController extends ChallengeController {
             @RequestParam(value = "deck") String deckString,
             @RequestParam(value = "rankToRemove") char goalRank,
             @RequestParam(value = "goalNumberToRemove") int goalNum,
-            @RequestParam(value = "currentNumberRemoved") int currentNum) {
-        CardChallengeParameters params = new CardChallengeParameters(deckString, goalRank, goalNum, currentNum);
+            @RequestParam(value = "currentNumberRemoved") int currentNum,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount) {
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        CardChallengeParameters params = new CardChallengeParameters(deckString, goalRank, goalNum, currentNum,
+                position);
         return getChallengeSolutions(params);
     }
 
@@ -112,8 +129,13 @@ public class CardChallengeController extends ChallengeController {
             @RequestParam(value = "rankToRemove") char goalRank,
             @RequestParam(value = "goalNumberToRemove") int goalNum,
             @RequestParam(value = "currentNumberRemoved") int currentNum,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount,
             UriComponentsBuilder ucb) {
-        CardChallengeParameters params = new CardChallengeParameters(deckString, goalRank, goalNum, currentNum);
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        CardChallengeParameters params = new CardChallengeParameters(deckString, goalRank, goalNum, currentNum,
+                position);
         return postChallenge(params, ucb);
     }
 
@@ -121,7 +143,9 @@ public class CardChallengeController extends ChallengeController {
         String deckString = ((CardChallengeParameters) params).getDeckString();
         char goalRank = ((CardChallengeParameters) params).getGoalRank();
         int numUntilGoal = ((CardChallengeParameters) params).getNumToRemove();
-        return repository.findByDeckStringAndGoalRankAndNumToRemove(deckString, goalRank, numUntilGoal);
+        Position position = ((CardChallengeParameters) params).getPosition();
+        return repository.findByDeckStringAndGoalRankAndNumToRemoveAndStartState(deckString, goalRank, numUntilGoal,
+                startState(deckString, position));
     }
 
     protected String challengeDescription(ChallengeParameters params) {
@@ -129,20 +153,30 @@ public class CardChallengeController extends ChallengeController {
         char goalRank = ((CardChallengeParameters) params).getGoalRank();
         int goalNum = ((CardChallengeParameters) params).getGoalNum();
         int currentNum = ((CardChallengeParameters) params).getCurrentNum();
+        Position position = ((CardChallengeParameters) params).getPosition();
         return "Card Challenge with deck (" + deckString + "), " +
                 "rankToRemove (" + goalRank + "), " +
                 "goalNumberToRemove (" + goalNum + "), " +
-                "currentNumberRemoved (" + currentNum + ")";
+                "currentNumberRemoved (" + currentNum + ")" +
+                positionDescription(position);
     }
 
-    protected Challenge saveNewChallenge(ChallengeParameters params) {
+    protected Challenge newChallenge(ChallengeParameters params) {
         String deckString = ((CardChallengeParameters) params).getDeckString();
         char goalRank = ((CardChallengeParameters) params).getGoalRank();
         int numUntilGoal = ((CardChallengeParameters) params).getNumToRemove();
-        CardChallenge challenge = new CardChallenge(deckString, goalRank, numUntilGoal);
-        challenge = repository.save(challenge);
-        sender.send(challenge.getId().toString());
+        Position position = ((CardChallengeParameters) params).getPosition();
+        return new CardChallenge(deckString, goalRank, numUntilGoal, startState(deckString, position));
+    }
+
+    protected Challenge saveNewChallenge(ChallengeParameters params) {
+        Challenge challenge = repository.save((CardChallenge) newChallenge(params));
+        sender.send(challenge);
         return challenge;
     }
 
+    protected Challenge saveSolvedChallenge(Challenge challenge) {
+        return repository.save((CardChallenge) challenge);
+    }
+
 }
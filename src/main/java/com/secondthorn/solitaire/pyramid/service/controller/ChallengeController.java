@@ -6,14 +6,27 @@ import com.secondthorn.solitaire.pyramid.service.exception.InvalidParameterExcep
 import com.secondthorn.solitaire.pyramid.service.exception.SolutionNotFoundException;
 import com.secondthorn.solitaire.pyramid.service.model.Challenge;
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
+import com.secondthorn.solitaire.pyramid.service.solver.SearchLimit;
+import com.secondthorn.solitaire.pyramid.service.solver.SearchLimitExceededException;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This is the main service controller for solving Pyramid Solitaire games.
@@ -21,8 +34,49 @@ import java.util.Map;
  * Microsoft Solitaire Collection.  Otherwise, the players can just choose if
  * they want to maximize the score (score challenge with goal score of 1290) or
  * clear the board in as few steps as possible (board challenge).
+ * <p>
+ * Every challenge can also be solved from the middle of a game, given the
+ * cards removed so far, the card on top of the stock pile, and how many times
+ * the waste pile has been recycled.  The solutions are saved by the state the
+ * game is at, so they don't get mixed up with solutions from the start.
+ * <p>
+ * Games expected to be quick (see CostPredictor) are solved in well under a
+ * second, so a new one is first solved during the POST request, up to a time
+ * budget and a number of states
+ * (pyramid-solitaire.inline-solver.time-budget-millis and max-states).  If
+ * it's solved in time, it's saved with its solutions and they're returned
+ * right away.  Otherwise it's sent to the worker and the client gets a task
+ * to check on like before.
  */
 public abstract class ChallengeController {
+    // start the state log for solves during a request small, since most of
+    // them only need a few states
+    private static final int INLINE_STATE_LOG_CAPACITY = 1 << 12;
+
+    // how many challenges' provisional solutions are kept for the requests
+    // that post them again while they're being solved
+    private static final int MAX_PROVISIONAL_SOLUTIONS = 1024;
+
+    @Value("${pyramid-solitaire.inline-solver.time-budget-millis:250}")
+    private long inlineTimeBudgetMillis;
+
+    @Value("${pyramid-solitaire.inline-solver.max-states:500000}")
+    private long inlineMaxStates;
+
+    // the challenges being saved by requests in this process right now, by
+    // their descriptions
+    private final ConcurrentMap<String, CompletableFuture<Challenge>> savingChallenges = new ConcurrentHashMap<>();
+
+    // the provisional solutions found when the challenges were first saved,
+    // by challenge ID, for the most recently saved ones
+    private final Map<Long, List<Solution>> provisionalSolutionsById = Collections.synchronizedMap(
+            new LinkedHashMap<Long, List<Solution>>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, List<Solution>> eldest) {
+                    return size() > MAX_PROVISIONAL_SOLUTIONS;
+                }
+            });
+
     /**
      * An interface to wrap input parameters so that functionality common to
      * all subclasses can be declared/defined here.
@@ -53,6 +107,17 @@ public abstract class ChallengeController {
      */
     protected abstract Challenge saveNewChallenge(ChallengeParameters params);
 
+    /**
+     * Create an appropriate Challenge instance given the parameters, without
+     * solving or saving it, so it can be solved during the request.
+     */
+    protected abstract Challenge newChallenge(ChallengeParameters params);
+
+    /**
+     * Save a challenge from newChallenge() that's already solved.
+     */
+    protected abstract Challenge saveSolvedChallenge(Challenge challenge);
+
     // The process to GET challenge solutions, customized per challenge type.
     protected ResponseEntity<List<Solution>> getChallengeSolutions(ChallengeParameters params) {
         params.validate();
@@ -73,18 +138,142 @@ public abstract class ChallengeController {
             return ResponseEntity.ok(mapper.valueToTree(challenge.getSolutions()));
         }
         if (challenge == null) {
-            challenge = saveNewChallenge(params);
+            challenge = saveNewChallengeOnce(params);
+            if (hasSolutions(challenge)) {
+                return ResponseEntity.ok(mapper.valueToTree(challenge.getSolutions()));
+            }
         }
         URI uri = ucb.path("/pyramid-solitaire/solver/tasks/" + challenge.getId()).build().toUri();
-        Map<String, String> postResult = new HashMap<>();
+        Map<String, Object> postResult = new HashMap<>();
         postResult.put("description", "Task created for " + challengeDescription(params));
         postResult.put("task_location", uri.getPath());
+        List<Solution> provisionalSolutions = provisionalSolutionsById.get(challenge.getId());
+        if (provisionalSolutions != null) {
+            postResult.put("provisional_solutions", provisionalSolutions);
+        }
         return ResponseEntity.accepted()
                 .location(uri)
                 .contentType(MediaType.APPLICATION_JSON_UTF8)
                 .body(mapper.valueToTree(postResult));
     }
 
+    // Save a new challenge, solved if it can be solved quickly during the
+    // request and sent to be solved otherwise, unless another request for
+    // the same challenge gets there first, in which case return that one's
+    // challenge so every request shares the same task or solutions.  Requests in
+    // this process wait for the first one to finish instead of all going to
+    // the database, and the unique constraint on each challenge table settles
+    // races with other processes.
+    protected Challenge saveNewChallengeOnce(ChallengeParameters params) {
+        String key = challengeDescription(params);
+        CompletableFuture<Challenge> saving = new CompletableFuture<>();
+        CompletableFuture<Challenge> alreadySaving = savingChallenges.putIfAbsent(key, saving);
+        if (alreadySaving != null) {
+            try {
+                return alreadySaving.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        try {
+            Challenge challenge = queryChallenge(params);
+            if (challenge == null) {
+                try {
+                    Challenge solvedChallenge = solveInline(params);
+                    if (solvedChallenge == null) {
+                        challenge = saveNewChallenge(params);
+                        rememberProvisionalSolutions(challenge, params);
+                    } else {
+                        challenge = saveSolvedChallenge(solvedChallenge);
+                    }
+                } catch (DataIntegrityViolationException e) {
+                    challenge = queryChallenge(params);
+                    if (challenge == null) {
+                        throw e;
+                    }
+                }
+            }
+            saving.complete(challenge);
+            return challenge;
+        } catch (Throwable e) {
+            // even an Error has to reach the requests waiting on this one,
+            // or they'd wait forever
+            saving.completeExceptionally(e);
+            throw e;
+        } finally {
+            savingChallenges.remove(key, saving);
+        }
+    }
+
+    // Return what another request's save failed with, to throw from this one.
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return e;
+    }
+
+    // Solve a new challenge within the limits for solving during a request,
+    // and return it, or return null if it isn't solved in time.  Challenges that aren't expected to
+    // be quick aren't tried, since a game from the start takes seconds and
+    // the time would only hold up the response.  A challenge with no
+    // solutions is left to the worker so it's saved the same way as before.
+    private Challenge solveInline(ChallengeParameters params) {
+        if ((inlineTimeBudgetMillis <= 0) || (inlineMaxStates <= 0)) {
+            return null;
+        }
+        Challenge challenge = newChallenge(params);
+        if (!challenge.isQuickToSolve()) {
+            return null;
+        }
+        SolverContext context = new SolverContext(INLINE_STATE_LOG_CAPACITY);
+        context.setSearchLimit(new SearchLimit(inlineMaxStates, inlineTimeBudgetMillis));
+        try {
+            challenge.solve(context);
+        } catch (SearchLimitExceededException e) {
+            return null;
+        }
+        return hasSolutions(challenge) ? challenge : null;
+    }
+
+    // Return solutions found quickly to show while the task finds the best
+    // ones, which may be worse than the best, or an empty list if the
+    // challenge type doesn't have a quick solver.
+    protected List<Solution> provisionalSolutions(ChallengeParameters params) {
+        return Collections.emptyList();
+    }
+
+    // Find the provisional solutions for a challenge that was just sent to
+    // be solved, once, and keep them for every request that posts it while
+    // it's being solved.  Ones that were saved by another process, or too
+    // long ago, don't have any.
+    private void rememberProvisionalSolutions(Challenge challenge, ChallengeParameters params) {
+        List<Solution> provisionalSolutions = provisionalSolutions(params);
+        if (!provisionalSolutions.isEmpty()) {
+            provisionalSolutionsById.put(challenge.getId(), provisionalSolutions);
+        }
+    }
+
+    // Check the position is valid for the deck, which must already be valid.
+    protected void validatePosition(String deckString, Position position) {
+        position.validate(new Deck(deckString));
+    }
+
+    // Return the state to solve the game from for the deck and position.
+    protected long startState(String deckString, Position position) {
+        return position.toState(new Deck(deckString));
+    }
+
+    // Describe the position for challenge descriptions, or nothing if it's
+    // the start of the game.
+    protected String positionDescription(Position position) {
+        return position.isInitial() ? "" : ", " + position;
+    }
+
     protected boolean hasSolutions(Challenge challenge) {
         return (challenge != null) && (challenge.getSolutions() != null) && (challenge.getSolutions().size() > 0);
     }
@@ -0,0 +1,97 @@
+package com.secondthorn.solitaire.pyramid.service.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secondthorn.solitaire.pyramid.service.exception.HintUnavailableException;
+import com.secondthorn.solitaire.pyramid.service.exception.SolutionNotFoundException;
+import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.DistanceTable;
+import com.secondthorn.solitaire.pyramid.service.solver.DistanceTableNotReadyException;
+import com.secondthorn.solitaire.pyramid.service.solver.DistanceTableStore;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
+import com.secondthorn.solitaire.pyramid.service.solver.SearchLimitExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A Controller for giving the best next move to clear the board from a
+ * position in the middle of a game.  The answer comes from the deck's
+ * DistanceTable, so after the first hint for a deck the rest don't need
+ * to solve anything.  The table is built in the background, never on the
+ * request's thread, and until it's ready the hint is pending (202).  A deck
+ * whose table can't be built within the limits
+ * (pyramid-solitaire.distance-tables.max-states and time-budget-seconds), or
+ * can't be built yet because too many decks are waiting, gets a 503.
+ */
+@Profile("challenge_sender")
+@RestController
+public class HintController {
+    private DistanceTableStore store;
+
+    public HintController(
+            @Value("${pyramid-solitaire.distance-tables.directory:${java.io.tmpdir}/pyramid-solitaire-distances}")
+                    String directory,
+            @Value("${pyramid-solitaire.distance-tables.max-open:8}") int maxOpenTables,
+            @Value("${pyramid-solitaire.distance-tables.max-states:20000000}") long maxStates,
+            @Value("${pyramid-solitaire.distance-tables.time-budget-seconds:600}") long timeBudgetSeconds,
+            @Value("${pyramid-solitaire.distance-tables.max-queued-builds:16}") int maxQueuedBuilds) {
+        this.store = new DistanceTableStore(Paths.get(directory), maxOpenTables, maxStates,
+                timeBudgetSeconds * 1000, maxQueuedBuilds);
+    }
+
+    /**
+     * Return the next step to take to clear the board in as few steps as
+     * possible, and how many steps it takes.
+     */
+    @GetMapping("/pyramid-solitaire/solver/hint")
+    public ResponseEntity<JsonNode> getHint(
+            @RequestParam(value = "deck") String deckString,
+            @RequestParam(value = "removedCards", defaultValue = "") String removedCards,
+            @RequestParam(value = "stockCard", defaultValue = "") String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount) {
+        deckString = deckString.trim();
+        Deck.validateDeckString(deckString);
+        Deck deck = new Deck(deckString);
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        position.validate(deck);
+        long state = position.toState(deck);
+        Map<String, Object> hint;
+        try {
+            hint = store.withTable(deck, table -> hint(table, state));
+        } catch (DistanceTableNotReadyException e) {
+            Map<String, String> pending = new HashMap<>();
+            pending.put("status", "pending");
+            pending.put("description", "The hints for the deck are being worked out, try again in a minute.");
+            return ResponseEntity.accepted().body(new ObjectMapper().valueToTree(pending));
+        } catch (SearchLimitExceededException e) {
+            throw new HintUnavailableException("There are too many positions in the deck to give hints for.");
+        } catch (RejectedExecutionException e) {
+            throw new HintUnavailableException("Too many decks' hints are being worked out, try again later.");
+        }
+        if (hint == null) {
+            throw new SolutionNotFoundException("There is no way to clear the board from " + position + ".");
+        }
+        return ResponseEntity.ok(new ObjectMapper().valueToTree(hint));
+    }
+
+    // Return the hint for the state, or null if the board can't be cleared.
+    private static Map<String, Object> hint(DistanceTable table, long state) {
+        int distance = table.distance(state);
+        if (distance == -1) {
+            return null;
+        }
+        Map<String, Object> hint = new HashMap<>();
+        hint.put("steps_to_clear_board", distance);
+        hint.put("next_step", table.nextAction(state));
+        return hint;
+    }
+}
@@ -8,6 +8,7 @@ import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.queue.ChallengeSender;
 import com.secondthorn.solitaire.pyramid.service.repository.ScoreChallengeRepository;
 import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
 import com.secondthorn.solitaire.pyramid.service.solver.ScoreChallengeSolver;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
@@ -43,15 +44,21 @@ public class ScoreChallengeController extends ChallengeController {
      * If the goal and current scores are blank they default to trying to just
      * maximize the score overall (current score 0 and goal score 1290 which is
      * the maximum possible).
+     * <p>
+     * When solving from the middle of a game, the current score is still the
+     * score before the start of the game, the points for the cards removed
+     * so far are counted by the solver.
      */
     class ScoreChallengeParameters implements ChallengeParameters {
         private String deckString;
         private Integer goalScore;
         private Integer currentScore;
         private int pointsUntilGoal;
+        private Position position;
 
-        ScoreChallengeParameters(String deckString, Integer goalScore, Integer currentScore) {
+        ScoreChallengeParameters(String deckString, Integer goalScore, Integer currentScore, Position position) {
             this.deckString = deckString.trim();
+            this.position = position;
             this.goalScore = goalScore == null ? ScoreChallengeSolver.MAX_POSSIBLE_SCORE : goalScore;
             this.currentScore = currentScore == null ? 0 : currentScore;
             this.pointsUntilGoal = ceilingMultipleOfFive(this.goalScore - this.currentScore);
@@ -73,6 +80,10 @@ public class ScoreChallengeController extends ChallengeController {
             return pointsUntilGoal;
         }
 
+        Position getPosition() {
+            return position;
+        }
+
         // Return the nearest multiple of five that is equal to or greater than
         // num, because the score is always a multiple of five from 0 to 1290.
         private int ceilingMultipleOfFive(int num) {
@@ -87,6 +98,7 @@ public class ScoreChallengeController extends ChallengeController {
                         "goalScore (%d) must be greater than currentScore (%d)",
                         goalScore, currentScore));
             }
+            validatePosition(deckString, position);
         }
     }
 
@@ -97,8 +109,12 @@ public class ScoreChallengeController extends ChallengeController {
     public ResponseEntity<List<Solution>> getScoreChallenge(
             @RequestParam(value = "deck") String deckString,
             @RequestParam(value = "goalScore", required = false) Integer goalScore,
-            @RequestParam(value = "currentScore", required = false) Integer currentScore) {
-        ScoreChallengeParameters params = new ScoreChallengeParameters(deckString, goalScore, currentScore);
+            @RequestParam(value = "currentScore", required = false) Integer currentScore,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount) {
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        ScoreChallengeParameters params = new ScoreChallengeParameters(deckString, goalScore, currentScore, position);
         return getChallengeSolutions(params);
     }
 
@@ -112,32 +128,48 @@ public class ScoreChallengeController extends ChallengeController {
             @RequestParam(value = "deck") String deckString,
             @RequestParam(value = "goalScore", required = false) Integer goalScore,
             @RequestParam(value = "currentScore", required = false) Integer currentScore,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount,
             UriComponentsBuilder ucb) {
-        ScoreChallengeParameters params = new ScoreChallengeParameters(deckString, goalScore, currentScore);
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        ScoreChallengeParameters params = new ScoreChallengeParameters(deckString, goalScore, currentScore, position);
         return postChallenge(params, ucb);
     }
 
     protected Challenge queryChallenge(ChallengeParameters params) {
         String deckString = ((ScoreChallengeParameters) params).getDeckString();
         int pointsUntilGoal = ((ScoreChallengeParameters) params).getPointsUntilGoal();
-        return repository.findByDeckStringAndNumPoints(deckString, pointsUntilGoal);
+        Position position = ((ScoreChallengeParameters) params).getPosition();
+        return repository.findByDeckStringAndNumPointsAndStartState(deckString, pointsUntilGoal,
+                startState(deckString, position));
     }
 
     protected String challengeDescription(ChallengeParameters params) {
         String deckString = ((ScoreChallengeParameters) params).getDeckString();
         Integer goalScore = ((ScoreChallengeParameters) params).getGoalScore();
         Integer currentScore = ((ScoreChallengeParameters) params).getCurrentScore();
+        Position position = ((ScoreChallengeParameters) params).getPosition();
         return "Score Challenge with deck (" + deckString + "), " +
                 "goalScore (" + goalScore + "), " +
-                "currentScore (" + currentScore + ")";
+                "currentScore (" + currentScore + ")" +
+                positionDescription(position);
     }
 
-    protected Challenge saveNewChallenge(ChallengeParameters params) {
+    protected Challenge newChallenge(ChallengeParameters params) {
         String deckString = ((ScoreChallengeParameters) params).getDeckString();
         int pointsUntilGoal = ((ScoreChallengeParameters) params).getPointsUntilGoal();
-        ScoreChallenge challenge = new ScoreChallenge(deckString, pointsUntilGoal);
-        challenge = repository.save(challenge);
-        sender.send(challenge.getId().toString());
+        Position position = ((ScoreChallengeParameters) params).getPosition();
+        return new ScoreChallenge(deckString, pointsUntilGoal, startState(deckString, position));
+    }
+
+    protected Challenge saveNewChallenge(ChallengeParameters params) {
+        Challenge challenge = repository.save((ScoreChallenge) newChallenge(params));
+        sender.send(challenge);
         return challenge;
     }
+
+    protected Challenge saveSolvedChallenge(Challenge challenge) {
+        return repository.save((ScoreChallenge) challenge);
+    }
 }
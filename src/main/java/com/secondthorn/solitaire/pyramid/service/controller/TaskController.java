@@ -6,6 +6,7 @@ import com.secondthorn.solitaire.pyramid.service.exception.TaskNotFoundException
 import com.secondthorn.solitaire.pyramid.service.model.Challenge;
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,6 +25,7 @@ import java.util.Optional;
  * The user gets redirected to check on the challenge's solving status here
  * to see if it has been solved yet, and if so they get the solution back.
  */
+@Profile("challenge_sender")
 @RestController
 public class TaskController {
     ChallengeRepository repository;
@@ -35,7 +37,8 @@ public class TaskController {
     /**
      * Check on a challenge to see if it's been solved yet.  Either the
      * challenge doesn't exist (404), not solved yet (200 with status pending
-     * JSON, or 500 if there's a problem), or solved (303 with a link to where
+     * JSON, or 500 if there's a problem), given up on by the workers (200
+     * with status failed JSON and why), or solved (303 with a link to where
      * to get the solution).
      */
     @GetMapping("/pyramid-solitaire/solver/tasks/{id}")
@@ -54,7 +57,12 @@ public class TaskController {
         }
         Map<String, String> task = new HashMap<>();
         task.put("task_id", challenge.getId().toString());
-        task.put("status", "pending");
+        if (challenge.getFailure() != null) {
+            task.put("status", "failed");
+            task.put("reason", challenge.getFailure());
+        } else {
+            task.put("status", "pending");
+        }
         JsonNode node = new ObjectMapper().valueToTree(task);
         return ResponseEntity.ok(node);
     }
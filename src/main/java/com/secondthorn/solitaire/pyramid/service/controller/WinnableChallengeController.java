@@ -0,0 +1,124 @@
+package com.secondthorn.solitaire.pyramid.service.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secondthorn.solitaire.pyramid.service.exception.InvalidParameterException;
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.model.WinnableChallenge;
+import com.secondthorn.solitaire.pyramid.service.repository.WinnableChallengeRepository;
+import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * A Controller for asking if a deal can be won (if the board can be cleared)
+ * without waiting for the fewest steps to do it.  The answer is quick enough
+ * to work out during the request, so unlike the other challenges it isn't
+ * sent to the worker.
+ */
+@Profile("challenge_sender")
+@RestController
+public class WinnableChallengeController extends ChallengeController {
+    private WinnableChallengeRepository repository;
+
+    public WinnableChallengeController(WinnableChallengeRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Each Winnable Challenge requires a valid deck of cards, and optionally
+     * a position in the middle of the game to solve from.
+     */
+    class WinnableChallengeParameters implements ChallengeParameters {
+        private String deckString;
+        private Position position;
+
+        WinnableChallengeParameters(String deckString, Position position) {
+            this.deckString = deckString.trim();
+            this.position = position;
+        }
+
+        String getDeckString() {
+            return deckString;
+        }
+
+        Position getPosition() {
+            return position;
+        }
+
+        public void validate() throws InvalidParameterException {
+            Deck.validateDeckString(deckString);
+            validatePosition(deckString, position);
+        }
+    }
+
+    /**
+     * Retrieve a Winnable Challenge's solution if it exists.
+     */
+    @GetMapping("/pyramid-solitaire/solver/winnable")
+    public ResponseEntity<List<Solution>> getWinnableChallenge(
+            @RequestParam(value = "deck") String deckString,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount) {
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        WinnableChallengeParameters params = new WinnableChallengeParameters(deckString, position);
+        return getChallengeSolutions(params);
+    }
+
+    /**
+     * Post a new Winnable Challenge.  It's solved right away if it hasn't
+     * been already, and the solution is returned.
+     */
+    @PostMapping("/pyramid-solitaire/solver/winnable")
+    public ResponseEntity<JsonNode> postWinnableChallenge(
+            @RequestParam(value = "deck") String deckString,
+            @RequestParam(value = "removedCards", required = false) String removedCards,
+            @RequestParam(value = "stockCard", required = false) String stockCard,
+            @RequestParam(value = "recycleCount", defaultValue = "0") int recycleCount) {
+        Position position = new Position(removedCards, stockCard, recycleCount);
+        WinnableChallengeParameters params = new WinnableChallengeParameters(deckString, position);
+        params.validate();
+        Challenge challenge = queryChallenge(params);
+        if (challenge == null) {
+            challenge = saveNewChallengeOnce(params);
+        }
+        return ResponseEntity.ok(new ObjectMapper().valueToTree(challenge.getSolutions()));
+    }
+
+    protected Challenge queryChallenge(ChallengeParameters params) {
+        String deckString = ((WinnableChallengeParameters) params).getDeckString();
+        Position position = ((WinnableChallengeParameters) params).getPosition();
+        return repository.findByDeckStringAndStartState(deckString, startState(deckString, position));
+    }
+
+    protected String challengeDescription(ChallengeParameters params) {
+        String deckString = ((WinnableChallengeParameters) params).getDeckString();
+        Position position = ((WinnableChallengeParameters) params).getPosition();
+        return "Winnable Challenge with deck (" + deckString + ")" + positionDescription(position);
+    }
+
+    protected Challenge newChallenge(ChallengeParameters params) {
+        String deckString = ((WinnableChallengeParameters) params).getDeckString();
+        Position position = ((WinnableChallengeParameters) params).getPosition();
+        return new WinnableChallenge(deckString, startState(deckString, position));
+    }
+
+    protected Challenge saveNewChallenge(ChallengeParameters params) {
+        Challenge challenge = newChallenge(params);
+        challenge.solve();
+        return saveSolvedChallenge(challenge);
+    }
+
+    protected Challenge saveSolvedChallenge(Challenge challenge) {
+        return repository.save((WinnableChallenge) challenge);
+    }
+}
@@ -0,0 +1,16 @@
+package com.secondthorn.solitaire.pyramid.service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Throw this when there's no hint for a deck because its distance table
+ * can't be built right now, or can't be built within the limits, and we want
+ * to return HTTP status 503 (Service Unavailable).
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class HintUnavailableException extends RuntimeException {
+    public HintUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.secondthorn.solitaire.pyramid.service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Throw this when a challenge can't be sent to be solved because the solver
+ * threads in this process are shutting down, and we want to return HTTP
+ * status 503 (Service Unavailable) so the client tries again later.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SolverBusyException extends RuntimeException {
+    public SolverBusyException(String message) {
+        super(message);
+    }
+}
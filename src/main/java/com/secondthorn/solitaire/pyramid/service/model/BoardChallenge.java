@@ -1,28 +1,41 @@
 package com.secondthorn.solitaire.pyramid.service.model;
 
 import com.secondthorn.solitaire.pyramid.service.solver.BoardChallengeSolver;
+import com.secondthorn.solitaire.pyramid.service.solver.CostPredictor;
 import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import com.secondthorn.solitaire.pyramid.service.solver.State;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 /**
  * The goal of a Board Challenge is to clear the 28 pyramid cards from the
  * "board" (or table, or tableau).  The only required parameter is the deck of
- * cards to play with.
+ * cards to play with, and the game can be solved from the middle instead of
+ * the start.
  */
 @Entity
-@Table(name = "board_challenges")
+@Table(name = "board_challenges", uniqueConstraints = @UniqueConstraint(columnNames = {"deck_string", "start_state"}))
 public class BoardChallenge extends Challenge {
-    @Column(name = "deck_string", unique = true, nullable = false, updatable = false, columnDefinition = "varchar(104)")
+    @Column(name = "deck_string", nullable = false, updatable = false, columnDefinition = "varchar(104)")
     private String deckString;
 
+    @Column(name = "start_state", nullable = false, updatable = false, columnDefinition = "bigint")
+    private Long startState;
+
     protected BoardChallenge() {
     }
 
     public BoardChallenge(String deckString) {
+        this(deckString, State.INITIAL_STATE);
+    }
+
+    public BoardChallenge(String deckString, long startState) {
         this.deckString = deckString;
+        this.startState = startState;
     }
 
     @Override
@@ -31,10 +44,23 @@ public class BoardChallenge extends Challenge {
     }
 
     @Override
-    public void solve() {
+    public long getStartState() {
+        return startState;
+    }
+
+    @Override
+    public void solve(SolverContext context) {
         Deck deck = new Deck(deckString);
         BoardChallengeSolver solver = new BoardChallengeSolver();
+        solver.setStartState(startState);
+        solver.setSolverContext(context);
         setSolutions(solver.solve(deck));
+        setSolverStats(solver.getStats());
+    }
+
+    @Override
+    public boolean isQuickToSolve() {
+        return CostPredictor.isQuickBoardChallenge(new Deck(deckString), startState);
     }
 
     @Override
@@ -44,6 +70,6 @@ public class BoardChallenge extends Challenge {
 
     @Override
     public String getUriQuery() {
-        return "deck=" + deckString;
+        return positionUriQuery() + "deck=" + deckString;
     }
 }
@@ -2,10 +2,13 @@ package com.secondthorn.solitaire.pyramid.service.model;
 
 import com.secondthorn.solitaire.pyramid.service.solver.CardChallengeSolver;
 import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import com.secondthorn.solitaire.pyramid.service.solver.State;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 /**
  * The goal of a Card Challenge is to remove cards of a certain rank.  The goal
@@ -16,7 +19,8 @@ import javax.persistence.Table;
  * re-deals are what is meant by "... in 2 deals."
  */
 @Entity
-@Table(name = "card_challenges")
+@Table(name = "card_challenges",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"deck_string", "goal_rank", "num_to_remove", "start_state"}))
 public class CardChallenge extends Challenge {
     @Column(name = "deck_string", nullable = false, updatable = false, columnDefinition = "varchar(104)")
     private String deckString;
@@ -27,13 +31,21 @@ public class CardChallenge extends Challenge {
     @Column(name = "num_to_remove", nullable = false, updatable = false, columnDefinition = "int")
     private Integer numToRemove;
 
+    @Column(name = "start_state", nullable = false, updatable = false, columnDefinition = "bigint")
+    private Long startState;
+
     protected CardChallenge() {
     }
 
     public CardChallenge(String deckString, Character goalRank, Integer numToRemove) {
+        this(deckString, goalRank, numToRemove, State.INITIAL_STATE);
+    }
+
+    public CardChallenge(String deckString, Character goalRank, Integer numToRemove, long startState) {
         this.deckString = deckString;
         this.goalRank = goalRank;
         this.numToRemove = numToRemove;
+        this.startState = startState;
     }
 
     public Character getGoalRank() {
@@ -50,10 +62,18 @@ public class CardChallenge extends Challenge {
     }
 
     @Override
-    public void solve() {
+    public long getStartState() {
+        return startState;
+    }
+
+    @Override
+    public void solve(SolverContext context) {
         Deck deck = new Deck(deckString);
         CardChallengeSolver solver = new CardChallengeSolver(numToRemove, goalRank);
+        solver.setStartState(startState);
+        solver.setSolverContext(context);
         setSolutions(solver.solve(deck));
+        setSolverStats(solver.getStats());
     }
 
     @Override
@@ -63,7 +83,8 @@ public class CardChallenge extends Challenge {
 
     @Override
     public String getUriQuery() {
-        return "rankToRemove=" + goalRank + "&" +
+        return positionUriQuery() +
+                "rankToRemove=" + goalRank + "&" +
                 "goalNumberToRemove=" + numToRemove + "&" +
                 "currentNumberRemoved=0&" +
                 "deck=" + deckString;
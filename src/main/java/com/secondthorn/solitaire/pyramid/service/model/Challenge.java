@@ -1,6 +1,12 @@
 package com.secondthorn.solitaire.pyramid.service.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.secondthorn.solitaire.pyramid.service.solver.CostPredictor;
+import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.Position;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverStats;
+import com.secondthorn.solitaire.pyramid.service.solver.State;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -13,6 +19,7 @@ import javax.persistence.InheritanceType;
 import javax.persistence.OneToMany;
 import javax.persistence.OrderBy;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.util.List;
 
 /**
@@ -20,7 +27,9 @@ import java.util.List;
  * must be unique across all types of challenges.  The subclasses all have the
  * card deck in common, however, it's not stored here since the uniqueness
  * constraint is different (the deck must be unique for all board challenges
- * but duplicate decks must be allowed for score/card challenges).
+ * but duplicate decks must be allowed for score/card challenges).  The same
+ * goes for the state the game is solved from, which is the initial state
+ * unless the player is in the middle of a game.
  */
 @Entity
 @Table(name = "challenges")
@@ -33,10 +42,32 @@ public abstract class Challenge {
      */
     public abstract String getDeckString();
 
+    /**
+     * The state to solve the game from, see getDeckString() for why it's
+     * defined in the subclasses.
+     */
+    public abstract long getStartState();
+
     /**
      * Calculate (and set) the solutions to the challenge.
      */
-    public abstract void solve();
+    public void solve() {
+        solve(null);
+    }
+
+    /**
+     * Calculate (and set) the solutions to the challenge, reusing the working
+     * memory in the context if it isn't null.
+     */
+    public abstract void solve(SolverContext context);
+
+    /**
+     * Return true if solving the challenge is expected to be quick, so it can
+     * be sent to the queue for quick challenges.
+     */
+    public boolean isQuickToSolve() {
+        return CostPredictor.isQuick(getStartState());
+    }
 
     /**
      * Generate the URI path for the challenge.
@@ -58,12 +89,37 @@ public abstract class Challenge {
     @OrderBy("solution_id")
     protected List<Solution> solutions;
 
+    // when a worker started solving the challenge, in milliseconds since the
+    // epoch, or null if no worker is solving it
+    @JsonIgnore
+    @Column(name = "solving_since")
+    protected Long solvingSince;
+
+    // the worker solving the challenge, or null if no worker is solving it
+    @JsonIgnore
+    @Column(name = "solving_by")
+    protected String solvingBy;
+
+    // why the workers gave up on solving the challenge, or null if they
+    // haven't
+    @JsonIgnore
+    @Column(name = "failure")
+    protected String failure;
+
+    @Transient
+    private SolverStats solverStats;
+
     public Long getId() {
         return id;
     }
 
+    /**
+     * Set the solutions to the challenge, which clears any failure recorded
+     * from an earlier attempt at solving it.
+     */
     public void setSolutions(List<Solution> solutions) {
         this.solutions = solutions;
+        this.failure = null;
         for (Solution solution : solutions) {
             solution.setChallenge(this);
         }
@@ -73,4 +129,38 @@ public abstract class Challenge {
         return solutions;
     }
 
+    /**
+     * Return why the workers gave up on solving the challenge, or null if
+     * they haven't.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Return the counters from solving the challenge, or null if it hasn't
+     * been solved since it was loaded.  They aren't saved with the challenge.
+     */
+    @JsonIgnore
+    public SolverStats getSolverStats() {
+        return solverStats;
+    }
+
+    protected void setSolverStats(SolverStats solverStats) {
+        this.solverStats = solverStats;
+    }
+
+    // Return the URI query parameters for the position the game is solved
+    // from, or an empty String if it's solved from the start.
+    protected String positionUriQuery() {
+        if (getStartState() == State.INITIAL_STATE) {
+            return "";
+        }
+        return Position.fromState(new Deck(getDeckString()), getStartState()).getUriQuery();
+    }
+
 }
@@ -1,18 +1,22 @@
 package com.secondthorn.solitaire.pyramid.service.model;
 
 import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
 import com.secondthorn.solitaire.pyramid.service.solver.ScoreChallengeSolver;
+import com.secondthorn.solitaire.pyramid.service.solver.State;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 /**
  * The goal of a Score Challenge is to reach a certain score.  The maximum
  * score possible is 1290.
  */
 @Entity
-@Table(name = "score_challenges")
+@Table(name = "score_challenges",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"deck_string", "num_points", "start_state"}))
 public class ScoreChallenge extends Challenge {
     @Column(name = "deck_string", nullable = false, updatable = false, columnDefinition = "varchar(104)")
     private String deckString;
@@ -20,12 +24,20 @@ public class ScoreChallenge extends Challenge {
     @Column(name = "num_points", nullable = false, updatable = false, columnDefinition = "int")
     private Integer numPoints;
 
+    @Column(name = "start_state", nullable = false, updatable = false, columnDefinition = "bigint")
+    private Long startState;
+
     protected ScoreChallenge() {
     }
 
     public ScoreChallenge(String deckString, Integer numPoints) {
+        this(deckString, numPoints, State.INITIAL_STATE);
+    }
+
+    public ScoreChallenge(String deckString, Integer numPoints, long startState) {
         this.deckString = deckString;
         this.numPoints = numPoints;
+        this.startState = startState;
     }
 
     @Override
@@ -33,15 +45,23 @@ public class ScoreChallenge extends Challenge {
         return deckString;
     }
 
+    @Override
+    public long getStartState() {
+        return startState;
+    }
+
     public Integer getNumPoints() {
         return numPoints;
     }
 
     @Override
-    public void solve() {
+    public void solve(SolverContext context) {
         Deck deck = new Deck(deckString);
         ScoreChallengeSolver solver = new ScoreChallengeSolver(numPoints);
+        solver.setStartState(startState);
+        solver.setSolverContext(context);
         setSolutions(solver.solve(deck));
+        setSolverStats(solver.getStats());
     }
 
     @Override
@@ -51,6 +71,6 @@ public class ScoreChallenge extends Challenge {
 
     @Override
     public String getUriQuery() {
-        return "goalScore=" + numPoints + "&" + "currentScore=0&" + "deck=" + deckString;
+        return positionUriQuery() + "goalScore=" + numPoints + "&" + "currentScore=0&" + "deck=" + deckString;
     }
 }
@@ -60,6 +60,24 @@ public class Solution {
         }
     }
 
+    /**
+     * Create a solution whose description is already complete, like one
+     * passed along from a solution created somewhere else, so the score and
+     * steps aren't added to the description again.
+     */
+    public static Solution withFullDescription(String description, Integer score, Boolean boardCleared,
+                                               List<Step> steps) {
+        Solution solution = new Solution();
+        solution.description = description;
+        solution.score = score;
+        solution.boardCleared = boardCleared;
+        solution.steps = steps;
+        for (Step step : steps) {
+            step.setSolution(solution);
+        }
+        return solution;
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,69 @@
+package com.secondthorn.solitaire.pyramid.service.model;
+
+import com.secondthorn.solitaire.pyramid.service.solver.Deck;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import com.secondthorn.solitaire.pyramid.service.solver.State;
+import com.secondthorn.solitaire.pyramid.service.solver.WinnableChallengeSolver;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * A Winnable Challenge asks if the 28 pyramid cards can be cleared from the
+ * board at all, not how to do it in the fewest steps.  It's kept apart from
+ * Board Challenges so its quick answer is never mistaken for the best
+ * solution.
+ */
+@Entity
+@Table(name = "winnable_challenges", uniqueConstraints = @UniqueConstraint(columnNames = {"deck_string", "start_state"}))
+public class WinnableChallenge extends Challenge {
+    @Column(name = "deck_string", nullable = false, updatable = false, columnDefinition = "varchar(104)")
+    private String deckString;
+
+    @Column(name = "start_state", nullable = false, updatable = false, columnDefinition = "bigint")
+    private Long startState;
+
+    protected WinnableChallenge() {
+    }
+
+    public WinnableChallenge(String deckString) {
+        this(deckString, State.INITIAL_STATE);
+    }
+
+    public WinnableChallenge(String deckString, long startState) {
+        this.deckString = deckString;
+        this.startState = startState;
+    }
+
+    @Override
+    public String getDeckString() {
+        return this.deckString;
+    }
+
+    @Override
+    public long getStartState() {
+        return startState;
+    }
+
+    @Override
+    public void solve(SolverContext context) {
+        Deck deck = new Deck(deckString);
+        WinnableChallengeSolver solver = new WinnableChallengeSolver();
+        solver.setStartState(startState);
+        solver.setSolverContext(context);
+        setSolutions(solver.solve(deck));
+        setSolverStats(solver.getStats());
+    }
+
+    @Override
+    public String getUriPath() {
+        return "/pyramid-solitaire/solver/winnable";
+    }
+
+    @Override
+    public String getUriQuery() {
+        return positionUriQuery() + "deck=" + deckString;
+    }
+}
@@ -0,0 +1,203 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Gathers the challenges the listener threads receive at about the same time
+ * into batches, so they're loaded with one query instead of one round trip
+ * after another, and likewise gathers the challenges they finish solving at
+ * about the same time to save them in one transaction.  Each thread still
+ * solves its own challenge, so the challenges are solved in parallel, and a
+ * challenge that's solved quickly is saved with the others finishing around
+ * then instead of waiting for the slowest one it was loaded with.  Its
+ * message is only acknowledged once it's saved.
+ * <p>
+ * A batch is closed when it has the maximum number of challenges or when the
+ * first challenge in it has waited long enough for others.  With a maximum
+ * of one challenge, every challenge is loaded and saved on its own.
+ * <p>
+ * Challenges are loaded with findAllById() unless another way to load them
+ * is given, like only loading the ones that aren't solved yet.
+ */
+class ChallengeBatcher {
+    private final ChallengeRepository repository;
+    private final Function<List<Long>, Iterable<Challenge>> loader;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+    private Batch openBatch = null;
+    private SaveBatch openSaveBatch = null;
+
+    ChallengeBatcher(ChallengeRepository repository, int maxBatchSize, long maxWaitMillis) {
+        this(repository, repository::findAllById, maxBatchSize, maxWaitMillis);
+    }
+
+    ChallengeBatcher(ChallengeRepository repository, Function<List<Long>, Iterable<Challenge>> loader,
+                     int maxBatchSize, long maxWaitMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.repository = repository;
+        this.loader = loader;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Add the challenge ID to the open batch, or a new one if it's closed,
+     * and return the batch to load() the challenge from.
+     */
+    synchronized Batch join(Long id) {
+        if ((openBatch == null) || !openBatch.add(id)) {
+            openBatch = new Batch();
+            openBatch.add(id);
+        }
+        return openBatch;
+    }
+
+    /**
+     * Save the solved challenge in one transaction with the others handed in
+     * at about the same time, waiting until it's saved.  Return the number
+     * of challenges saved together, or throw the exception thrown while
+     * saving them.
+     */
+    int save(Challenge challenge) {
+        SaveBatch saveBatch;
+        synchronized (this) {
+            if ((openSaveBatch == null) || !openSaveBatch.add(challenge)) {
+                openSaveBatch = new SaveBatch();
+                openSaveBatch.add(challenge);
+            }
+            saveBatch = openSaveBatch;
+        }
+        return saveBatch.save();
+    }
+
+    /**
+     * The challenges gathered together to be loaded at once.
+     */
+    class Batch {
+        private final long deadline = System.currentTimeMillis() + maxWaitMillis;
+        private final List<Long> ids = new ArrayList<>();
+        private boolean closed = false;
+        private Map<Long, Challenge> challenges = null;
+        private RuntimeException loadError = null;
+
+        // Add the ID unless the batch is closed, return true if it was added.
+        private synchronized boolean add(Long id) {
+            if (closed) {
+                return false;
+            }
+            ids.add(id);
+            if (ids.size() == maxBatchSize) {
+                closed = true;
+                notifyAll();
+            }
+            return true;
+        }
+
+        /**
+         * Wait for the batch to close, then return the challenge with the ID,
+         * or null if it doesn't exist.  The first thread here after the batch
+         * closes loads every challenge in it.
+         */
+        synchronized Challenge load(Long id) {
+            boolean interrupted = false;
+            long waitMillis = deadline - System.currentTimeMillis();
+            while (!closed && (waitMillis > 0)) {
+                try {
+                    wait(waitMillis);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                waitMillis = deadline - System.currentTimeMillis();
+            }
+            closed = true;
+            if ((challenges == null) && (loadError == null)) {
+                try {
+                    challenges = new HashMap<>();
+                    for (Challenge challenge : loader.apply(ids)) {
+                        challenges.put(challenge.getId(), challenge);
+                    }
+                } catch (RuntimeException e) {
+                    loadError = e;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (loadError != null) {
+                throw loadError;
+            }
+            return challenges.get(id);
+        }
+
+        /**
+         * Return the number of challenges in the batch.
+         */
+        synchronized int size() {
+            return ids.size();
+        }
+    }
+
+    // The solved challenges gathered together to be saved at once.
+    private class SaveBatch {
+        private final long deadline = System.currentTimeMillis() + maxWaitMillis;
+        private final List<Challenge> challenges = new ArrayList<>();
+        private boolean closed = false;
+        private boolean saved = false;
+        private RuntimeException saveError = null;
+
+        // Add the challenge unless the batch is closed, return true if it
+        // was added.
+        private synchronized boolean add(Challenge challenge) {
+            if (closed) {
+                return false;
+            }
+            challenges.add(challenge);
+            if (challenges.size() == maxBatchSize) {
+                closed = true;
+                notifyAll();
+            }
+            return true;
+        }
+
+        // Wait for the batch to close, then return the number of challenges
+        // in it once they're saved.  The first thread here after the batch
+        // closes saves every challenge in it.
+        private synchronized int save() {
+            boolean interrupted = false;
+            long waitMillis = deadline - System.currentTimeMillis();
+            while (!closed && (waitMillis > 0)) {
+                try {
+                    wait(waitMillis);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                waitMillis = deadline - System.currentTimeMillis();
+            }
+            closed = true;
+            if (!saved) {
+                try {
+                    repository.saveAll(challenges);
+                } catch (RuntimeException e) {
+                    saveError = e;
+                }
+                saved = true;
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (saveError != null) {
+                throw saveError;
+            }
+            return challenges.size();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+
+/**
+ * Thrown when a challenge can't be solved with the resources the worker is
+ * allowed, like running out of memory at the maximum heap or running past
+ * the timeout, so trying it again would only fail again.  The message says
+ * why, to record with the challenge so the client stops waiting for it.
+ */
+public class ChallengeGivenUpException extends AmqpRejectAndDontRequeueException {
+    public ChallengeGivenUpException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,153 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secondthorn.solitaire.pyramid.service.model.BoardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.CardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.model.ScoreChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.WinnableChallenge;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Everything a worker needs to solve a challenge without looking it up in
+ * the database, sent as JSON on the challenge queues when the workers are
+ * stateless: the challenge's ID to send the result back with, its type, and
+ * its parameters.  Parameters that don't apply to the type are left out.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChallengeMessage {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Long id;
+    private String type;
+    private String deck;
+    private long startState;
+    private Integer numPoints;
+    private Character goalRank;
+    private Integer numToRemove;
+
+    /**
+     * Create the message for a challenge that's been saved.
+     */
+    public static ChallengeMessage of(Challenge challenge) {
+        ChallengeMessage message = new ChallengeMessage();
+        message.id = challenge.getId();
+        message.deck = challenge.getDeckString();
+        message.startState = challenge.getStartState();
+        if (challenge instanceof BoardChallenge) {
+            message.type = "board";
+        } else if (challenge instanceof ScoreChallenge) {
+            message.type = "score";
+            message.numPoints = ((ScoreChallenge) challenge).getNumPoints();
+        } else if (challenge instanceof CardChallenge) {
+            message.type = "card";
+            message.goalRank = ((CardChallenge) challenge).getGoalRank();
+            message.numToRemove = ((CardChallenge) challenge).getNumToRemove();
+        } else if (challenge instanceof WinnableChallenge) {
+            message.type = "winnable";
+        } else {
+            throw new IllegalArgumentException("Unknown challenge type " + challenge.getClass().getSimpleName());
+        }
+        return message;
+    }
+
+    /**
+     * Read a message from its JSON.
+     */
+    public static ChallengeMessage fromJson(String json) {
+        try {
+            return MAPPER.readValue(json, ChallengeMessage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Return the message as JSON.
+     */
+    public String toJson() {
+        try {
+            return MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Create the challenge the message describes, to solve without saving.
+     */
+    public Challenge toChallenge() {
+        switch (type) {
+            case "board":
+                return new BoardChallenge(deck, startState);
+            case "score":
+                return new ScoreChallenge(deck, numPoints, startState);
+            case "card":
+                return new CardChallenge(deck, goalRank, numToRemove, startState);
+            case "winnable":
+                return new WinnableChallenge(deck, startState);
+            default:
+                throw new IllegalArgumentException("Unknown challenge type " + type);
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getDeck() {
+        return deck;
+    }
+
+    public void setDeck(String deck) {
+        this.deck = deck;
+    }
+
+    public long getStartState() {
+        return startState;
+    }
+
+    public void setStartState(long startState) {
+        this.startState = startState;
+    }
+
+    public Integer getNumPoints() {
+        return numPoints;
+    }
+
+    public void setNumPoints(Integer numPoints) {
+        this.numPoints = numPoints;
+    }
+
+    public Character getGoalRank() {
+        return goalRank;
+    }
+
+    public void setGoalRank(Character goalRank) {
+        this.goalRank = goalRank;
+    }
+
+    public Integer getNumToRemove() {
+        return numToRemove;
+    }
+
+    public void setNumToRemove(Integer numToRemove) {
+        this.numToRemove = numToRemove;
+    }
+}
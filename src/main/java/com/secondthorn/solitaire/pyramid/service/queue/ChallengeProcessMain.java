@@ -0,0 +1,68 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.solver.SearchCheckpoint;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * The entry point for a child process started by ChildProcessSolver to solve
+ * one challenge.  It reads the challenge as ChallengeMessage JSON from
+ * standard input, solves it, and writes its solutions as
+ * ChallengeResultMessage JSON to standard output.  It doesn't start Spring,
+ * so it only needs the model and solver classes.
+ * <p>
+ * The arguments, if there are any, are the file to checkpoint the search in
+ * and the number of milliseconds between checkpoints.  The process is
+ * started with -XX:+ExitOnOutOfMemoryError, so if it runs out of memory the
+ * JVM exits with EXIT_OUT_OF_MEMORY right away, from whichever thread ran
+ * out, and the parent tries again with a bigger heap.
+ */
+public class ChallengeProcessMain {
+    /**
+     * The exit status the JVM uses with -XX:+ExitOnOutOfMemoryError when the
+     * solve runs out of memory.
+     */
+    public static final int EXIT_OUT_OF_MEMORY = 3;
+
+    public static void main(String[] args) throws IOException {
+        // anything else printed goes to standard error, so standard output is
+        // just the result
+        PrintStream out = System.out;
+        System.setOut(System.err);
+        System.exit(run(args, System.in, out));
+    }
+
+    /**
+     * Solve the challenge read from in, write the result to out, and return
+     * the exit status.
+     */
+    static int run(String[] args, InputStream in, PrintStream out) throws IOException {
+        ChallengeMessage message = ChallengeMessage.fromJson(readAll(in));
+        Challenge challenge = message.toChallenge();
+        SolverContext context = new SolverContext();
+        if (args.length >= 2) {
+            context.setCheckpoint(new SearchCheckpoint(Paths.get(args[0]), Long.parseLong(args[1])));
+        }
+        challenge.solve(context);
+        out.println(ChallengeResultMessage.of(message.getId(), challenge.getSolutions()).toJson());
+        out.flush();
+        return 0;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int numRead;
+        while ((numRead = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, numRead);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,162 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.model.Step;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The solutions a stateless worker found for a challenge, sent back as JSON
+ * on the results queue for the web service to save.  Each solution's steps
+ * are just the list of actions, since the step numbers follow from the order.
+ * If the worker gave up on the challenge, the result has why instead of
+ * solutions.
+ */
+public class ChallengeResultMessage {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Long id;
+    private List<SolutionResult> solutions = new ArrayList<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String failure;
+
+    /**
+     * One solution to the challenge.
+     */
+    public static class SolutionResult {
+        private String description;
+        private Integer score;
+        private Boolean boardCleared;
+        private List<String> actions = new ArrayList<>();
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public Integer getScore() {
+            return score;
+        }
+
+        public void setScore(Integer score) {
+            this.score = score;
+        }
+
+        public Boolean getBoardCleared() {
+            return boardCleared;
+        }
+
+        public void setBoardCleared(Boolean boardCleared) {
+            this.boardCleared = boardCleared;
+        }
+
+        public List<String> getActions() {
+            return actions;
+        }
+
+        public void setActions(List<String> actions) {
+            this.actions = actions;
+        }
+    }
+
+    /**
+     * Create the result for the challenge with the ID from its solutions.
+     */
+    public static ChallengeResultMessage of(Long id, List<Solution> solutions) {
+        ChallengeResultMessage message = new ChallengeResultMessage();
+        message.id = id;
+        for (Solution solution : solutions) {
+            SolutionResult result = new SolutionResult();
+            result.description = solution.getDescription();
+            result.score = solution.getScore();
+            result.boardCleared = solution.isBoardCleared();
+            for (Step step : solution.getSteps()) {
+                result.actions.add(step.getAction());
+            }
+            message.solutions.add(result);
+        }
+        return message;
+    }
+
+    /**
+     * Create the result for the challenge with the ID that was given up on,
+     * with why.
+     */
+    public static ChallengeResultMessage failed(Long id, String failure) {
+        ChallengeResultMessage message = new ChallengeResultMessage();
+        message.id = id;
+        message.failure = failure;
+        return message;
+    }
+
+    /**
+     * Read a result from its JSON.
+     */
+    public static ChallengeResultMessage fromJson(String json) {
+        try {
+            return MAPPER.readValue(json, ChallengeResultMessage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Return the result as JSON.
+     */
+    public String toJson() {
+        try {
+            return MAPPER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Create new Solutions from the result, to save with the challenge.
+     */
+    public List<Solution> toSolutions() {
+        List<Solution> result = new ArrayList<>();
+        for (SolutionResult solution : solutions) {
+            List<Step> steps = new ArrayList<>();
+            for (String action : solution.actions) {
+                steps.add(new Step(steps.size() + 1, action));
+            }
+            result.add(Solution.withFullDescription(solution.description, solution.score, solution.boardCleared,
+                    steps));
+        }
+        return result;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public List<SolutionResult> getSolutions() {
+        return solutions;
+    }
+
+    public void setSolutions(List<SolutionResult> solutions) {
+        this.solutions = solutions;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+}
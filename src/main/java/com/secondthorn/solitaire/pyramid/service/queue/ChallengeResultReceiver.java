@@ -0,0 +1,67 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A queue listener in the web service that saves the solutions stateless
+ * workers send back (see StatelessChallengeSolver).  Results received by the
+ * listener threads at about the same time are loaded and saved together in
+ * batches (see ChallengeBatcher), up to pyramid-solitaire.results.batch-size
+ * at a time, so the database sees a few big transactions instead of one per
+ * challenge.  A result for a challenge that's already solved, or that no
+ * longer exists, is dropped.  A result saying the worker gave up on the
+ * challenge is saved as the challenge's failure, which its task reports.
+ */
+public class ChallengeResultReceiver {
+    private Logger logger = LoggerFactory.getLogger(ChallengeResultReceiver.class);
+
+    private ChallengeBatcher batcher;
+    private final Set<Long> savingIds = ConcurrentHashMap.newKeySet();
+
+    protected ChallengeResultReceiver() {
+    }
+
+    public ChallengeResultReceiver(ChallengeRepository repository, int batchSize, long batchWaitMillis) {
+        this.batcher = new ChallengeBatcher(repository, repository::findUnsolvedByIds, batchSize, batchWaitMillis);
+    }
+
+    @RabbitListener(queues = "challenge-results", concurrency = "${pyramid-solitaire.results.concurrency:4}")
+    public void receive(String message) {
+        ChallengeResultMessage result = ChallengeResultMessage.fromJson(message);
+        Long id = result.getId();
+        if (!savingIds.add(id)) {
+            logger.info("Challenge " + id + " already has a result being saved, dropping this one.");
+            return;
+        }
+        try {
+            save(id, result);
+        } finally {
+            savingIds.remove(id);
+        }
+    }
+
+    // Save the result along with the others received at about the same
+    // time, if the challenge isn't solved yet.
+    private void save(Long id, ChallengeResultMessage result) {
+        Challenge challenge = batcher.join(id).load(id);
+        if (challenge == null) {
+            logger.info("Challenge " + id + " is already solved or doesn't exist, dropping its result.");
+            return;
+        }
+        if (result.getFailure() != null) {
+            challenge.setFailure(result.getFailure());
+        } else {
+            challenge.setSolutions(result.toSolutions());
+        }
+        int numSaved = batcher.save(challenge);
+        logger.info("Saved the " + ((result.getFailure() != null) ? "failure" : "solutions") + " of challenge " +
+                id + " with " + numSaved + " challenge(s).");
+    }
+}
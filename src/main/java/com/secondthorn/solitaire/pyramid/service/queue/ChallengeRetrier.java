@@ -0,0 +1,16 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+/**
+ * Sends a challenge's ID back to be received again after a delay, for when
+ * another worker is solving it right now.  The message that brought it is
+ * acknowledged, so the listener thread isn't held up in the meantime, and if
+ * the other worker dies the challenge is still solved once its claim times
+ * out.
+ */
+public interface ChallengeRetrier {
+    /**
+     * Send the challenge ID back to the queue for quick challenges or the
+     * main one after the delay.
+     */
+    void retryLater(String challengeIdString, boolean quick);
+}
@@ -0,0 +1,121 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.solver.MemoryBudget;
+import com.secondthorn.solitaire.pyramid.service.solver.SearchCheckpoint;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+
+import java.nio.file.Path;
+
+/**
+ * Solves challenges for the queue listeners, the same way whether the worker
+ * loads them from the database or receives them whole in the message.
+ * <p>
+ * Before solving, each challenge reserves the memory it's expected to need
+ * from a MemoryBudget, so a hard deck doesn't run the others out of heap.  If
+ * the memory isn't free in time, the challenge goes back on the queue for
+ * later or for another worker.  Each listener thread keeps a SolverContext,
+ * so the memory from solving one challenge is reused for the next instead of
+ * being left for the garbage collector.  With a checkpoint directory set,
+ * long searches are saved there every so often (see SearchCheckpoint) and
+ * resumed if the challenge comes back after the worker stops.
+ * <p>
+ * With a ChildProcessSolver, challenges are solved in child processes with
+ * their own heaps instead (all of them, or only the ones not expected to be
+ * quick), so running out of memory doesn't take down the worker.  Those
+ * don't reserve memory from the MemoryBudget, since it's the worker's heap
+ * and they don't use it.
+ */
+class ChallengeRunner {
+    private Logger logger = LoggerFactory.getLogger(ChallengeRunner.class);
+
+    private final MemoryBudget memoryBudget;
+    private final long admissionTimeoutMillis;
+    private final Path checkpointDirectory;
+    private final long checkpointIntervalMillis;
+    private final ChildProcessSolver childProcessSolver;
+
+    private final ThreadLocal<SolverContext> solverContexts = ThreadLocal.withInitial(SolverContext::new);
+
+    ChallengeRunner(MemoryBudget memoryBudget, long admissionTimeoutMillis,
+                    Path checkpointDirectory, long checkpointIntervalMillis,
+                    ChildProcessSolver childProcessSolver) {
+        this.memoryBudget = memoryBudget;
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.checkpointDirectory = checkpointDirectory;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        this.childProcessSolver = childProcessSolver;
+    }
+
+    /**
+     * Return the file to checkpoint the challenge's search in, or null if
+     * checkpoints are turned off.
+     */
+    Path checkpointFile(Long id) {
+        return (checkpointDirectory == null) ? null : checkpointDirectory.resolve("challenge-" + id + ".checkpoint");
+    }
+
+    /**
+     * Solve the challenge with the given ID, expecting it to take as much
+     * memory as the last few of the same type from the same queue.
+     */
+    void solve(Challenge challenge, Long id, String queueDescription) {
+        if ((childProcessSolver != null) && childProcessSolver.isolates(challenge)) {
+            solveInChildProcess(challenge, id);
+            return;
+        }
+        String challengeIdString = id.toString();
+        String kind = challenge.getClass().getSimpleName() + queueDescription;
+        long estimate = memoryBudget.estimate(kind);
+        reserveMemory(challengeIdString, estimate);
+        SolverContext context = solverContexts.get();
+        Path checkpointFile = checkpointFile(id);
+        SearchCheckpoint checkpoint = null;
+        if (checkpointFile != null) {
+            checkpoint = new SearchCheckpoint(checkpointFile, checkpointIntervalMillis);
+            context.setCheckpoint(checkpoint);
+        }
+        try {
+            logger.info("Solving challenge " + challengeIdString + " from " +
+                    challenge.getUriPath() + "?" + challenge.getUriQuery());
+            challenge.solve(context);
+            memoryBudget.record(kind, challenge.getSolverStats());
+        } finally {
+            context.setCheckpoint(null);
+            memoryBudget.release(estimate);
+        }
+        if ((checkpoint != null) && (checkpoint.isResumed() || (checkpoint.getNumWritten() > 0))) {
+            logger.info("Challenge " + challengeIdString + (checkpoint.isResumed() ? " resumed from a checkpoint," : "") +
+                    " wrote " + checkpoint.getNumWritten() + " checkpoint(s).");
+        }
+    }
+
+    private void solveInChildProcess(Challenge challenge, Long id) {
+        logger.info("Solving challenge " + id + " in a child process from " +
+                challenge.getUriPath() + "?" + challenge.getUriQuery());
+        ChallengeMessage message = ChallengeMessage.of(challenge);
+        message.setId(id);
+        ChallengeResultMessage result = childProcessSolver.solve(message, checkpointFile(id), checkpointIntervalMillis);
+        challenge.setSolutions(result.toSolutions());
+    }
+
+    // Wait for the memory to solve a challenge, or put the challenge back on
+    // the queue if it doesn't free up in time.
+    private void reserveMemory(String challengeIdString, long estimate) {
+        boolean reserved;
+        try {
+            reserved = memoryBudget.reserve(estimate, admissionTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reserved = false;
+        }
+        if (!reserved) {
+            logger.info("Not enough memory to solve challenge " + challengeIdString +
+                    " (about " + (estimate >> 20) + " MB), putting it back on the queue.");
+            throw new ImmediateRequeueAmqpException("Not enough memory to solve challenge " + challengeIdString);
+        }
+    }
+}
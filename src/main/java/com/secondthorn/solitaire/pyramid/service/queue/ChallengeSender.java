@@ -1,13 +1,18 @@
 package com.secondthorn.solitaire.pyramid.service.queue;
 
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 
 /**
- * Send challenges to a queue for a worker process to solve.
+ * Send challenges to a queue for a worker process to solve.  Challenges that
+ * are expected to be quick go to their own queue, so they don't wait behind
+ * slow ones.  Each message is the challenge's ID, for the worker to load the
+ * challenge from the database.
  */
 public class ChallengeSender {
     private Logger logger = LoggerFactory.getLogger(ChallengeSender.class);
@@ -16,10 +21,22 @@ public class ChallengeSender {
     private RabbitTemplate template;
 
     @Autowired
+    @Qualifier("challenges")
     private Queue queue;
 
-    public void send(String challengeIdString) {
-        template.convertAndSend(queue.getName(), challengeIdString);
-        logger.info("Sent challengeIdString \"" + challengeIdString + "\" to queue " + queue.getName());
+    @Autowired
+    @Qualifier("quickChallenges")
+    private Queue quickQueue;
+
+    public void send(Challenge challenge) {
+        String challengeIdString = challenge.getId().toString();
+        String queueName = challenge.isQuickToSolve() ? quickQueue.getName() : queue.getName();
+        template.convertAndSend(queueName, message(challenge));
+        logger.info("Sent challengeIdString \"" + challengeIdString + "\" to queue " + queueName);
+    }
+
+    // Return the message to send for the challenge.
+    protected String message(Challenge challenge) {
+        return challenge.getId().toString();
     }
 }
@@ -2,45 +2,247 @@ package com.secondthorn.solitaire.pyramid.service.queue;
 
 import com.secondthorn.solitaire.pyramid.service.model.Challenge;
 import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import com.secondthorn.solitaire.pyramid.service.solver.MemoryBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitHandler;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
-import java.util.Optional;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A queue listener that receives challenge IDs, queries and solves them, and
  * saves the solutions back to the database.
+ * <p>
+ * Challenges expected to be quick come from their own queue with its own
+ * listener threads (set by pyramid-solitaire.solver.quick-concurrency), so
+ * they're solved right away even while every thread on the main queue is
+ * busy with slow ones.
+ * <p>
+ * Several challenges can be solved at once, one per listener thread (set by
+ * pyramid-solitaire.solver.concurrency).  A ChallengeRunner solves each one
+ * within the worker's MemoryBudget, putting it back on the queue if the
+ * memory isn't free in time.  With a ChildProcessSolver, challenges are
+ * solved in child processes instead, so one running out of memory doesn't
+ * take down the worker.
+ * <p>
+ * A challenge can be sent more than once, or put back on the queue while a
+ * worker is still solving it, so a worker first marks the challenge as being
+ * solved by it in the database.  It skips the challenge if it's already
+ * solved, and if another worker has it, sends it to be received again later
+ * (see ChallengeRetrier) in case that worker doesn't finish.  While solving,
+ * the worker renews its marks every third of the claim timeout, so a mark
+ * that hasn't been renewed within the claim timeout is taken to be from a
+ * worker that died, and the challenge is solved again.  If solving fails,
+ * even with an Error like running out of memory, the worker takes its mark
+ * off so the challenge can be solved when its message comes back.  If it's
+ * given up on (see ChallengeGivenUpException), the reason is saved with the
+ * challenge instead so the task reports it, and the message is dropped.
+ * <p>
+ * Challenges received by several threads at about the same time can be
+ * loaded together in batches, and the ones solved at about the same time
+ * saved together (see ChallengeBatcher), up to
+ * pyramid-solitaire.solver.batch-size at a time, which saves database round
+ * trips when there are lots of easy challenges.  Each queue has its own
+ * batches, and a challenge is saved as soon as it's solved instead of
+ * waiting for the others it was loaded with, so quick challenges aren't
+ * held up by slow ones.
+ * <p>
+ * With a checkpoint directory set, long searches are saved there every so
+ * often (see SearchCheckpoint).  If the worker stops before a challenge is
+ * solved, the challenge's message goes back on the queue, and when a worker
+ * sharing the directory gets it again after its mark goes stale, the search
+ * resumes from the checkpoint.
  */
-@RabbitListener(queues = "challenges")
 public class ChallengeSolver {
     private Logger logger = LoggerFactory.getLogger(ChallengeSolver.class);
 
     private ChallengeRepository repository;
+    private ChallengeRetrier retrier;
+    private ChallengeRunner runner;
+    private long claimTimeoutMillis;
+    private ChallengeBatcher batcher;
+    private ChallengeBatcher quickBatcher;
+    private String workerId;
+    private ScheduledExecutorService renewer;
+    private final Set<Long> solvingIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> claimedIds = ConcurrentHashMap.newKeySet();
 
     protected ChallengeSolver() {
     }
 
-    public ChallengeSolver(ChallengeRepository repository) {
+    public ChallengeSolver(ChallengeRepository repository, ChallengeRetrier retrier, MemoryBudget memoryBudget,
+                           long admissionTimeoutMillis, long claimTimeoutMillis,
+                           int batchSize, long batchWaitMillis,
+                           Path checkpointDirectory, long checkpointIntervalMillis,
+                           ChildProcessSolver childProcessSolver) {
         this.repository = repository;
+        this.retrier = retrier;
+        this.runner = new ChallengeRunner(memoryBudget, admissionTimeoutMillis,
+                checkpointDirectory, checkpointIntervalMillis, childProcessSolver);
+        this.claimTimeoutMillis = claimTimeoutMillis;
+        this.batcher = new ChallengeBatcher(repository, batchSize, batchWaitMillis);
+        this.quickBatcher = new ChallengeBatcher(repository, batchSize, batchWaitMillis);
+        // the process and host, and a random part for workers in the same
+        // process or a process with the same ID on a restarted host
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("challenge-claim-renewer-");
+        threadFactory.setDaemon(true);
+        this.renewer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long renewMillis = Math.max(claimTimeoutMillis / 3, 1);
+        this.renewer.scheduleAtFixedRate(this::renewClaims, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
     }
 
-    @RabbitHandler
+    @RabbitListener(queues = "challenges", concurrency = "${pyramid-solitaire.solver.concurrency:1}")
     public void receive(String challengeIdString) {
-        logger.info("Received challenge ID \"" + challengeIdString + "\" from queue.");
+        solve(challengeIdString, false, batcher);
+    }
+
+    @RabbitListener(queues = "quick-challenges", concurrency = "${pyramid-solitaire.solver.quick-concurrency:2}")
+    public void receiveQuick(String challengeIdString) {
+        solve(challengeIdString, true, quickBatcher);
+    }
+
+    // Solve the challenge unless it's already solved or being solved, and
+    // give it up if anything goes wrong so it can be solved again when it
+    // comes back on the queue.  It's loaded along with the other challenges
+    // in its batch, and saved with the ones solved at about the same time.
+    private void solve(String challengeIdString, boolean quick, ChallengeBatcher batcher) {
+        String queueDescription = quick ? " (quick)" : "";
+        logger.info("Received challenge ID \"" + challengeIdString + "\" from queue" + queueDescription + ".");
+        long start = System.currentTimeMillis();
+        Long id = Long.valueOf(challengeIdString);
+        Challenge solvedChallenge;
+        int numSaved;
+        try {
+            solvedChallenge = claimAndSolve(batcher.join(id).load(id), challengeIdString, quick);
+            if (solvedChallenge == null) {
+                return;
+            }
+            try {
+                numSaved = batcher.save(solvedChallenge);
+            } catch (RuntimeException e) {
+                unclaim(id, e);
+                throw e;
+            }
+        } finally {
+            claimedIds.remove(id);
+        }
+        long total = System.currentTimeMillis() - start;
+        logger.info("Challenge " + challengeIdString + " solved and saved with " + numSaved +
+                " challenge(s) in " + total + " milliseconds.");
+    }
+
+    // Claim and solve the challenge, returning it if it was solved, or null
+    // if it doesn't exist, it's already solved or being solved, or it's been
+    // given up on.  One that another worker is solving is sent to be
+    // received again later.
+    private Challenge claimAndSolve(Challenge challenge, String challengeIdString, boolean quick) {
+        if (challenge == null) {
+            return null;
+        }
+        if ((challenge.getSolutions() != null) && !challenge.getSolutions().isEmpty()) {
+            logger.info("Challenge " + challengeIdString + " is already solved, skipping it.");
+            return null;
+        }
+        if (challenge.getFailure() != null) {
+            logger.info("Challenge " + challengeIdString + " was given up on, skipping it.");
+            return null;
+        }
+        Long id = challenge.getId();
+        if (!solvingIds.add(id)) {
+            logger.info("Challenge " + challengeIdString + " is already being solved, skipping it.");
+            return null;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (repository.claim(id, now, now - claimTimeoutMillis, workerId) == 0) {
+                logger.info("Challenge " + challengeIdString + " is being solved by another worker, " +
+                        "trying it again later.");
+                retrier.retryLater(challengeIdString, quick);
+                return null;
+            }
+            claimedIds.add(id);
+            try {
+                runner.solve(challenge, id, quick ? " (quick)" : "");
+            } catch (ChallengeGivenUpException e) {
+                markFailed(id, e);
+                return null;
+            } catch (Throwable e) {
+                unclaim(id, e);
+                throw e;
+            }
+            return challenge;
+        } finally {
+            solvingIds.remove(id);
+        }
+    }
+
+    /**
+     * Give up on a challenge that failed to be solved too many times, saving
+     * the reason with it so its task reports it instead of pending forever.
+     * A challenge that's been solved or taken by another worker since is
+     * left alone.
+     */
+    public void giveUp(String challengeIdString, String reason) {
         Long id = Long.valueOf(challengeIdString);
-        Optional<Challenge> ch = repository.findById(id);
-        if (ch.isPresent()) {
-            Challenge challenge = ch.get();
-            logger.info("Solving challenge " + challengeIdString + " from " +
-                    challenge.getUriPath() + "?" + challenge.getUriQuery());
-            long start = System.currentTimeMillis();
-            challenge.solve();
-            repository.save(challenge);
-            long total = System.currentTimeMillis() - start;
-            logger.info("Challenge " + challengeIdString +
-                    " solved and saved in " + total + " milliseconds.");
+        if (repository.markFailed(id, reason, workerId) == 0) {
+            logger.info("Challenge " + id + " is solved or being solved by another worker, not giving up on it.");
+            return;
+        }
+        logger.info("Challenge " + id + " was given up on: " + reason);
+    }
+
+    /**
+     * Stop renewing the marks on the challenges being solved.
+     */
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    // Take the mark off a challenge that failed to be solved, keeping the
+    // failure as the exception to throw if that doesn't work either.
+    private void unclaim(Long id, Throwable failure) {
+        claimedIds.remove(id);
+        try {
+            repository.unclaim(id, workerId);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    // Save why the challenge was given up on, so its task stops pending.  If
+    // that fails, the challenge is put back on the queue to try again.
+    private void markFailed(Long id, ChallengeGivenUpException failure) {
+        claimedIds.remove(id);
+        try {
+            repository.markFailed(id, failure.getMessage(), workerId);
+        } catch (RuntimeException e) {
+            e.addSuppressed(failure);
+            unclaim(id, e);
+            throw e;
+        }
+        logger.info("Challenge " + id + " was given up on: " + failure.getMessage());
+    }
+
+    // Renew the marks on the challenges this worker is solving, so other
+    // workers don't take them over.
+    private void renewClaims() {
+        for (Long id : claimedIds) {
+            try {
+                if (repository.renew(id, System.currentTimeMillis(), workerId) == 0) {
+                    logger.warn("Challenge " + id + " was taken over by another worker while being solved.");
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to renew the mark on challenge " + id, e);
+            }
         }
     }
 }
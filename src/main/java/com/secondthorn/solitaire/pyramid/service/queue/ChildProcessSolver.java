@@ -0,0 +1,180 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves challenges in child processes, each a new JVM with its own maximum
+ * heap size, so a challenge that runs out of memory or runs too long only
+ * takes down its own process instead of the worker and the other challenges
+ * it's solving.  The child runs ChallengeProcessMain, which gets the
+ * challenge as ChallengeMessage JSON on standard input and writes its
+ * solutions as ChallengeResultMessage JSON on standard output.
+ * <p>
+ * If the child runs out of memory it's started again with twice the heap, up
+ * to the maximum, and with checkpoints turned on it resumes the search from
+ * its last checkpoint.  A challenge that still runs out of memory at the
+ * maximum heap, or takes longer than the timeout, is given up on with a
+ * ChallengeGivenUpException and isn't put back on the queue, since it would
+ * only fail again.  A child that's still running when the solve is given up
+ * on for any reason, like the worker thread being interrupted, is stopped.
+ * <p>
+ * Either every challenge is solved in a child process, or only the ones that
+ * aren't expected to be quick, since starting a JVM takes longer than
+ * solving a quick challenge.
+ */
+public class ChildProcessSolver {
+    private Logger logger = LoggerFactory.getLogger(ChildProcessSolver.class);
+
+    private static final String PROPERTIES_LAUNCHER = "org.springframework.boot.loader.PropertiesLauncher";
+
+    private final boolean includeQuick;
+    private final long heapMB;
+    private final long maxHeapMB;
+    private final long timeoutMillis;
+
+    /**
+     * Create a solver that starts each child with heapMB megabytes of heap,
+     * doubling it up to maxHeapMB when the child runs out of memory, and
+     * stops a child after timeoutMillis milliseconds.  With includeQuick
+     * false, challenges expected to be quick are left to solve in the
+     * worker's own process.
+     */
+    public ChildProcessSolver(boolean includeQuick, long heapMB, long maxHeapMB, long timeoutMillis) {
+        if (heapMB <= 0 || maxHeapMB < heapMB) {
+            throw new IllegalArgumentException("The child heap must be positive and at most the maximum, got " +
+                    heapMB + " MB and " + maxHeapMB + " MB");
+        }
+        this.includeQuick = includeQuick;
+        this.heapMB = heapMB;
+        this.maxHeapMB = maxHeapMB;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Return true if the challenge should be solved in a child process.
+     */
+    public boolean isolates(Challenge challenge) {
+        return includeQuick || !challenge.isQuickToSolve();
+    }
+
+    /**
+     * Solve the challenge in the message in a child process, checkpointing
+     * it in checkpointFile unless that's null, and return its solutions.
+     * Throw ChallengeGivenUpException if it can't be solved within the
+     * maximum heap and the timeout.
+     */
+    public ChallengeResultMessage solve(ChallengeMessage message, Path checkpointFile, long checkpointIntervalMillis) {
+        String input = message.toJson();
+        long childHeapMB = heapMB;
+        while (true) {
+            long start = System.currentTimeMillis();
+            int exitStatus;
+            String output;
+            Path outputFile = null;
+            Process process = null;
+            try {
+                outputFile = Files.createTempFile("challenge-" + message.getId() + "-", ".json");
+                process = start(childHeapMB, checkpointFile, checkpointIntervalMillis, outputFile);
+                try (OutputStream in = process.getOutputStream()) {
+                    in.write(input.getBytes(StandardCharsets.UTF_8));
+                }
+                if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    logger.error("Gave up on challenge " + message.getId() + " after " + timeoutMillis +
+                            " milliseconds in a child process.");
+                    throw new ChallengeGivenUpException("The solver gave up on the challenge after " +
+                            timeoutMillis + " milliseconds.");
+                }
+                exitStatus = process.exitValue();
+                output = new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted solving challenge " + message.getId(), e);
+            } finally {
+                if ((process != null) && process.isAlive()) {
+                    process.destroyForcibly();
+                }
+                deleteQuietly(outputFile);
+            }
+            long total = System.currentTimeMillis() - start;
+            if (exitStatus == 0) {
+                logger.info("Challenge " + message.getId() + " solved in a child process with " + childHeapMB +
+                        " MB of heap in " + total + " milliseconds.");
+                return ChallengeResultMessage.fromJson(output.trim());
+            }
+            if (exitStatus != ChallengeProcessMain.EXIT_OUT_OF_MEMORY) {
+                throw new IllegalStateException("The child process solving challenge " + message.getId() +
+                        " failed with exit status " + exitStatus);
+            }
+            if (childHeapMB >= maxHeapMB) {
+                logger.error("Gave up on challenge " + message.getId() + " after running out of memory with " +
+                        childHeapMB + " MB of heap in a child process.");
+                throw new ChallengeGivenUpException("The solver ran out of memory with " + childHeapMB +
+                        " MB of heap.");
+            }
+            long nextHeapMB = Math.min(childHeapMB * 2, maxHeapMB);
+            logger.info("Challenge " + message.getId() + " ran out of memory with " + childHeapMB +
+                    " MB of heap after " + total + " milliseconds, trying again with " + nextHeapMB + " MB.");
+            childHeapMB = nextHeapMB;
+        }
+    }
+
+    // Start a JVM to run ChallengeProcessMain, writing its output to
+    // outputFile and its errors to the worker's standard error.
+    private Process start(long childHeapMB, Path checkpointFile, long checkpointIntervalMillis,
+                          Path outputFile) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + childHeapMB + "m");
+        // the JVM exits with ChallengeProcessMain.EXIT_OUT_OF_MEMORY (3) as
+        // soon as anything runs out of memory
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (isLaunchedFromJar()) {
+            // the classes are nested in the Spring Boot jar, so only its
+            // launcher can load them
+            command.add("-Dloader.main=" + ChallengeProcessMain.class.getName());
+            command.add(PROPERTIES_LAUNCHER);
+        } else {
+            command.add(ChallengeProcessMain.class.getName());
+        }
+        if (checkpointFile != null) {
+            command.add(checkpointFile.toString());
+            command.add(Long.toString(checkpointIntervalMillis));
+        }
+        return new ProcessBuilder(command)
+                .redirectOutput(outputFile.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static boolean isLaunchedFromJar() {
+        return ChildProcessSolver.class.getClassLoader().getClass().getName()
+                .startsWith("org.springframework.boot.loader.");
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // it's in the temp directory, so leave it
+            }
+        }
+    }
+}
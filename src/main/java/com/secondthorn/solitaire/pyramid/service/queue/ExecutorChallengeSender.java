@@ -0,0 +1,181 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.exception.SolverBusyException;
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends challenges to thread pools in the same process to be solved, instead
+ * of through RabbitMQ to a worker process.  Each challenge is solved by a
+ * ChallengeSolver the same way as when it comes off the queue, so it's
+ * claimed, solved, and saved the same way and the tasks work the same.  This
+ * is for small deployments and for measuring throughput on one machine
+ * without RabbitMQ or a second process.
+ * <p>
+ * Like the queues, there's one pool for challenges expected to be quick and
+ * one for the rest, each with its own number of threads and a limit on how
+ * many challenges can wait for a thread.  When a pool's waiting challenges
+ * are at the limit, sending another one waits for room, so the web requests
+ * slow down to the speed the challenges are solved at.  A challenge the
+ * ChallengeSolver puts back because there isn't enough memory for it yet
+ * goes to the back of its pool's line, or is tried again right away if the
+ * line is full.  One that another worker is solving is sent to its pool
+ * again after the retry delay.  One whose solver fails is sent again after
+ * the retry delay, doubling the delay each time, and after maxAttempts
+ * failures it's given up on so its task reports it as failed.
+ */
+public class ExecutorChallengeSender extends ChallengeSender implements ChallengeRetrier {
+    // the most times the retry delay is doubled for a challenge whose
+    // solver keeps failing
+    private static final int MAX_BACKOFF_DOUBLINGS = 10;
+
+    private Logger logger = LoggerFactory.getLogger(ExecutorChallengeSender.class);
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor quickExecutor;
+    private final ScheduledExecutorService retryExecutor;
+    private final long retryDelayMillis;
+    private final int maxAttempts;
+    private final ChallengeSolver solver;
+
+    /**
+     * Create a sender whose challenges are solved by the ChallengeSolver the
+     * factory creates, given this sender to send challenges back to.
+     */
+    public ExecutorChallengeSender(Function<ChallengeRetrier, ChallengeSolver> solverFactory, int concurrency,
+                                   int quickConcurrency, int queueCapacity, long retryDelayMillis,
+                                   int maxAttempts) {
+        this.executor = newExecutor("challenge-solver-", concurrency, queueCapacity);
+        this.quickExecutor = newExecutor("quick-challenge-solver-", quickConcurrency, queueCapacity);
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("challenge-retrier-"));
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.solver = solverFactory.apply(this);
+    }
+
+    @Override
+    public void send(Challenge challenge) {
+        String challengeIdString = challenge.getId().toString();
+        boolean quick = challenge.isQuickToSolve();
+        try {
+            submit(challengeIdString, quick, 1);
+        } catch (RejectedExecutionException e) {
+            throw new SolverBusyException("The solver isn't taking challenges right now, try again later.");
+        }
+        logger.info("Sent challengeIdString \"" + challengeIdString + "\" to the " +
+                (quick ? "quick " : "") + "solver threads");
+    }
+
+    @Override
+    public void retryLater(String challengeIdString, boolean quick) {
+        retryLater(challengeIdString, quick, 1, retryDelayMillis);
+    }
+
+    // Send the challenge to its pool again after the delay, as the given
+    // attempt at solving it.
+    private void retryLater(String challengeIdString, boolean quick, int attempt, long delayMillis) {
+        try {
+            retryExecutor.schedule(() -> {
+                try {
+                    submit(challengeIdString, quick, attempt);
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Dropped challenge " + challengeIdString + " being retried, the solver threads " +
+                            "are shut down");
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Dropped challenge " + challengeIdString + " being retried, the solver threads " +
+                    "are shut down");
+        }
+    }
+
+    /**
+     * Stop taking challenges, and stop the threads once the challenges
+     * already sent are solved.  Challenges waiting to be retried are
+     * dropped, since another worker has them.
+     */
+    public void shutdown() {
+        retryExecutor.shutdownNow();
+        executor.shutdown();
+        quickExecutor.shutdown();
+    }
+
+    private void submit(String challengeIdString, boolean quick, int attempt) {
+        ThreadPoolExecutor pool = quick ? quickExecutor : executor;
+        Consumer<String> receiver = quick ? solver::receiveQuick : solver::receive;
+        submit(pool, receiver, challengeIdString, quick, attempt);
+    }
+
+    // Solve the challenge on a thread from the pool, sending it back to the
+    // pool if there isn't enough memory to solve it yet, or trying it again
+    // later if the solver fails.
+    private void submit(ThreadPoolExecutor pool, Consumer<String> receiver, String challengeIdString,
+                        boolean quick, int attempt) {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        receiver.accept(challengeIdString);
+                        return;
+                    } catch (ImmediateRequeueAmqpException e) {
+                        if (pool.isShutdown() || pool.getQueue().offer(this)) {
+                            return;
+                        }
+                    } catch (RuntimeException | Error e) {
+                        logger.error("Failed to solve challenge " + challengeIdString + " on attempt " + attempt +
+                                " of " + maxAttempts, e);
+                        retryOrGiveUp(challengeIdString, quick, attempt);
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    // Try a challenge whose solver failed again after the backoff delay for
+    // the attempt, or give it up if that was the last attempt.
+    private void retryOrGiveUp(String challengeIdString, boolean quick, int attempt) {
+        if (attempt < maxAttempts) {
+            long delayMillis = retryDelayMillis << Math.min(attempt - 1, MAX_BACKOFF_DOUBLINGS);
+            retryLater(challengeIdString, quick, attempt + 1, delayMillis);
+            return;
+        }
+        try {
+            solver.giveUp(challengeIdString, "The solver failed on the challenge " + maxAttempts + " times.");
+        } catch (RuntimeException e) {
+            logger.error("Failed to give up on challenge " + challengeIdString, e);
+        }
+    }
+
+    // Create a pool with a fixed number of threads, where adding a task when
+    // the line is full waits for room.
+    private static ThreadPoolExecutor newExecutor(String threadNamePrefix, int numThreads, int queueCapacity) {
+        return new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(threadNamePrefix),
+                (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("The solver threads are shut down");
+                    }
+                    try {
+                        pool.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted waiting to send a challenge", e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,15 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+
+/**
+ * Sends whole challenges to the queues for stateless workers, as
+ * ChallengeMessage JSON, so the workers can solve them without a database.
+ * The solutions come back on the results queue to a ChallengeResultReceiver.
+ */
+public class PayloadChallengeSender extends ChallengeSender {
+    @Override
+    protected String message(Challenge challenge) {
+        return ChallengeMessage.of(challenge).toJson();
+    }
+}
@@ -1,27 +1,181 @@
 package com.secondthorn.solitaire.pyramid.service.queue;
 
 import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import com.secondthorn.solitaire.pyramid.service.solver.MemoryBudget;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Sets up how challenges get from the web service to be solved: through
+ * RabbitMQ to a worker process (the challenge_sender and challenge_solver
+ * profiles), or with the in_process_solver profile added to
+ * challenge_sender, to threads in the web service's own process.  With the
+ * stateless_solver profile added to both sides, the whole challenge is sent
+ * to the worker and its solutions come back on the results queue, so the
+ * worker doesn't use the database.
+ */
 @Configuration
 public class QueueConfig {
+    @Value("${pyramid-solitaire.solver.heap-fraction:0.8}")
+    private double heapFraction;
+
+    @Value("${pyramid-solitaire.solver.default-memory-estimate-mb:1024}")
+    private long defaultEstimateMB;
+
+    @Value("${pyramid-solitaire.solver.admission-timeout-seconds:60}")
+    private long admissionTimeoutSeconds;
+
+    @Value("${pyramid-solitaire.solver.claim-timeout-minutes:5}")
+    private long claimTimeoutMinutes;
+
+    @Value("${pyramid-solitaire.solver.claim-retry-seconds:30}")
+    private long claimRetrySeconds;
+
+    @Value("${pyramid-solitaire.solver.batch-size:1}")
+    private int batchSize;
+
+    @Value("${pyramid-solitaire.solver.batch-wait-millis:50}")
+    private long batchWaitMillis;
+
+    @Value("${pyramid-solitaire.solver.checkpoint-directory:}")
+    private String checkpointDirectory;
+
+    @Value("${pyramid-solitaire.solver.checkpoint-interval-seconds:60}")
+    private long checkpointIntervalSeconds;
+
+    @Value("${pyramid-solitaire.solver.isolation:none}")
+    private String isolation;
+
+    @Value("${pyramid-solitaire.solver.child-heap-mb:1024}")
+    private long childHeapMB;
+
+    @Value("${pyramid-solitaire.solver.child-max-heap-mb:4096}")
+    private long childMaxHeapMB;
+
+    @Value("${pyramid-solitaire.solver.child-timeout-minutes:120}")
+    private long childTimeoutMinutes;
+
     @Bean
     public Queue challenges() {
         return new Queue("challenges", true);
     }
 
-    @Profile("challenge_sender")
+    @Bean
+    public Queue quickChallenges() {
+        return new Queue("quick-challenges", true);
+    }
+
+    @Bean
+    public Queue challengesRetry() {
+        return retryQueue("challenges-retry", challenges());
+    }
+
+    @Bean
+    public Queue quickChallengesRetry() {
+        return retryQueue("quick-challenges-retry", quickChallenges());
+    }
+
+    @Bean
+    public Queue challengeResults() {
+        return new Queue("challenge-results", true);
+    }
+
+    @Profile("challenge_sender & !in_process_solver & !stateless_solver")
     @Bean
     public ChallengeSender challengeSender() {
         return new ChallengeSender();
     }
 
-    @Profile("challenge_solver")
+    @Profile("challenge_sender & stateless_solver")
+    @Bean
+    public ChallengeSender payloadChallengeSender() {
+        return new PayloadChallengeSender();
+    }
+
+    @Profile("challenge_sender & stateless_solver")
+    @Bean
+    public ChallengeResultReceiver challengeResultReceiver(
+            ChallengeRepository repository,
+            @Value("${pyramid-solitaire.results.batch-size:50}") int resultsBatchSize,
+            @Value("${pyramid-solitaire.results.batch-wait-millis:50}") long resultsBatchWaitMillis) {
+        return new ChallengeResultReceiver(repository, resultsBatchSize, resultsBatchWaitMillis);
+    }
+
+    @Profile("challenge_sender & in_process_solver")
+    @Bean
+    public ChallengeSender executorChallengeSender(
+            ChallengeRepository repository,
+            @Value("${pyramid-solitaire.solver.concurrency:1}") int concurrency,
+            @Value("${pyramid-solitaire.solver.quick-concurrency:2}") int quickConcurrency,
+            @Value("${pyramid-solitaire.solver.queue-capacity:1000}") int queueCapacity,
+            @Value("${pyramid-solitaire.solver.max-attempts:3}") int maxAttempts) {
+        // not a bean, so its queue listeners aren't started
+        return new ExecutorChallengeSender(retrier -> newChallengeSolver(repository, retrier),
+                concurrency, quickConcurrency, queueCapacity, claimRetrySeconds * 1000, maxAttempts);
+    }
+
+    @Profile("challenge_solver & !stateless_solver")
+    @Bean
+    public ChallengeSolver challengeSolver(ChallengeRepository repository, RabbitTemplate template) {
+        ChallengeRetrier retrier = new RabbitChallengeRetrier(template, challengesRetry().getName(),
+                quickChallengesRetry().getName());
+        return newChallengeSolver(repository, retrier);
+    }
+
+    @Profile("challenge_solver & stateless_solver")
     @Bean
-    public ChallengeSolver challengeSolver(ChallengeRepository repository) {
-        return new ChallengeSolver(repository);
+    public StatelessChallengeSolver statelessChallengeSolver(RabbitTemplate template) {
+        return new StatelessChallengeSolver(template, challengeResults().getName(), newMemoryBudget(),
+                admissionTimeoutSeconds * 1000, checkpointPath(), checkpointIntervalSeconds * 1000,
+                newChildProcessSolver());
+    }
+
+    private ChallengeSolver newChallengeSolver(ChallengeRepository repository, ChallengeRetrier retrier) {
+        return new ChallengeSolver(repository, retrier, newMemoryBudget(), admissionTimeoutSeconds * 1000,
+                claimTimeoutMinutes * 60 * 1000, batchSize, batchWaitMillis,
+                checkpointPath(), checkpointIntervalSeconds * 1000, newChildProcessSolver());
+    }
+
+    // A queue where messages wait out the claim retry delay and then go back
+    // to the queue they're retrying.
+    private Queue retryQueue(String name, Queue queue) {
+        return QueueBuilder.durable(name)
+                .withArgument("x-message-ttl", claimRetrySeconds * 1000)
+                .withArgument("x-dead-letter-exchange", "")
+                .withArgument("x-dead-letter-routing-key", queue.getName())
+                .build();
+    }
+
+    private MemoryBudget newMemoryBudget() {
+        return MemoryBudget.ofMaxHeap(heapFraction, defaultEstimateMB << 20);
+    }
+
+    // Return the solver for challenges solved in child processes, or null if
+    // they're all solved in this process.
+    private ChildProcessSolver newChildProcessSolver() {
+        switch (isolation) {
+            case "none":
+                return null;
+            case "hard":
+            case "all":
+                return new ChildProcessSolver(isolation.equals("all"), childHeapMB, childMaxHeapMB,
+                        childTimeoutMinutes * 60 * 1000);
+            default:
+                throw new IllegalArgumentException("pyramid-solitaire.solver.isolation must be none, hard, or all, " +
+                        "got " + isolation);
+        }
+    }
+
+    // Return the directory for checkpoints, or null if they're turned off.
+    private Path checkpointPath() {
+        return checkpointDirectory.isEmpty() ? null : Paths.get(checkpointDirectory);
     }
 }
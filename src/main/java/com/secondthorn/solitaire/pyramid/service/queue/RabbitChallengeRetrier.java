@@ -0,0 +1,31 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+/**
+ * Sends challenge IDs to the retry queues, where they wait out the queue's
+ * message TTL and are then dead-lettered back to the queue they came from
+ * (see QueueConfig).
+ */
+public class RabbitChallengeRetrier implements ChallengeRetrier {
+    private Logger logger = LoggerFactory.getLogger(RabbitChallengeRetrier.class);
+
+    private final RabbitTemplate template;
+    private final String retryQueueName;
+    private final String quickRetryQueueName;
+
+    public RabbitChallengeRetrier(RabbitTemplate template, String retryQueueName, String quickRetryQueueName) {
+        this.template = template;
+        this.retryQueueName = retryQueueName;
+        this.quickRetryQueueName = quickRetryQueueName;
+    }
+
+    @Override
+    public void retryLater(String challengeIdString, boolean quick) {
+        String queueName = quick ? quickRetryQueueName : retryQueueName;
+        template.convertAndSend(queueName, challengeIdString);
+        logger.info("Sent challengeIdString \"" + challengeIdString + "\" to queue " + queueName);
+    }
+}
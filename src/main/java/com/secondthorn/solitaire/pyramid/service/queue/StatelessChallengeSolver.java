@@ -0,0 +1,91 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.solver.MemoryBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A queue listener for workers that don't use the database.  It receives
+ * whole challenges as ChallengeMessage JSON (sent by PayloadChallengeSender),
+ * solves them, and sends the solutions as ChallengeResultMessage JSON to the
+ * results queue, where the web service saves them (see
+ * ChallengeResultReceiver).  So a worker only needs RabbitMQ, and more of
+ * them can be added without using up database connections.
+ * <p>
+ * Challenges are solved the same way as by ChallengeSolver, within the
+ * worker's MemoryBudget or in child processes, and with checkpoints if
+ * they're turned on.  Without the database there's no mark to show a
+ * challenge is being solved, so a challenge put back on the queue while
+ * it's still being solved elsewhere can be solved twice.  Only the first result is saved.
+ * A challenge that's given up on (see ChallengeGivenUpException) is sent to
+ * the results queue with the reason instead of solutions, so the web service
+ * saves it and the task stops pending.
+ */
+public class StatelessChallengeSolver {
+    private Logger logger = LoggerFactory.getLogger(StatelessChallengeSolver.class);
+
+    private RabbitTemplate template;
+    private String resultsQueueName;
+    private ChallengeRunner runner;
+    private final Set<Long> solvingIds = ConcurrentHashMap.newKeySet();
+
+    protected StatelessChallengeSolver() {
+    }
+
+    public StatelessChallengeSolver(RabbitTemplate template, String resultsQueueName,
+                                    MemoryBudget memoryBudget, long admissionTimeoutMillis,
+                                    Path checkpointDirectory, long checkpointIntervalMillis,
+                                    ChildProcessSolver childProcessSolver) {
+        this.template = template;
+        this.resultsQueueName = resultsQueueName;
+        this.runner = new ChallengeRunner(memoryBudget, admissionTimeoutMillis,
+                checkpointDirectory, checkpointIntervalMillis, childProcessSolver);
+    }
+
+    @RabbitListener(queues = "challenges", concurrency = "${pyramid-solitaire.solver.concurrency:1}")
+    public void receive(String message) {
+        solve(message, "");
+    }
+
+    @RabbitListener(queues = "quick-challenges", concurrency = "${pyramid-solitaire.solver.quick-concurrency:2}")
+    public void receiveQuick(String message) {
+        solve(message, " (quick)");
+    }
+
+    // Solve the challenge in the message and send its solutions to the
+    // results queue, unless another thread here is already solving it.
+    private void solve(String messageString, String queueDescription) {
+        ChallengeMessage message = ChallengeMessage.fromJson(messageString);
+        Long id = message.getId();
+        logger.info("Received challenge " + id + " from queue" + queueDescription + ".");
+        if (!solvingIds.add(id)) {
+            logger.info("Challenge " + id + " is already being solved, skipping it.");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Challenge challenge = message.toChallenge();
+            try {
+                runner.solve(challenge, id, queueDescription);
+            } catch (ChallengeGivenUpException e) {
+                template.convertAndSend(resultsQueueName, ChallengeResultMessage.failed(id, e.getMessage()).toJson());
+                logger.info("Challenge " + id + " was given up on and sent to queue " + resultsQueueName +
+                        ": " + e.getMessage());
+                return;
+            }
+            template.convertAndSend(resultsQueueName, ChallengeResultMessage.of(id, challenge.getSolutions()).toJson());
+            long total = System.currentTimeMillis() - start;
+            logger.info("Challenge " + id + " solved and sent to queue " + resultsQueueName +
+                    " in " + total + " milliseconds.");
+        } finally {
+            solvingIds.remove(id);
+        }
+    }
+}
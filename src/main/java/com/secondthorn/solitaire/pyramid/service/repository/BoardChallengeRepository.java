@@ -6,5 +6,5 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface BoardChallengeRepository extends CrudRepository<BoardChallenge, Long> {
-    BoardChallenge findByDeckString(String deckString);
+    BoardChallenge findByDeckStringAndStartState(String deckString, Long startState);
 }
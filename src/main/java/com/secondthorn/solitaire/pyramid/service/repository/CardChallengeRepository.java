@@ -6,5 +6,6 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface CardChallengeRepository extends CrudRepository<CardChallenge, Long> {
-    CardChallenge findByDeckStringAndGoalRankAndNumToRemove(String deckString, Character goalRank, Integer numToRemove);
+    CardChallenge findByDeckStringAndGoalRankAndNumToRemoveAndStartState(String deckString, Character goalRank,
+                                                                       Integer numToRemove, Long startState);
 }
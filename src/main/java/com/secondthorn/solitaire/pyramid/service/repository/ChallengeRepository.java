@@ -1,15 +1,73 @@
 package com.secondthorn.solitaire.pyramid.service.repository;
 
 import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 
 /**
- * The Challenge Repository covers all challenge types.  There's no new methods
- * here, it's meant to be used with CrudRepository and other methods such as
- * findById() for interacting with challenges regardless of subclass.
+ * The Challenge Repository covers all challenge types.  It's meant to be used
+ * with CrudRepository and other methods such as findById() for interacting
+ * with challenges regardless of subclass, plus marking which challenges a
+ * worker is solving so no two workers solve the same one.
  */
 @Repository
 public interface ChallengeRepository extends CrudRepository<Challenge, Long> {
+    /**
+     * Mark the challenge as being solved by the worker from now on, unless
+     * it's already solved, it's been given up on, or a worker has renewed
+     * its mark since staleBefore or later.  Return 1 if it was marked, or 0
+     * if it's solved, given up on, or another worker has it.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Challenge c set c.solvingSince = :now, c.solvingBy = :worker " +
+            "where c.id = :id and c.solutions is empty and c.failure is null " +
+            "and (c.solvingSince is null or c.solvingSince < :staleBefore)")
+    int claim(@Param("id") Long id, @Param("now") long now, @Param("staleBefore") long staleBefore,
+              @Param("worker") String worker);
+
+    /**
+     * Renew the worker's mark on the challenge as of now, so other workers
+     * don't take it to be stale.  Return 1 if it was renewed, or 0 if the
+     * worker's mark was taken over or removed.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Challenge c set c.solvingSince = :now where c.id = :id and c.solvingBy = :worker")
+    int renew(@Param("id") Long id, @Param("now") long now, @Param("worker") String worker);
+
+    /**
+     * Return the challenges with the IDs that aren't solved yet.
+     */
+    @Query("select c from Challenge c where c.id in :ids and c.solutions is empty")
+    List<Challenge> findUnsolvedByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Record why the worker gave up on the challenge, and mark it as no
+     * longer being solved, unless it's solved or another worker has a mark
+     * on it.  Return 1 if it was marked failed, or 0 if not.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Challenge c set c.failure = :failure, c.solvingSince = null, c.solvingBy = null " +
+            "where c.id = :id and c.solutions is empty and (c.solvingBy is null or c.solvingBy = :worker)")
+    int markFailed(@Param("id") Long id, @Param("failure") String failure, @Param("worker") String worker);
+
+    /**
+     * Mark the challenge as no longer being solved by the worker, so another
+     * worker can solve it.  A mark another worker has taken over is left
+     * alone.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Challenge c set c.solvingSince = null, c.solvingBy = null " +
+            "where c.id = :id and c.solvingBy = :worker")
+    int unclaim(@Param("id") Long id, @Param("worker") String worker);
 }
@@ -6,5 +6,5 @@ import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ScoreChallengeRepository extends CrudRepository<ScoreChallenge, Long> {
-    ScoreChallenge findByDeckStringAndNumPoints(String deckString, Integer numPoints);
+    ScoreChallenge findByDeckStringAndNumPointsAndStartState(String deckString, Integer numPoints, Long startState);
 }
@@ -0,0 +1,10 @@
+package com.secondthorn.solitaire.pyramid.service.repository;
+
+import com.secondthorn.solitaire.pyramid.service.model.WinnableChallenge;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WinnableChallengeRepository extends CrudRepository<WinnableChallenge, Long> {
+    WinnableChallenge findByDeckStringAndStartState(String deckString, Long startState);
+}
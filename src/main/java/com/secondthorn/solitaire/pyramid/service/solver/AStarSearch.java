@@ -0,0 +1,136 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.function.Function;
+import java.util.function.LongToIntFunction;
+
+/**
+ * A SearchEngine for A* search.  States are searched in order of the minimum
+ * number of steps it could take to reach the goal through them: the steps
+ * taken so far plus a heuristic estimate of the steps left.  If the heuristic
+ * never overestimates, the first goal found takes the fewest steps possible.
+ * <p>
+ * The heuristic returns -1 for states that can't reach the goal at all, and
+ * those states are never searched.  Unlike BreadthFirstSearch, the goal is
+ * checked when a state is taken off the fringe, because a state generated
+ * later could still reach the goal in fewer steps.
+ */
+public final class AStarSearch extends SearchEngine {
+    // No solution can take more steps than this: 52 card removals, drawing
+    // each of the 24 stock cards three times, and recycling twice.
+    private static final int MAX_STEPS = 52 + (24 * 3) + 2;
+
+    private final LongToIntFunction heuristic;
+    private final int maxHeuristic;
+    private final Function<Deck, SeenStateTable> seenStatesFactory;
+    // the fringe queues share segments, so memory freed by the queues
+    // already searched is reused by the ones being filled
+    private final LongSegmentPool segmentPool = new LongSegmentPool();
+    private SeenStateTable seenStates;
+
+    /**
+     * Create an A* search engine with a heuristic that never returns more
+     * than maxHeuristic, keeping the states it has seen in a
+     * HashSeenStateTable.
+     */
+    public AStarSearch(LongToIntFunction heuristic, int maxHeuristic) {
+        this(heuristic, maxHeuristic, deck -> new HashSeenStateTable());
+    }
+
+    /**
+     * Create an A* search engine with a heuristic that never returns more
+     * than maxHeuristic, keeping the states it has seen in a table created
+     * for the deck being searched.
+     */
+    public AStarSearch(LongToIntFunction heuristic, int maxHeuristic,
+                       Function<Deck, SeenStateTable> seenStatesFactory) {
+        this.heuristic = heuristic;
+        this.maxHeuristic = maxHeuristic;
+        this.seenStatesFactory = seenStatesFactory;
+    }
+
+    @Override
+    public long search(Deck deck, Objective objective) {
+        seenStates = seenStatesFactory.apply(deck);
+        long goalState = searchFringes(newMoveGenerator(deck), objective);
+        stats.setSeenStates(seenStates.size(), seenStates.getMemoryUsage());
+        return goalState;
+    }
+
+    // There's a queue for each combination of minimum steps and heuristic
+    // value, so that ties go to the states that are estimated to be closest
+    // to the goal.
+    private long searchFringes(MoveGenerator moveGenerator, Objective objective) {
+        TLongIntMap stepCounts = new TLongIntHashMap();
+        LongFIFOQueue[][] fringes = new LongFIFOQueue[MAX_STEPS + maxHeuristic + 1][maxHeuristic + 1];
+        long initialState = getStartState();
+        int initialDistance = heuristic.applyAsInt(initialState);
+        if (initialDistance == -1) {
+            return -1;
+        }
+        stepCounts.put(initialState, 0);
+        seenStates.put(initialState, -1);
+        enqueue(fringes, initialDistance, initialDistance, initialState);
+        for (int minSteps = initialDistance; minSteps < fringes.length; minSteps++) {
+            LongFIFOQueue[] fringe = fringes[minSteps];
+            int distance = nextDistance(fringe);
+            while (distance != -1) {
+                long state = fringe[distance].dequeue();
+                int numSteps = minSteps - distance;
+                // skip states that were reached again in fewer steps
+                if (stepCounts.get(state) == numSteps) {
+                    if (objective.isGoal(state)) {
+                        return state;
+                    }
+                    long[] successorMasks = moveGenerator.getSuccessorMasks(state);
+                    if (objective.expand(state, successorMasks)) {
+                        for (long mask : successorMasks) {
+                            long nextState = State.adjustStockIndex(state ^ mask);
+                            boolean duplicate = stepCounts.containsKey(nextState);
+                            stats.addGeneratedState(duplicate);
+                            if (!duplicate || (stepCounts.get(nextState) > numSteps + 1)) {
+                                int nextDistance = heuristic.applyAsInt(nextState);
+                                if (nextDistance != -1) {
+                                    stepCounts.put(nextState, numSteps + 1);
+                                    seenStates.put(nextState, state);
+                                    enqueue(fringes, numSteps + 1 + nextDistance, nextDistance, nextState);
+                                }
+                            }
+                        }
+                    }
+                    if (objective.isFinished()) {
+                        return -1;
+                    }
+                }
+                distance = nextDistance(fringe);
+            }
+            fringes[minSteps] = null;
+        }
+        return -1;
+    }
+
+    @Override
+    public long getParent(long state) {
+        return (seenStates == null) ? -1 : seenStates.getParent(state);
+    }
+
+    private void enqueue(LongFIFOQueue[][] fringes, int minSteps, int distance, long state) {
+        if (fringes[minSteps][distance] == null) {
+            fringes[minSteps][distance] = new LongFIFOQueue(segmentPool);
+        }
+        fringes[minSteps][distance].enqueue(state);
+    }
+
+    // Return the smallest heuristic value with states left in the fringe, or
+    // -1 if it's empty.
+    private int nextDistance(LongFIFOQueue[] fringe) {
+        for (int distance = 0; distance < fringe.length; distance++) {
+            if ((fringe[distance] != null) && !fringe[distance].isEmpty()) {
+                return distance;
+            }
+        }
+        return -1;
+    }
+}
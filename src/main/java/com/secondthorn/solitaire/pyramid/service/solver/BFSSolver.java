@@ -2,19 +2,63 @@ package com.secondthorn.solitaire.pyramid.service.solver;
 
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.model.Step;
-import gnu.trove.map.TLongLongMap;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * BFSSolver represents Breadth-First Search solvers.  Subclasses must
  * implement the solve method but the methods defined here support finding
  * the actions to get from the initial state to the current state, calculating
- * the score if needed, and adding successor states to the search queue.
+ * the score if needed, and creating the search engine to run the search.
+ * <p>
+ * Subclasses describe what they're looking for with an Objective and run it
+ * on the engine from newSearchEngine().  The engine defaults to
+ * StateLogSearch, but can be replaced for every solver with
+ * setSearchEngineFactory().  Setting a table for the engines to keep the
+ * states they've seen in with setSeenStateTableFactory(), for example
+ * CompactSeenStateTable to use less memory, switches the default engine to
+ * BreadthFirstSearch with that table.  How the engines find the moves from
+ * each state can be replaced with setMoveGeneratorFactory().  To solve a
+ * game that's already under way, set the state it's at with setStartState().
+ * Workers solving one challenge after another can pass the same
+ * SolverContext to each solver, so the default engines reuse its memory,
+ * and the default StateLogSearch uses the context's SearchCheckpoint.  A
+ * SearchLimit in the context stops every engine the solver uses once the
+ * limit runs out.
  */
 public abstract class BFSSolver {
+    // masks to check if a row of the pyramid has been cleared in a state
+    static final long[] ROW_CLEARED_MASKS = {
+            0b1111111000000000000000000000L,
+            0b0000000111111000000000000000L,
+            0b0000000000000111110000000000L,
+            0b0000000000000000001111000000L,
+            0b0000000000000000000000111000L,
+            0b0000000000000000000000000110L,
+            0b0000000000000000000000000001L
+    };
+
+    // the score for clearing each row from bottom to top row
+    static final int[] ROW_CLEARED_SCORES = {
+            25,
+            50,
+            75,
+            100,
+            150,
+            250,
+            500
+    };
+
+    private Function<Deck, SeenStateTable> seenStateTableFactory = null;
+    private Function<Deck, MoveGenerator> moveGeneratorFactory = null;
+    private Supplier<SearchEngine> searchEngineFactory = this::newDefaultSearchEngine;
+    private SearchEngine searchEngine;
+    private long startState = State.INITIAL_STATE;
+    private SolverContext solverContext = null;
+
     /**
      * Solve Pyramid Solitaire with the given deck of cards, return a list of
      * Solutions.  There may be 0 solutions or more than one if the solver
@@ -22,17 +66,113 @@ public abstract class BFSSolver {
      */
     public abstract List<Solution> solve(Deck deck);
 
+    /**
+     * Set how to create the search engine for each search this solver runs.
+     */
+    public void setSearchEngineFactory(Supplier<SearchEngine> searchEngineFactory) {
+        this.searchEngineFactory = searchEngineFactory;
+    }
+
+    /**
+     * Set how to create the table of seen states for each search this solver
+     * runs.  This applies to the default search engines, not to ones created
+     * by a factory passed to setSearchEngineFactory().
+     */
+    public void setSeenStateTableFactory(Function<Deck, SeenStateTable> seenStateTableFactory) {
+        this.seenStateTableFactory = seenStateTableFactory;
+    }
+
+    /**
+     * Set how to create the move generator for each search this solver runs,
+     * for example BitboardMoveGenerator::new to skip building the deck's
+     * table of successor masks.
+     */
+    public void setMoveGeneratorFactory(Function<Deck, MoveGenerator> moveGeneratorFactory) {
+        this.moveGeneratorFactory = moveGeneratorFactory;
+    }
+
+    /**
+     * Set the state to solve the game from, instead of the initial state.
+     * The solution steps start from this state.
+     */
+    public void setStartState(long startState) {
+        this.startState = startState;
+    }
+
+    /**
+     * Set the working memory for the default search engines and tables to
+     * reuse, instead of allocating their own.
+     */
+    public void setSolverContext(SolverContext solverContext) {
+        this.solverContext = solverContext;
+    }
+
+    // Return the state the game is solved from.
+    protected long getStartState() {
+        return startState;
+    }
+
+    /**
+     * Return the counters collected by the last search engine used while
+     * solving.
+     */
+    public SolverStats getStats() {
+        return (searchEngine == null) ? new SolverStats() : searchEngine.getStats();
+    }
+
+    // Return how to create the table of seen states for a search.
+    protected Function<Deck, SeenStateTable> getSeenStateTableFactory() {
+        if (seenStateTableFactory != null) {
+            return seenStateTableFactory;
+        }
+        return (solverContext == null) ? deck -> new HashSeenStateTable() : deck -> solverContext.hashSeenStateTable();
+    }
+
+    // The search engine used unless setSearchEngineFactory() replaces it.
+    private SearchEngine newDefaultSearchEngine() {
+        if (solverContext == null) {
+            return (seenStateTableFactory == null) ? new StateLogSearch() : new BreadthFirstSearch(seenStateTableFactory);
+        }
+        if (seenStateTableFactory == null) {
+            StateLogSearch engine = new StateLogSearch(solverContext.stateLog());
+            engine.setCheckpoint(solverContext.getCheckpoint());
+            return engine;
+        }
+        return new BreadthFirstSearch(seenStateTableFactory, new LongFIFOQueue(solverContext.segmentPool()));
+    }
+
+    // Create a new search engine to run a search with.
+    protected SearchEngine newSearchEngine() {
+        return useSearchEngine(searchEngineFactory.get());
+    }
+
+    // Run the next search with the given engine instead of one from the
+    // factory, for solvers that need a particular kind of search.
+    protected SearchEngine useSearchEngine(SearchEngine engine) {
+        SearchLimit limit = (solverContext == null) ? null : solverContext.getSearchLimit();
+        if (limit == null) {
+            engine.setMoveGeneratorFactory((moveGeneratorFactory == null) ? deck -> deck : moveGeneratorFactory);
+        } else {
+            // a limited search is meant to be small, so unless another move
+            // generator was set, don't spend its time building the deck's
+            // table of successor masks
+            Function<Deck, MoveGenerator> factory =
+                    (moveGeneratorFactory == null) ? BitboardMoveGenerator::new : moveGeneratorFactory;
+            engine.setMoveGeneratorFactory(deck -> limit.limit(factory.apply(deck)));
+        }
+        engine.setStartState(startState);
+        searchEngine = engine;
+        return engine;
+    }
+
     // Return the actions taken to get from the initial state to the current
     // state.
-    protected List<Step> getSteps(TLongLongMap seenStates, long state, Deck deck) {
+    protected List<Step> getSteps(SearchEngine engine, long state, Deck deck) {
+        long[] path = engine.getPath(state);
         List<String> actions = new ArrayList<>();
-        long nextState = state;
-        while (seenStates.containsKey(nextState)) {
-            state = seenStates.get(nextState);
-            actions.add(action(state, nextState, deck));
-            nextState = state;
+        for (int i = 1; i < path.length; i++) {
+            actions.add(action(path[i - 1], path[i], deck));
         }
-        Collections.reverse(actions);
         List<Step> steps = new ArrayList<>();
         for (int stepNumber = 1; stepNumber <= actions.size(); stepNumber++) {
             steps.add(new Step(stepNumber, actions.get(stepNumber - 1)));
@@ -45,66 +185,24 @@ public abstract class BFSSolver {
     protected int score(long state, Deck deck) {
         int score = 0;
 
-        // masks to check if a row of the pyramid has been cleared in a state
-        final long[] rowClearedMasks = {
-                0b1111111000000000000000000000L,
-                0b0000000111111000000000000000L,
-                0b0000000000000111110000000000L,
-                0b0000000000000000001111000000L,
-                0b0000000000000000000000111000L,
-                0b0000000000000000000000000110L,
-                0b0000000000000000000000000001L
-        };
-
-        // the score for clearing each row from bottom to top row
-        final int[] rowClearedScores = {
-                25,
-                50,
-                75,
-                100,
-                150,
-                250,
-                500
-        };
-
-        for (int i = 0; i < rowClearedMasks.length; i++) {
-            if ((state & rowClearedMasks[i]) == 0) {
-                score += rowClearedScores[i];
+        for (int i = 0; i < ROW_CLEARED_MASKS.length; i++) {
+            if ((state & ROW_CLEARED_MASKS[i]) == 0) {
+                score += ROW_CLEARED_SCORES[i];
             }
         }
 
-        int numKingsRemoved = 0;
-        int numNonKingsRemoved = 0;
-        for (int i = 0; i < 52; i++) {
-            long mask = 1L << i;
-            if ((state & mask) == 0) {
-                if (deck.isKing(i)) {
-                    numKingsRemoved++;
-                } else {
-                    numNonKingsRemoved++;
-                }
-            }
-        }
+        long kingMask = deck.cardRankMask(13);
+        long deckFlags = State.getDeckFlags(state);
+        int numKingsRemoved = 4 - Long.bitCount(deckFlags & kingMask);
+        int numNonKingsRemoved = 48 - Long.bitCount(deckFlags & ~kingMask);
         score += (5 * numKingsRemoved) + (5 * (numNonKingsRemoved / 2));
 
         return score;
     }
 
-    // Given a list of successor masks, generate the successors for a state
-    // and insert them into the fringe (queue of search states to examine).
-    protected void addSuccessorStates(LongFIFOQueue fringe, TLongLongMap seenStates, long state, long[] successorMasks) {
-        for (long mask : successorMasks) {
-            long nextState = State.adjustStockIndex(state ^ mask);
-            if (!seenStates.containsKey(nextState)) {
-                seenStates.put(nextState, state);
-                fringe.enqueue(nextState);
-            }
-        }
-    }
-
     // Return a String describing what action to take in the game to get from
     // previousState to state.
-    private String action(long previousState, long state, Deck deck) {
+    static String action(long previousState, long state, Deck deck) {
         long diff = previousState ^ state;
         long existFlagsDiff = State.getDeckFlags(diff);
         long recycleCountDiff = State.getRecycleCount(diff);
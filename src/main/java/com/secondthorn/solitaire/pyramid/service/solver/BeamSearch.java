@@ -0,0 +1,104 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+/**
+ * A SearchEngine for beam search.  It searches one layer at a time like
+ * breadth-first search, but only keeps the states in each layer with the
+ * lowest heuristic values, up to the beam width.  It looks at a tiny part of
+ * the game so it finishes quickly, but the goal it finds might not be the
+ * closest one, and it can miss the goal entirely.
+ * <p>
+ * The heuristic returns -1 for states that can't reach the goal at all, and
+ * those states are dropped.  Ties go to the states generated first.
+ */
+public final class BeamSearch extends SearchEngine {
+    private final int width;
+    private final LongToIntFunction heuristic;
+    private final HashSeenStateTable seenStates = new HashSeenStateTable();
+
+    /**
+     * Create a beam search engine keeping up to width states in each layer,
+     * choosing the states with the lowest values of the heuristic.
+     */
+    public BeamSearch(int width, LongToIntFunction heuristic) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("The beam width must be positive");
+        }
+        this.width = width;
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public long search(Deck deck, Objective objective) {
+        long goalState = searchLayers(newMoveGenerator(deck), objective);
+        stats.setSeenStates(seenStates.size(), seenStates.getMemoryUsage());
+        return goalState;
+    }
+
+    private long searchLayers(MoveGenerator moveGenerator, Objective objective) {
+        long initialState = getStartState();
+        if (objective.isGoal(initialState)) {
+            return initialState;
+        }
+        seenStates.put(initialState, -1);
+        long[] layer = {initialState};
+        TLongArrayList nextStates = new TLongArrayList();
+        TLongArrayList rankings = new TLongArrayList();
+        while (layer.length > 0) {
+            nextStates.resetQuick();
+            rankings.resetQuick();
+            for (long state : layer) {
+                long[] successorMasks = moveGenerator.getSuccessorMasks(state);
+                if (!objective.expand(state, successorMasks)) {
+                    continue;
+                }
+                for (long mask : successorMasks) {
+                    long nextState = State.adjustStockIndex(state ^ mask);
+                    boolean duplicate = seenStates.containsKey(nextState);
+                    stats.addGeneratedState(duplicate);
+                    if (duplicate) {
+                        continue;
+                    }
+                    int distance = heuristic.applyAsInt(nextState);
+                    if (distance == -1) {
+                        continue;
+                    }
+                    seenStates.put(nextState, state);
+                    if (objective.isGoal(nextState)) {
+                        return nextState;
+                    }
+                    // the heuristic value in the high bits, so sorting these
+                    // puts the best states first, in the order generated
+                    rankings.add(((long) distance << 32) | nextStates.size());
+                    nextStates.add(nextState);
+                }
+            }
+            if (objective.isFinished()) {
+                break;
+            }
+            layer = bestStates(nextStates, rankings);
+            stats.addLayer(layer.length);
+        }
+        return -1;
+    }
+
+    // Return the states with the lowest heuristic values, up to the width.
+    private long[] bestStates(TLongArrayList states, TLongArrayList rankings) {
+        long[] sortedRankings = rankings.toArray();
+        Arrays.sort(sortedRankings);
+        long[] best = new long[Math.min(width, sortedRankings.length)];
+        for (int i = 0; i < best.length; i++) {
+            best[i] = states.get((int) sortedRankings[i]);
+        }
+        return best;
+    }
+
+    @Override
+    public long getParent(long state) {
+        return seenStates.getParent(state);
+    }
+}
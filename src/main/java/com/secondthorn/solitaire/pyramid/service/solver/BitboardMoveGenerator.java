@@ -0,0 +1,87 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.Arrays;
+
+/**
+ * A MoveGenerator that calculates the successor masks for each state as it's
+ * expanded, instead of building Deck's table for every possible state first.
+ * The uncovered pyramid cards come from Pyramid.uncoveredFlags(), and the
+ * cards that can be removed with each of them come from the deck's card rank
+ * masks, so finding matches is a few bitwise ANDs.
+ * <p>
+ * This starts searching right away, which is faster for solves that only
+ * look at a small part of the game.  Long searches take about as long with
+ * either one.  See MoveGeneratorBenchmark.
+ */
+public class BitboardMoveGenerator implements MoveGenerator {
+    // more than the most moves possible from any state
+    private static final int MAX_MOVES = 64;
+
+    private final long kingFlags;
+    private final long[] matchMasks = new long[52];
+    private final long[] moves = new long[MAX_MOVES];
+
+    /**
+     * Create a move generator for games with the given deck.  Each generator
+     * should only be used by one thread at a time.
+     */
+    public BitboardMoveGenerator(Deck deck) {
+        kingFlags = deck.cardRankMask(13);
+        for (int i = 0; i < 52; i++) {
+            int value = deck.cardValue(i);
+            matchMasks[i] = (value == 13) ? 0L : deck.cardRankMask(13 - value);
+        }
+    }
+
+    // The masks are in the same order as the ones in Deck's table: pairs of
+    // pyramid cards, the stock card with a pyramid card, drawing, the waste
+    // card with a pyramid card, the stock and waste cards together, and
+    // recycling.
+    @Override
+    public long[] getSuccessorMasks(long state) {
+        long uncoveredFlags = Pyramid.uncoveredFlags(State.getPyramidFlags(state));
+        int stockIndex = State.getStockIndex(state);
+        int wasteIndex = State.getWasteIndex(state, stockIndex);
+        int numMoves = 0;
+
+        long remainingFlags = uncoveredFlags;
+        while (remainingFlags != 0) {
+            int pyramidIndex = Long.numberOfTrailingZeros(remainingFlags);
+            remainingFlags &= remainingFlags - 1;
+            numMoves = addRemovalMasks(pyramidIndex, remainingFlags, numMoves);
+        }
+        if (!State.isStockEmpty(stockIndex)) {
+            numMoves = addRemovalMasks(stockIndex, uncoveredFlags, numMoves);
+            moves[numMoves++] = (long) (stockIndex ^ stockIndex + 1) << 52;
+        }
+        if (!State.isWasteEmpty(wasteIndex)) {
+            numMoves = addRemovalMasks(wasteIndex, uncoveredFlags, numMoves);
+            if (!State.isStockEmpty(stockIndex) && ((matchMasks[stockIndex] & (1L << wasteIndex)) != 0)) {
+                moves[numMoves++] = (1L << stockIndex) | (1L << wasteIndex);
+            }
+        }
+        int recycleCount = State.getRecycleCount(state);
+        if (State.isStockEmpty(stockIndex) && (recycleCount < 2)) {
+            long recycleMask = (long) (recycleCount ^ recycleCount + 1) << 58;
+            moves[numMoves++] = recycleMask | ((stockIndex ^ 28L) << 52);
+        }
+        return Arrays.copyOf(moves, numMoves);
+    }
+
+    // Add the masks to remove the card at deckIndex by itself if it's a king,
+    // or with each matching card in otherFlags, and return the new number of
+    // moves.
+    private int addRemovalMasks(int deckIndex, long otherFlags, int numMoves) {
+        long cardFlag = 1L << deckIndex;
+        if ((kingFlags & cardFlag) != 0) {
+            moves[numMoves++] = cardFlag;
+        } else {
+            long matchFlags = otherFlags & matchMasks[deckIndex];
+            while (matchFlags != 0) {
+                moves[numMoves++] = cardFlag | Long.lowestOneBit(matchFlags);
+                matchFlags &= matchFlags - 1;
+            }
+        }
+        return numMoves;
+    }
+}
@@ -2,11 +2,8 @@ package com.secondthorn.solitaire.pyramid.service.solver;
 
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.model.Step;
-import gnu.trove.map.TLongLongMap;
-import gnu.trove.map.hash.TLongLongHashMap;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -16,6 +13,11 @@ import java.util.List;
  * <p>
  * When there's no solution, the player can either ask for a new deal, or try a
  * ScoreChallengeSolver if they want to maximize the score.
+ * <p>
+ * Before searching, the deck's pyramid distances are checked to see if the
+ * pyramid could be cleared even if every stock/waste card were always
+ * available.  If not, there's no need to search at all.  During the search,
+ * states whose pyramid can't be cleared that way aren't expanded.
  */
 public class BoardChallengeSolver extends BFSSolver {
 
@@ -25,22 +27,15 @@ public class BoardChallengeSolver extends BFSSolver {
      */
     public List<Solution> solve(Deck deck) {
         List<Solution> solutions = new ArrayList<>();
-        LongFIFOQueue fringe = new LongFIFOQueue();
-        TLongLongMap seenStates = new TLongLongHashMap();
-        long state = State.INITIAL_STATE;
-        if (!isUnclearable(state, deck)) {
-            fringe.enqueue(State.INITIAL_STATE);
-        }
-        while (!fringe.isEmpty()) {
-            state = fringe.dequeue();
-            if (State.isPyramidClear(state)) {
-                List<Step> steps = getSteps(seenStates, state, deck);
+        if (deck.pyramidDistance(getStartState()) != -1) {
+            SearchEngine engine = newClearBoardSearchEngine(deck);
+            long state = engine.search(deck, new ClearBoardObjective(deck));
+            if (state != -1) {
+                List<Step> steps = getSteps(engine, state, deck);
                 int score = score(state, deck);
                 solutions.add(new Solution("", score, true, steps));
                 return solutions;
             }
-            long[] masks = deck.getSuccessorMasks(state);
-            addSuccessorStates(fringe, seenStates, state, masks);
         }
         // if there's no way to clear the board, ask for a new deal
         List<Step> steps = new ArrayList<>();
@@ -49,8 +44,33 @@ public class BoardChallengeSolver extends BFSSolver {
         return solutions;
     }
 
-    private boolean isUnclearable(long state, Deck deck) {
-        return Arrays.stream(deck.getUnclearableMasks(state))
-                .anyMatch(mask -> (state & mask) == 0);
+    // Create the search engine to search for a way to clear the board with.
+    protected SearchEngine newClearBoardSearchEngine(Deck deck) {
+        return newSearchEngine();
+    }
+
+    // The goal is any state with the pyramid cleared, and every other state
+    // that could still clear the pyramid is searched.
+    private static class ClearBoardObjective implements Objective {
+        private final Deck deck;
+
+        ClearBoardObjective(Deck deck) {
+            this.deck = deck;
+        }
+
+        @Override
+        public boolean isGoal(long state) {
+            return State.isPyramidClear(state);
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            return deck.pyramidDistance(state) != -1;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
     }
 }
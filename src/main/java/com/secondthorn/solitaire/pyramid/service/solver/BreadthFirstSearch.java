@@ -0,0 +1,141 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.function.Function;
+
+/**
+ * A SearchEngine for breadth-first search, keeping every state it has seen
+ * in memory along with the state it was reached from, in a SeenStateTable.  States are searched
+ * one layer (number of steps from the initial state) at a time, and the
+ * engine tracks where each layer ends.
+ * <p>
+ * Removing cards from unrelated parts of the pyramid can be done in any order
+ * to reach the same state in the same number of steps.  The engine only
+ * generates one of these orders, see addSuccessorStates().
+ */
+public final class BreadthFirstSearch extends SearchEngine {
+    private final LongFIFOQueue fringe;
+    private final Function<Deck, SeenStateTable> seenStatesFactory;
+    private SeenStateTable seenStates;
+    private int nextLayerSize;
+
+    /**
+     * Create a breadth-first search engine that keeps the states it has seen
+     * in a HashSeenStateTable.
+     */
+    public BreadthFirstSearch() {
+        this(deck -> new HashSeenStateTable());
+    }
+
+    /**
+     * Create a breadth-first search engine that keeps the states it has seen
+     * in a table created for the deck being searched.
+     */
+    public BreadthFirstSearch(Function<Deck, SeenStateTable> seenStatesFactory) {
+        this(seenStatesFactory, new LongFIFOQueue());
+    }
+
+    /**
+     * Create a breadth-first search engine that keeps the states it has seen
+     * in a table created for the deck being searched, and the states waiting
+     * to be searched in the given queue, for example one that spills to disk.
+     */
+    public BreadthFirstSearch(Function<Deck, SeenStateTable> seenStatesFactory, LongFIFOQueue fringe) {
+        this.seenStatesFactory = seenStatesFactory;
+        this.fringe = fringe;
+    }
+
+    @Override
+    public long search(Deck deck, Objective objective) {
+        seenStates = seenStatesFactory.apply(deck);
+        try {
+            long goalState = searchLayers(newMoveGenerator(deck), objective);
+            stats.setSeenStates(seenStates.size(), seenStates.getMemoryUsage());
+            return goalState;
+        } finally {
+            // the states left when the search stops early, or throws, are
+            // thrown away along with any of them spilled to disk
+            fringe.clear();
+        }
+    }
+
+    private long searchLayers(MoveGenerator moveGenerator, Objective objective) {
+        long initialState = getStartState();
+        if (objective.isGoal(initialState)) {
+            return initialState;
+        }
+        seenStates.put(initialState, -1);
+        fringe.enqueue(initialState);
+        int layerSize = 1;
+        nextLayerSize = 0;
+        while (!fringe.isEmpty()) {
+            long state = fringe.dequeue();
+            long[] successorMasks = moveGenerator.getSuccessorMasks(state);
+            if (objective.expand(state, successorMasks)) {
+                long goalState = addSuccessorStates(state, successorMasks, objective);
+                if (goalState != -1) {
+                    return goalState;
+                }
+            }
+            if (objective.isFinished()) {
+                break;
+            }
+            if (--layerSize == 0) {
+                // every state in the next layer has been generated now
+                stats.addLayer(nextLayerSize);
+                layerSize = nextLayerSize;
+                nextLayerSize = 0;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long getParent(long state) {
+        return (seenStates == null) ? -1 : seenStates.getParent(state);
+    }
+
+    // Given a list of successor masks, generate the successors for a state
+    // and insert them into the fringe (queue of search states to examine).
+    // Return the first successor that reaches the goal, or -1 if there isn't
+    // one.
+    //
+    // If the state was reached by removing only pyramid cards, that removal
+    // doesn't change the stock or waste piles or whether any unrelated
+    // pyramid card is covered.  So any move here that doesn't involve a
+    // pyramid card covering or covered by the removed cards could have been
+    // made first, reaching the same state in the same number of steps.  Only
+    // one order is generated: moves that don't only remove pyramid cards go
+    // first, then pyramid card removals in order of their masks.  The skipped
+    // order's result is still reached through a different parent, so
+    // breadth-first search still finds the shortest solutions.
+    private long addSuccessorStates(long state, long[] successorMasks, Objective objective) {
+        // the initial state's parent is -1, which makes previousMask a mask
+        // that doesn't only remove pyramid cards
+        long previousMask = state ^ seenStates.getParent(state);
+        boolean canSkip = isPyramidMask(previousMask);
+        long relatedFlags = canSkip ? Pyramid.relatedPyramidFlags(previousMask) : 0L;
+        for (long mask : successorMasks) {
+            if (canSkip && ((mask & relatedFlags) == 0) && (!isPyramidMask(mask) || (mask < previousMask))) {
+                stats.addSkippedPermutation();
+                continue;
+            }
+            long nextState = State.adjustStockIndex(state ^ mask);
+            boolean duplicate = seenStates.containsKey(nextState);
+            stats.addGeneratedState(duplicate);
+            if (!duplicate) {
+                seenStates.put(nextState, state);
+                if (objective.isGoal(nextState)) {
+                    return nextState;
+                }
+                fringe.enqueue(nextState);
+                nextLayerSize++;
+            }
+        }
+        return -1;
+    }
+
+    // Return true if the successor mask only removes pyramid cards.
+    static boolean isPyramidMask(long mask) {
+        return (mask & ~0xFFFFFFFL) == 0;
+    }
+}
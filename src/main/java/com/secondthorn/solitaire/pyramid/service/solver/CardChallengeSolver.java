@@ -2,8 +2,6 @@ package com.secondthorn.solitaire.pyramid.service.solver;
 
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.model.Step;
-import gnu.trove.map.TLongLongMap;
-import gnu.trove.map.hash.TLongLongHashMap;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,12 +20,15 @@ import java.util.List;
  * <p>
  * The solver will return both solutions when it can't be certain there's one
  * right answer.
+ * <p>
+ * States that can't remove enough cards of the goal rank to reach the goal or
+ * beat the best solutions found so far are not expanded.
  */
 
 public class CardChallengeSolver extends BFSSolver {
-    private int numToRemove;
+    int numToRemove;
     private char rankToRemove;
-    private int rankValueToRemove;
+    int rankValueToRemove;
 
     /**
      * Create a pyramid solitaire solver that tries to remove the cards of the
@@ -63,89 +64,54 @@ public class CardChallengeSolver extends BFSSolver {
      */
     public List<Solution> solve(Deck deck) {
         List<Solution> solutions = new ArrayList<>();
-        LongFIFOQueue fringe = new LongFIFOQueue();
-        TLongLongMap seenStates = new TLongLongHashMap();
-
-        long goalReachedState = -1;
-        int goalReachedScore = 0;
-        long bestClearState = -1;
-        int bestClearScore = 0;
-        long bestNonClearState = -1;
-        int bestNonClearScore = 0;
-
-        fringe.enqueue(State.INITIAL_STATE);
-        while (!fringe.isEmpty()) {
-            long state = fringe.dequeue();
-            int score = numCardsOfRankRemoved(state, rankValueToRemove, deck);
-            if (score == numToRemove) {
-                goalReachedState = state;
-                goalReachedScore = score;
-                break;
-            }
-            if (State.isPyramidClear(state)) {
-                if (score > bestClearScore) {
-                    bestClearState = state;
-                    bestClearScore = score;
-                    if (bestSolutionsFound(bestClearScore, bestNonClearScore)) {
-                        break;
-                    }
-                }
-            } else {
-                long[] masks = deck.getSuccessorMasks(state);
-                if (masks.length == 0) {
-                    if (score > bestNonClearScore) {
-                        bestNonClearState = state;
-                        bestNonClearScore = score;
-                        if (bestSolutionsFound(bestClearScore, bestNonClearScore)) {
-                            break;
-                        }
-                    }
-                } else {
-                    addSuccessorStates(fringe, seenStates, state, masks);
-                }
-            }
-        }
+        SearchEngine engine = newSearchEngine();
+        CardObjective objective = new CardObjective(deck);
+        long goalReachedState = engine.search(deck, objective);
+        long bestClearState = objective.bestClearState;
+        int bestClearScore = objective.bestClearScore;
+        long bestNonClearState = objective.bestNonClearState;
+        int bestNonClearScore = objective.bestNonClearScore;
 
         if (goalReachedState != -1) {
             // add the state where the goal is reached
-            solutions.add(goalReached(deck, seenStates, goalReachedState, goalReachedScore));
+            solutions.add(goalReached(deck, engine, goalReachedState, numToRemove));
         } else if ((bestClearState != -1) && (bestNonClearState == -1)) {
             // add the best state that cleared the board
-            solutions.add(clearedState(deck, seenStates, bestClearState, bestClearScore));
+            solutions.add(clearedState(deck, engine, bestClearState, bestClearScore));
         } else if ((bestClearState == -1) && (bestNonClearState != -1)) {
             // add the best state that didn't clear the board
-            solutions.add(nonClearedState(deck, seenStates, bestNonClearState, bestNonClearScore));
+            solutions.add(nonClearedState(deck, engine, bestNonClearState, bestNonClearScore));
         } else if ((bestClearState != -1)) {
             if (bestClearScore >= bestNonClearScore) {
                 // add the best clearing score since it's better
-                solutions.add(clearedState(deck, seenStates, bestClearState, bestClearScore));
+                solutions.add(clearedState(deck, engine, bestClearState, bestClearScore));
             } else {
                 // add both
-                solutions.add(clearedState(deck, seenStates, bestClearState, bestClearScore));
-                solutions.add(nonClearedState(deck, seenStates, bestNonClearState, bestNonClearScore));
+                solutions.add(clearedState(deck, engine, bestClearState, bestClearScore));
+                solutions.add(nonClearedState(deck, engine, bestNonClearState, bestNonClearScore));
             }
         }
 
         return solutions;
     }
 
-    private Solution goalReached(Deck deck, TLongLongMap seenStates, long state, int numRemoved) {
-        return createSolution(deck, seenStates, state, numRemoved, State.isPyramidClear(state));
+    Solution goalReached(Deck deck, SearchEngine engine, long state, int numRemoved) {
+        return createSolution(deck, engine, state, numRemoved, State.isPyramidClear(state));
     }
 
-    private Solution clearedState(Deck deck, TLongLongMap seenStates, long state, int numRemoved) {
-        return createSolution(deck, seenStates, state, numRemoved, true);
+    private Solution clearedState(Deck deck, SearchEngine engine, long state, int numRemoved) {
+        return createSolution(deck, engine, state, numRemoved, true);
     }
 
-    private Solution nonClearedState(Deck deck, TLongLongMap seenStates, long state, int numRemoved) {
-        return createSolution(deck, seenStates, state, numRemoved, false);
+    private Solution nonClearedState(Deck deck, SearchEngine engine, long state, int numRemoved) {
+        return createSolution(deck, engine, state, numRemoved, false);
     }
 
 
-    private Solution createSolution(Deck deck, TLongLongMap seenStates,
+    private Solution createSolution(Deck deck, SearchEngine engine,
                                     long endState, int numCardsCleared,
                                     boolean boardCleared) {
-        List<Step> steps = getSteps(seenStates, endState, deck);
+        List<Step> steps = getSteps(engine, endState, deck);
         int score = score(endState, deck);
         String description = description(numCardsCleared);
         return new Solution(description, score, boardCleared, steps);
@@ -157,7 +123,7 @@ public class CardChallengeSolver extends BFSSolver {
         return "Remove " + numCardsCleared + " " + cards + " of rank " + rankToRemove + ".";
     }
 
-    private int numCardsOfRankRemoved(long state, int rankValue, Deck deck) {
+    int numCardsOfRankRemoved(long state, int rankValue, Deck deck) {
         // using Kernighan's method in The C Programming Language 2nd Ed.
         // Exercise 2-9 to count set bits
         int numCardsRemoved = 4;
@@ -169,13 +135,109 @@ public class CardChallengeSolver extends BFSSolver {
         return numCardsRemoved;
     }
 
-    // For convenience, check if you've already found the best possible
-    // solutions for both clearing the board and not clearing the board (all
-    // four cards removed in the best solutions).  If true, we don't need to
-    // keep looking for solutions.
-    private boolean bestSolutionsFound(int bestClearScore, int bestNonClearScore) {
-        return (bestClearScore == 4) && (bestNonClearScore == 4);
+    // Return an upper bound on the number of cards of the goal rank that can
+    // be removed from the state onward.  Pyramid cards that can never be
+    // removed don't count, and neither do the remaining cards beyond the
+    // number of cards left to remove them with.
+    int maxCardsOfRankRemoved(long state, long blockedFlags, Deck deck) {
+        long removableFlags = State.getDeckFlags(state) & ~blockedFlags;
+        int numRemovable = Long.bitCount(removableFlags & deck.cardRankMask(rankValueToRemove));
+        if (rankValueToRemove != 13) {
+            int numMatches = Long.bitCount(removableFlags & deck.cardRankMask(13 - rankValueToRemove));
+            numRemovable = Math.min(numRemovable, numMatches);
+        }
+        return numCardsOfRankRemoved(state, rankValueToRemove, deck) + numRemovable;
+    }
+
+    // Return true if the state could still lead to reaching the goal or to a
+    // better solution than the best ones found so far.  States with pyramid
+    // cards that can never be removed can't lead to clearing the board.
+    private boolean canImprove(long state, Deck deck, int bestClearScore, int bestNonClearScore) {
+        long blockedFlags = deck.blockedPyramidFlags(state);
+        int bound = maxCardsOfRankRemoved(state, blockedFlags, deck);
+        return (bound >= numToRemove) ||
+                (bound > bestNonClearScore) ||
+                ((blockedFlags == 0) && (bound > bestClearScore));
     }
 
+    // Check if you've already found the best possible solutions for both
+    // clearing the board and not clearing the board (as many cards removed as
+    // the initial state allows).  If true, we don't need to keep looking for
+    // solutions.  If the board can't be cleared at all, only the best
+    // solution without clearing it matters.
+    private boolean bestSolutionsFound(int bestClearScore, int bestNonClearScore, int maxScore, boolean clearable) {
+        return (!clearable || (bestClearScore >= maxScore)) && (bestNonClearScore >= maxScore);
+    }
+
+    // The goal is to remove the goal number of cards of the rank.  Until
+    // then, keep track of the best states that end the game with and without
+    // clearing the board.
+    private class CardObjective implements Objective {
+        private final Deck deck;
+        private final int maxScore;
+        private final boolean clearable;
+        private long bestClearState = -1;
+        private int bestClearScore = 0;
+        private long bestNonClearState = -1;
+        private int bestNonClearScore = 0;
+        private boolean finished = false;
+
+        CardObjective(Deck deck) {
+            this.deck = deck;
+            long startState = getStartState();
+            long initialBlockedFlags = deck.blockedPyramidFlags(startState);
+            this.maxScore = maxCardsOfRankRemoved(startState, initialBlockedFlags, deck);
+            this.clearable = initialBlockedFlags == 0;
+        }
+
+        @Override
+        public boolean isGoal(long state) {
+            return numCardsOfRankRemoved(state, rankValueToRemove, deck) == numToRemove;
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            if (!canImprove(state, deck, bestClearScore, bestNonClearScore)) {
+                return false;
+            }
+            int score = numCardsOfRankRemoved(state, rankValueToRemove, deck);
+            if (State.isPyramidClear(state)) {
+                if (score > bestClearScore) {
+                    bestClearState = state;
+                    bestClearScore = score;
+                    finished = bestSolutionsFound(bestClearScore, bestNonClearScore, maxScore, clearable);
+                }
+                return false;
+            }
+            if (successorMasks.length == 0) {
+                if (score > bestNonClearScore) {
+                    bestNonClearState = state;
+                    bestNonClearScore = score;
+                    finished = bestSolutionsFound(bestClearScore, bestNonClearScore, maxScore, clearable);
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public long[] getProgress() {
+            return new long[]{bestClearState, bestClearScore, bestNonClearState, bestNonClearScore, finished ? 1 : 0};
+        }
+
+        @Override
+        public void setProgress(long[] progress) {
+            bestClearState = progress[0];
+            bestClearScore = (int) progress[1];
+            bestNonClearState = progress[2];
+            bestNonClearScore = (int) progress[3];
+            finished = progress[4] != 0;
+        }
+    }
 
 }
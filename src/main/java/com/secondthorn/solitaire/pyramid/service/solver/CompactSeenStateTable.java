@@ -0,0 +1,205 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.map.hash.TLongByteHashMap;
+
+/**
+ * A SeenStateTable that uses about a quarter of the memory of
+ * HashSeenStateTable.
+ * <p>
+ * States only use 60 bits, and they're scrambled so that the highest bits are
+ * spread evenly.  The highest bits pick a bucket of slots, so only the rest
+ * of the bits (the remainder) need to be stored in the slot.  Instead of
+ * the parent state, the slot holds a one byte code for the move from the
+ * parent, see MoveCodes.  The slots are packed together in an array of longs
+ * without any wasted bits, so with a million buckets each state takes 48
+ * bits (40 bits of remainder and 8 bits of move code).
+ * <p>
+ * When a bucket is full, extra states go in a small hash map.  When the
+ * table gets too full, the number of buckets doubles and one more bit of
+ * each state picks the bucket.
+ */
+public class CompactSeenStateTable implements SeenStateTable {
+    private static final int STATE_BITS = 60;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+    // an odd number so multiplying by it can be undone
+    private static final long SCRAMBLE_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int SLOTS_PER_BUCKET = 8;
+    private static final int MOVE_BITS = 8;
+    private static final int INITIAL_BUCKET_BITS = 10;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private final MoveCodes moveCodes;
+    private int bucketBits;
+    private int remainderBits;
+    private int slotBits;
+    private long slotMask;
+    private long[] slots;
+    private byte[] bucketSizes;
+    private TLongByteHashMap overflow;
+    private int size;
+
+    /**
+     * Create an empty table for the states of a game with the given deck.
+     */
+    public CompactSeenStateTable(Deck deck) {
+        moveCodes = new MoveCodes(deck);
+        allocate(INITIAL_BUCKET_BITS);
+    }
+
+    private void allocate(int numBucketBits) {
+        bucketBits = numBucketBits;
+        remainderBits = STATE_BITS - bucketBits;
+        slotBits = remainderBits + MOVE_BITS;
+        slotMask = (1L << slotBits) - 1;
+        long numSlots = (long) SLOTS_PER_BUCKET << bucketBits;
+        // one extra long so reading a slot never goes past the end
+        slots = new long[(int) ((numSlots * slotBits) >>> 6) + 1];
+        bucketSizes = new byte[1 << bucketBits];
+        overflow = new TLongByteHashMap();
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(long state) {
+        return findMove(scramble(state)) != -1;
+    }
+
+    @Override
+    public void put(long state, long parent) {
+        long key = scramble(state);
+        int move = moveCodes.encode(parent, state);
+        if (!replaceMove(key, move)) {
+            insert(key, move);
+            if (size > MAX_LOAD_FACTOR * ((long) SLOTS_PER_BUCKET << bucketBits)) {
+                grow();
+            }
+        }
+    }
+
+    @Override
+    public long getParent(long state) {
+        int move = findMove(scramble(state));
+        return (move == -1) ? -1 : moveCodes.decode(state, move);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        // a key, a value, and a status byte for each overflow slot
+        return (slots.length * 8L) + bucketSizes.length + (overflow.capacity() * 10L);
+    }
+
+    // Spread the state's bits so the highest bits pick buckets evenly.  This
+    // can be undone, so two states never get scrambled to the same key.
+    private static long scramble(long state) {
+        long key = state ^ (state >>> 31);
+        return (key * SCRAMBLE_MULTIPLIER) & STATE_MASK;
+    }
+
+    // Return the move code stored for the key, or -1 if it isn't there.
+    private int findMove(long key) {
+        int bucket = (int) (key >>> remainderBits);
+        long remainder = key & ((1L << remainderBits) - 1);
+        long firstSlot = (long) bucket * SLOTS_PER_BUCKET;
+        int bucketSize = bucketSizes[bucket];
+        for (int i = 0; i < bucketSize; i++) {
+            long slot = readSlot(firstSlot + i);
+            if ((slot >>> MOVE_BITS) == remainder) {
+                return (int) (slot & 0xFF);
+            }
+        }
+        if ((bucketSize == SLOTS_PER_BUCKET) && overflow.containsKey(key)) {
+            return overflow.get(key) & 0xFF;
+        }
+        return -1;
+    }
+
+    // Replace the move code stored for the key, return false if the key
+    // isn't there.
+    private boolean replaceMove(long key, int move) {
+        int bucket = (int) (key >>> remainderBits);
+        long remainder = key & ((1L << remainderBits) - 1);
+        long firstSlot = (long) bucket * SLOTS_PER_BUCKET;
+        int bucketSize = bucketSizes[bucket];
+        for (int i = 0; i < bucketSize; i++) {
+            if ((readSlot(firstSlot + i) >>> MOVE_BITS) == remainder) {
+                writeSlot(firstSlot + i, (remainder << MOVE_BITS) | move);
+                return true;
+            }
+        }
+        if ((bucketSize == SLOTS_PER_BUCKET) && overflow.containsKey(key)) {
+            overflow.put(key, (byte) move);
+            return true;
+        }
+        return false;
+    }
+
+    // Add a key that isn't in the table yet.
+    private void insert(long key, int move) {
+        int bucket = (int) (key >>> remainderBits);
+        int bucketSize = bucketSizes[bucket];
+        if (bucketSize < SLOTS_PER_BUCKET) {
+            long remainder = key & ((1L << remainderBits) - 1);
+            writeSlot(((long) bucket * SLOTS_PER_BUCKET) + bucketSize, (remainder << MOVE_BITS) | move);
+            bucketSizes[bucket]++;
+        } else {
+            overflow.put(key, (byte) move);
+        }
+        size++;
+    }
+
+    // Double the number of buckets and add everything back in.  The key is
+    // just the bucket followed by the remainder, so the states don't need
+    // to be scrambled again.
+    private void grow() {
+        long[] oldSlots = slots;
+        byte[] oldBucketSizes = bucketSizes;
+        TLongByteHashMap oldOverflow = overflow;
+        int oldRemainderBits = remainderBits;
+        int oldSlotBits = slotBits;
+        long oldSlotMask = slotMask;
+        allocate(bucketBits + 1);
+        for (int bucket = 0; bucket < oldBucketSizes.length; bucket++) {
+            long firstSlot = (long) bucket * SLOTS_PER_BUCKET;
+            for (int i = 0; i < oldBucketSizes[bucket]; i++) {
+                long slot = readSlot(oldSlots, oldSlotBits, oldSlotMask, firstSlot + i);
+                long key = ((long) bucket << oldRemainderBits) | (slot >>> MOVE_BITS);
+                insert(key, (int) (slot & 0xFF));
+            }
+        }
+        oldOverflow.forEachEntry((key, move) -> {
+            insert(key, move & 0xFF);
+            return true;
+        });
+    }
+
+    private long readSlot(long index) {
+        return readSlot(slots, slotBits, slotMask, index);
+    }
+
+    private static long readSlot(long[] slots, int slotBits, long slotMask, long index) {
+        long bitIndex = index * slotBits;
+        int word = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        long value = slots[word] >>> offset;
+        if (offset + slotBits > 64) {
+            value |= slots[word + 1] << (64 - offset);
+        }
+        return value & slotMask;
+    }
+
+    private void writeSlot(long index, long value) {
+        long bitIndex = index * slotBits;
+        int word = (int) (bitIndex >>> 6);
+        int offset = (int) (bitIndex & 63);
+        slots[word] = (slots[word] & ~(slotMask << offset)) | (value << offset);
+        if (offset + slotBits > 64) {
+            int shift = 64 - offset;
+            slots[word + 1] = (slots[word + 1] & ~(slotMask >>> shift)) | (value >>> shift);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * Predicts whether solving a challenge will be quick, before solving it, so
+ * quick challenges don't wait behind slow ones.
+ * <p>
+ * Most of the cost of a search comes from the number of cards left in play.
+ * From the start of a game a search takes seconds, but with a few pairs
+ * removed it finishes in well under a second, because the number of states
+ * shrinks so fast.  Board Challenges are also quick when the pyramid
+ * distance shows the board can't be cleared (including when a pyramid card
+ * has no matching card it could ever be paired with), because the solver
+ * doesn't search at all.
+ */
+public final class CostPredictor {
+    /**
+     * The most cards left in play for a search to be predicted quick.
+     */
+    static final int MAX_QUICK_CARDS = 44;
+
+    private CostPredictor() {
+    }
+
+    /**
+     * Return true if a search from the state is expected to be quick.
+     */
+    public static boolean isQuick(long state) {
+        return Long.bitCount(State.getDeckFlags(state)) <= MAX_QUICK_CARDS;
+    }
+
+    /**
+     * Return true if a Board Challenge with the deck, solved from the state,
+     * is expected to be quick.
+     */
+    public static boolean isQuickBoardChallenge(Deck deck, long state) {
+        return (deck.pyramidDistance(state) == -1) || isQuick(state);
+    }
+}
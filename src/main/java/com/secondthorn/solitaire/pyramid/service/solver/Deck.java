@@ -8,10 +8,12 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A Card Deck in Pyramid Solitaire contains one of each of the 52 standard
@@ -22,13 +24,26 @@ import java.util.stream.Collectors;
  * Decks contain precalculated information about the cards that will be useful
  * to the solver.  Use an index from 0 to 51, a deckIndex, to look up
  * information about a given card in the deck.
+ * <p>
+ * A Deck is also a MoveGenerator that looks up successor masks in a table for
+ * every possible combination of pyramid cards, stock, waste, and recycle
+ * count.  The table is only built the first time it's used, so solves using
+ * BitboardMoveGenerator instead never build it.
  */
-public class Deck {
+public class Deck implements MoveGenerator {
+    // indexes into Pyramid.allPyramidFlags, from the fewest cards to the most
+    private static final int[] PYRAMID_FLAGS_BY_SIZE = IntStream.range(0, Pyramid.allPyramidFlags.length)
+            .boxed()
+            .sorted(Comparator.comparingInt(i -> Long.bitCount(Pyramid.allPyramidFlags[i])))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
     private Card[] cards;
     private int[] values;
     private long[] cardRankMasks;
     private TLongObjectMap<long[]> unclearableMasks;
-    private TLongObjectMap<long[][][][]> successorMasks;
+    private byte[] pyramidDistances;
+    private volatile TLongObjectMap<long[][][][]> successorMasks;
 
     /**
      * Create a Deck out of a String containing Cards in their two-letter
@@ -45,7 +60,7 @@ public class Deck {
         this.values = calcCardValues();
         this.cardRankMasks = calcCardRankMasks(values);
         this.unclearableMasks = calcUnclearableMasks();
-        this.successorMasks = calcSuccessorMasks();
+        this.pyramidDistances = calcPyramidDistances();
     }
 
     public static void validateDeckString(String deckString) {
@@ -71,6 +86,18 @@ public class Deck {
         return cards[deckIndex];
     }
 
+    /**
+     * Return the deck index of the Card.
+     */
+    int indexOf(Card card) {
+        for (int i = 0; i < cards.length; i++) {
+            if (cards[i] == card) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Return the value of the Card at the given deck index.  Aces are always
      * one, and Kings are thirteen.
@@ -104,17 +131,90 @@ public class Deck {
         return unclearableMasks.get(pyramidFlags);
     }
 
+    /**
+     * Return a lower bound on the number of steps it takes to clear the
+     * pyramid from the state, or -1 if it can't be cleared.  This is the
+     * exact number of steps if the stock and waste piles didn't matter, that
+     * is, if every stock/waste card could be used at any time, as many times
+     * as needed.  Drawing and recycling only make it take longer, so this
+     * never overestimates.
+     */
+    int pyramidDistance(long state) {
+        return pyramidDistances[Pyramid.indexOf(State.getPyramidFlags(state))];
+    }
+
+    /**
+     * Return the pyramid flags of the cards in the state that can never be
+     * removed.  These are the cards with no matching card left to remove them
+     * with (except cards covering or covered by them), plus all the cards
+     * they cover.  Blocking a card can leave other cards without a match, so
+     * this repeats until nothing else is blocked.  The unclearable masks are
+     * checked first because most states don't have any such cards.
+     */
+    long blockedPyramidFlags(long state) {
+        long blockedFlags = 0L;
+        if (!isUnclearable(state)) {
+            return blockedFlags;
+        }
+        long pyramidFlags = State.getPyramidFlags(state);
+        long previousBlockedFlags;
+        do {
+            previousBlockedFlags = blockedFlags;
+            long remainingFlags = pyramidFlags & ~blockedFlags;
+            while (remainingFlags != 0) {
+                int pyramidIndex = Long.numberOfTrailingZeros(remainingFlags);
+                remainingFlags &= remainingFlags - 1;
+                int cardValue = cardValue(pyramidIndex);
+                if (cardValue != 13) {
+                    long matchMask = cardRankMask(13 - cardValue) & Pyramid.UNRELATED_CARD_MASKS[pyramidIndex];
+                    if ((state & ~blockedFlags & matchMask) == 0) {
+                        // the card itself and every card above it that it covers
+                        long coveredMask = (2L << pyramidIndex) - 1;
+                        blockedFlags |= ~Pyramid.UNRELATED_CARD_MASKS[pyramidIndex] & coveredMask & pyramidFlags;
+                    }
+                }
+            }
+        } while (blockedFlags != previousBlockedFlags);
+        return blockedFlags;
+    }
+
+    /**
+     * Return true if the state has any pyramid cards that can't be removed.
+     */
+    boolean isUnclearable(long state) {
+        for (long mask : getUnclearableMasks(state)) {
+            if ((state & mask) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Return an array of masks to XOR with the given state to get its
      * successor states - they still have to be adjusted after XOR by calling
      * State.adjustStockIndex() afterwards.
      */
+    @Override
     public long[] getSuccessorMasks(long state) {
+        TLongObjectMap<long[][][][]> masks = successorMasks;
+        if (masks == null) {
+            masks = buildSuccessorMasks();
+        }
         long pyramidFlags = State.getPyramidFlags(state);
         int stockIndex = State.getStockIndex(state);
         int wasteIndex = State.getWasteIndex(state, stockIndex);
         int recycleCount = State.getRecycleCount(state);
-        return successorMasks.get(pyramidFlags)[stockIndex][wasteIndex][recycleCount];
+        return masks.get(pyramidFlags)[stockIndex][wasteIndex][recycleCount];
+    }
+
+    // Build the successor masks table the first time it's needed, only once
+    // even if several threads are searching with this deck.
+    private synchronized TLongObjectMap<long[][][][]> buildSuccessorMasks() {
+        if (successorMasks == null) {
+            successorMasks = calcSuccessorMasks();
+        }
+        return successorMasks;
     }
 
     /**
@@ -136,7 +236,7 @@ public class Deck {
     // cards in it.  This is slow but doesn't cause problems with assuming
     // whitespace or separators, or accidentally creating cards that weren't
     // there before when stripping whitespace and merging letters together.
-    private static List<Card> readCards(String deckString) {
+    static List<Card> readCards(String deckString) {
         List<Card> cardList = new ArrayList<>();
         for (int i = 0; i < deckString.length() - 1; i++) {
             try {
@@ -211,6 +311,47 @@ public class Deck {
         return map;
     }
 
+    // For each possible value of pyramid flags, find the fewest steps to
+    // clear the pyramid when every stock/waste card is always available, or
+    // -1 if it can't be cleared.  Each step removes a king, a pair of
+    // uncovered pyramid cards, or an uncovered pyramid card using a stock
+    // card of the matching rank.  Removing cards leaves fewer cards on the
+    // pyramid, so going from the fewest cards to the most, each pyramid's
+    // successors are all done before it is.
+    private byte[] calcPyramidDistances() {
+        long stockFlags = 0xFFFFFF0000000L;
+        byte[] distances = new byte[Pyramid.allPyramidFlags.length];
+        for (int i : PYRAMID_FLAGS_BY_SIZE) {
+            long pyramidFlags = Pyramid.allPyramidFlags[i];
+            int[] uncoveredIndexes = Pyramid.allUncoveredIndexes.get(i);
+            int distance = (pyramidFlags == 0) ? 0 : -1;
+            for (int j = 0; j < uncoveredIndexes.length; j++) {
+                int index = uncoveredIndexes[j];
+                long flag = 1L << index;
+                if ((values[index] == 13) || ((cardRankMask(13 - values[index]) & stockFlags) != 0)) {
+                    distance = shorterDistance(distance, distances, pyramidFlags ^ flag);
+                }
+                for (int k = j + 1; k < uncoveredIndexes.length; k++) {
+                    if (isMatch(index, uncoveredIndexes[k])) {
+                        distance = shorterDistance(distance, distances, pyramidFlags ^ flag ^ (1L << uncoveredIndexes[k]));
+                    }
+                }
+            }
+            distances[i] = (byte) distance;
+        }
+        return distances;
+    }
+
+    // Return the shorter of the distance so far, and one more step than the
+    // distance from the next pyramid flags.  -1 means it can't be cleared.
+    private static int shorterDistance(int distance, byte[] distances, long nextPyramidFlags) {
+        int nextDistance = distances[Pyramid.indexOf(nextPyramidFlags)];
+        if ((nextDistance != -1) && ((distance == -1) || (nextDistance + 1 < distance))) {
+            return nextDistance + 1;
+        }
+        return distance;
+    }
+
     // Given the deck of cards, precalculate data to help calculate the
     // successor state for every possible state.  For every possible combo
     // of pyramid cards remaining + stock pile top card + waste pile top card,
@@ -0,0 +1,78 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * A SearchEngine for depth-first search.  It follows one line of moves as far
+ * as it goes before backing up, so it usually reaches a goal after looking at
+ * far fewer states than breadth-first search, but the goal it finds is not
+ * the closest one.  It's for finding out whether a goal can be reached at
+ * all: when it returns -1, every state reachable from the start (that the
+ * objective expands) has been searched.
+ * <p>
+ * States are marked seen when they're generated, so no state is searched
+ * twice no matter how many ways there are to reach it, and each state's
+ * parent is the state it was first generated from.
+ */
+public final class DepthFirstSearch extends SearchEngine {
+    private final SeenStateTable seenStates;
+
+    public DepthFirstSearch() {
+        this(new HashSeenStateTable());
+    }
+
+    /**
+     * Create a depth-first search engine keeping the states it's seen in the
+     * given table.
+     */
+    public DepthFirstSearch(SeenStateTable seenStates) {
+        this.seenStates = seenStates;
+    }
+
+    @Override
+    public long search(Deck deck, Objective objective) {
+        long goalState = searchStack(newMoveGenerator(deck), objective);
+        stats.setSeenStates(seenStates.size(), seenStates.getMemoryUsage());
+        return goalState;
+    }
+
+    private long searchStack(MoveGenerator moveGenerator, Objective objective) {
+        long initialState = getStartState();
+        if (objective.isGoal(initialState)) {
+            return initialState;
+        }
+        seenStates.put(initialState, -1);
+        TLongArrayList stack = new TLongArrayList();
+        stack.add(initialState);
+        while (!stack.isEmpty()) {
+            long state = stack.removeAt(stack.size() - 1);
+            long[] successorMasks = moveGenerator.getSuccessorMasks(state);
+            if (!objective.expand(state, successorMasks)) {
+                continue;
+            }
+            // push in reverse so the first move is the next one searched
+            for (int i = successorMasks.length - 1; i >= 0; i--) {
+                long nextState = State.adjustStockIndex(state ^ successorMasks[i]);
+                boolean duplicate = seenStates.containsKey(nextState);
+                stats.addGeneratedState(duplicate);
+                if (duplicate) {
+                    continue;
+                }
+                seenStates.put(nextState, state);
+                if (objective.isGoal(nextState)) {
+                    return nextState;
+                }
+                stack.add(nextState);
+            }
+            if (objective.isFinished()) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long getParent(long state) {
+        return seenStates.getParent(state);
+    }
+}
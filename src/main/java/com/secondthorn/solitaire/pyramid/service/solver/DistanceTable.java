@@ -0,0 +1,347 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.map.TLongByteMap;
+import gnu.trove.map.hash.TLongByteHashMap;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A table of the fewest steps it takes to clear the pyramid from every state
+ * reachable in a game with a particular deck.  With the table, the best next
+ * move from any state is just the successor that's one step closer, so
+ * players asking for a hint in the middle of a game don't need a new solve.
+ * <p>
+ * The game never returns to a state it has been in, so the states form a
+ * directed acyclic graph.  The table is built with one exhaustive depth
+ * first pass from the initial state: each state's distance is worked out
+ * after all of its successors' distances are known, one more than the
+ * closest of them.  States whose pyramid can't be cleared even with every
+ * stock card available (Deck.pyramidDistance()) aren't searched at all.
+ * <p>
+ * Only the states that can clear the pyramid are kept.  They're written to
+ * a file as an open addressing hash table, and the file is memory-mapped so
+ * the operating system decides how much of it to keep in memory.
+ */
+public class DistanceTable {
+    private static final long MAGIC = 0x5059524449535431L;
+    private static final int HEADER_BYTES = 24;
+    // slots per mapped chunk, so that each mapped buffer is at most 1 GB
+    private static final int CHUNK_BITS = 27;
+    private static final long SCRAMBLE_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int MAX_DEPTH = 52 + (24 * 3) + 2 + 1;
+
+    private final Deck deck;
+    private final MoveGenerator moveGenerator;
+    private final long capacity;
+    private final long size;
+    private final LongBuffer[] keyChunks;
+    private final ByteBuffer[] distanceChunks;
+    private final MappedByteBuffer[] mappedBuffers;
+    private boolean closed = false;
+
+    private DistanceTable(Deck deck, FileChannel channel) throws IOException {
+        this.deck = deck;
+        this.moveGenerator = new BitboardMoveGenerator(deck);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) == -1) {
+                throw new IOException("Not a distance table file");
+            }
+        }
+        header.flip();
+        if (header.getLong() != MAGIC) {
+            throw new IOException("Not a distance table file");
+        }
+        capacity = header.getLong();
+        size = header.getLong();
+        int numChunks = (int) Math.max(1, capacity >>> CHUNK_BITS);
+        long chunkSlots = Math.min(capacity, 1L << CHUNK_BITS);
+        keyChunks = new LongBuffer[numChunks];
+        distanceChunks = new ByteBuffer[numChunks];
+        mappedBuffers = new MappedByteBuffer[numChunks * 2];
+        long distancesStart = HEADER_BYTES + (capacity * 8);
+        for (int i = 0; i < numChunks; i++) {
+            long firstSlot = i * chunkSlots;
+            MappedByteBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + (firstSlot * 8), chunkSlots * 8);
+            MappedByteBuffer distances = channel.map(FileChannel.MapMode.READ_ONLY,
+                    distancesStart + firstSlot, chunkSlots);
+            keyChunks[i] = keys.asLongBuffer();
+            distanceChunks[i] = distances;
+            mappedBuffers[i * 2] = keys;
+            mappedBuffers[i * 2 + 1] = distances;
+        }
+    }
+
+    /**
+     * Open the distance table for the deck from the file, building it and
+     * writing it to the file first if the file doesn't exist yet.
+     */
+    public static DistanceTable open(Deck deck, Path file) {
+        if (!Files.exists(file)) {
+            build(deck, file, null);
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            // the mapped buffers stay valid after the channel is closed
+            return new DistanceTable(deck, channel);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to open distance table " + file, ex);
+        }
+    }
+
+    /**
+     * Build the distance table for the deck and write it to the file,
+     * throwing a SearchLimitExceededException if it runs past the limit
+     * (unless that's null) before it's done.  The limit counts the states
+     * searched, which also bounds the memory the build takes.
+     */
+    public static void build(Deck deck, Path file, SearchLimit limit) {
+        try {
+            write(calcDistances(deck, limit), file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to write distance table " + file, ex);
+        }
+    }
+
+    /**
+     * Return the number of states that can clear the pyramid.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Unmap the table's file now instead of whenever the garbage collector
+     * gets to it.  The table can't be used after this, so nothing else can
+     * be using it when it's closed.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (MappedByteBuffer buffer : mappedBuffers) {
+            unmap(buffer);
+        }
+    }
+
+    /**
+     * Return the fewest steps to clear the pyramid from the state, or -1 if
+     * it can't be cleared or the state can't be reached in a game.
+     */
+    public int distance(long state) {
+        if (closed) {
+            throw new IllegalStateException("The distance table is closed");
+        }
+        long slot = scramble(state) & (capacity - 1);
+        while (true) {
+            long key = keyAt(slot);
+            if (key == state) {
+                return distanceAt(slot);
+            }
+            if (key == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    /**
+     * Return the state after the best move from the state, or -1 if the
+     * pyramid can't be cleared from it.  If the pyramid is already clear,
+     * the state itself is returned.
+     */
+    public long nextState(long state) {
+        int distance = distance(state);
+        if (distance <= 0) {
+            return (distance == 0) ? state : -1;
+        }
+        for (long mask : moveGenerator.getSuccessorMasks(state)) {
+            long nextState = State.adjustStockIndex(state ^ mask);
+            if (distance(nextState) == distance - 1) {
+                return nextState;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return a description of the best move from the state, or null if the
+     * pyramid can't be cleared from it or is already clear.
+     */
+    public String nextAction(long state) {
+        long nextState = nextState(state);
+        return ((nextState == -1) || (nextState == state)) ? null : BFSSolver.action(state, nextState, deck);
+    }
+
+    private long keyAt(long slot) {
+        return keyChunks[(int) (slot >>> CHUNK_BITS)].get((int) (slot & ((1L << CHUNK_BITS) - 1)));
+    }
+
+    private int distanceAt(long slot) {
+        return distanceChunks[(int) (slot >>> CHUNK_BITS)].get((int) (slot & ((1L << CHUNK_BITS) - 1)));
+    }
+
+    // Free a mapped buffer's memory right away.  There's no public way to
+    // do this, so it's Unsafe.invokeCleaner() on Java 9 and later and the
+    // buffer's Cleaner on Java 8.  If neither works the garbage collector
+    // still frees it eventually.
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException ex) {
+                Method getCleaner = buffer.getClass().getMethod("cleaner");
+                getCleaner.setAccessible(true);
+                Object cleaner = getCleaner.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // leave it to the garbage collector
+        }
+    }
+
+    private static long scramble(long state) {
+        long key = state ^ (state >>> 31);
+        return (key * SCRAMBLE_MULTIPLIER) >>> 4;
+    }
+
+    // Find the distance of every state reachable from the initial state, -1
+    // for the ones that can't clear the pyramid.  This is a depth first
+    // search with an explicit stack, since the longest games are deeper than
+    // the default thread stack size is comfortable with.  Each state's
+    // distance is decided when it's popped off the stack.
+    static TLongByteMap calcDistances(Deck deck, SearchLimit limit) {
+        MoveGenerator moveGenerator = new BitboardMoveGenerator(deck);
+        if (limit != null) {
+            moveGenerator = limit.limit(moveGenerator);
+        }
+        TLongByteMap distances = new TLongByteHashMap();
+        long[] states = new long[MAX_DEPTH];
+        long[][] successorMasks = new long[MAX_DEPTH][];
+        int[] nextMasks = new int[MAX_DEPTH];
+        int[] bestDistances = new int[MAX_DEPTH];
+        if (!push(deck, moveGenerator, distances, State.INITIAL_STATE, 0, states, successorMasks, nextMasks, bestDistances)) {
+            return distances;
+        }
+        int depth = 0;
+        while (depth >= 0) {
+            long state = states[depth];
+            if (nextMasks[depth] < successorMasks[depth].length) {
+                long nextState = State.adjustStockIndex(state ^ successorMasks[depth][nextMasks[depth]++]);
+                if (distances.containsKey(nextState)) {
+                    bestDistances[depth] = closer(bestDistances[depth], distances.get(nextState));
+                } else if (push(deck, moveGenerator, distances, nextState, depth + 1,
+                        states, successorMasks, nextMasks, bestDistances)) {
+                    depth++;
+                } else {
+                    bestDistances[depth] = closer(bestDistances[depth], distances.get(nextState));
+                }
+            } else {
+                int distance = bestDistances[depth];
+                distances.put(state, (byte) distance);
+                depth--;
+                if (depth >= 0) {
+                    bestDistances[depth] = closer(bestDistances[depth], distance);
+                }
+            }
+        }
+        return distances;
+    }
+
+    // Put the state on the stack to be searched and return true, or if its
+    // distance is already clear without searching, record it and return false.
+    private static boolean push(Deck deck, MoveGenerator moveGenerator, TLongByteMap distances, long state,
+                                int depth, long[] states, long[][] successorMasks,
+                                int[] nextMasks, int[] bestDistances) {
+        if (State.isPyramidClear(state)) {
+            distances.put(state, (byte) 0);
+            return false;
+        }
+        if (deck.pyramidDistance(state) == -1) {
+            distances.put(state, (byte) -1);
+            return false;
+        }
+        states[depth] = state;
+        successorMasks[depth] = moveGenerator.getSuccessorMasks(state);
+        nextMasks[depth] = 0;
+        bestDistances[depth] = -1;
+        return true;
+    }
+
+    // Return the closer of the best distance so far and one step more than
+    // a successor's distance.  -1 means the pyramid can't be cleared.
+    private static int closer(int bestDistance, int successorDistance) {
+        if ((successorDistance != -1) && ((bestDistance == -1) || (successorDistance + 1 < bestDistance))) {
+            return successorDistance + 1;
+        }
+        return bestDistance;
+    }
+
+    // Write the states that can clear the pyramid to a new file next to the
+    // given one, then move it into place so a table is never half written.
+    private static void write(TLongByteMap distances, Path file) throws IOException {
+        long count = 0;
+        for (byte distance : distances.values()) {
+            if (distance != -1) {
+                count++;
+            }
+        }
+        long capacity = Long.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), "distances", ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile.toFile(), "rw")) {
+            raf.setLength(HEADER_BYTES + (capacity * 9));
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(MAGIC).putLong(capacity).putLong(count).flip();
+            channel.write(header, 0);
+            int numChunks = (int) Math.max(1, capacity >>> CHUNK_BITS);
+            long chunkSlots = Math.min(capacity, 1L << CHUNK_BITS);
+            LongBuffer[] keys = new LongBuffer[numChunks];
+            MappedByteBuffer[] keyBuffers = new MappedByteBuffer[numChunks];
+            MappedByteBuffer[] values = new MappedByteBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                long firstSlot = i * chunkSlots;
+                keyBuffers[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + (firstSlot * 8), chunkSlots * 8);
+                keys[i] = keyBuffers[i].asLongBuffer();
+                values[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + (capacity * 8) + firstSlot, chunkSlots);
+            }
+            int chunkMask = (1 << CHUNK_BITS) - 1;
+            distances.forEachEntry((state, distance) -> {
+                if (distance != -1) {
+                    long slot = scramble(state) & (capacity - 1);
+                    while (keys[(int) (slot >>> CHUNK_BITS)].get((int) (slot & chunkMask)) != 0) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    keys[(int) (slot >>> CHUNK_BITS)].put((int) (slot & chunkMask), state);
+                    values[(int) (slot >>> CHUNK_BITS)].put((int) (slot & chunkMask), distance);
+                }
+                return true;
+            });
+            for (int i = 0; i < numChunks; i++) {
+                unmap(keyBuffers[i]);
+                unmap(values[i]);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,11 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * Thrown when a deck's DistanceTable is still being built, so there's no
+ * answer from it yet.
+ */
+public class DistanceTableNotReadyException extends RuntimeException {
+    public DistanceTableNotReadyException(String message) {
+        super(message);
+    }
+}
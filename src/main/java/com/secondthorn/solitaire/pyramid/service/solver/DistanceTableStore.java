@@ -0,0 +1,243 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps the DistanceTable files for each deck in a directory on local disk,
+ * and the most recently used ones open.  A deck's table is built the first
+ * time a hint is asked for with it, on a background thread, and the hints
+ * asked for in the meantime get a DistanceTableNotReadyException instead of
+ * waiting.  Building a table searches every state of the game, so only one
+ * is built at a time, with a limit on the states searched and the time it
+ * takes, and only so many decks can wait for their turn.  A deck whose table
+ * runs past the limit isn't tried again for a while, since it would only run
+ * past it again.
+ * <p>
+ * A table that's no longer one of the most recently used is closed as soon
+ * as the hints using it are done, which unmaps its file.
+ */
+public class DistanceTableStore {
+    // how many decks whose tables ran past the limit are remembered
+    private static final int MAX_REMEMBERED_FAILURES = 1024;
+
+    private final Path directory;
+    private final long maxStates;
+    private final long timeBudgetMillis;
+    private final Map<String, OpenTable> openTables;
+    private final Map<String, CompletableFuture<Void>> loadingTables = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> buildingTables = new ConcurrentHashMap<>();
+    private final Map<String, String> failedBuilds;
+    private final ThreadPoolExecutor buildExecutor;
+
+    // An open table, the number of callers using it, and whether it's been
+    // pushed out of openTables and should be closed once they're done.
+    private static class OpenTable {
+        private final DistanceTable table;
+        private int numUsers = 0;
+        private boolean evicted = false;
+
+        private OpenTable(DistanceTable table) {
+            this.table = table;
+        }
+    }
+
+    /**
+     * Create a store keeping its files in the directory, with up to
+     * maxOpenTables tables mapped into memory at once.  Each table is built
+     * within maxStates searched states and timeBudgetMillis milliseconds,
+     * and up to maxQueuedBuilds decks can wait for their tables to be built.
+     */
+    public DistanceTableStore(Path directory, int maxOpenTables, long maxStates, long timeBudgetMillis,
+                              int maxQueuedBuilds) {
+        this.directory = directory;
+        this.maxStates = maxStates;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.openTables = new LinkedHashMap<String, OpenTable>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OpenTable> eldest) {
+                if (size() <= maxOpenTables) {
+                    return false;
+                }
+                OpenTable openTable = eldest.getValue();
+                openTable.evicted = true;
+                if (openTable.numUsers == 0) {
+                    openTable.table.close();
+                }
+                return true;
+            }
+        };
+        this.failedBuilds = Collections.synchronizedMap(new LinkedHashMap<String, String>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_REMEMBERED_FAILURES;
+            }
+        });
+        this.buildExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueuedBuilds), runnable -> {
+                    Thread thread = new Thread(runnable, "distance-table-builder");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Call the function with the distance table for the deck and return
+     * what it returns.  The table is only valid until the function returns.
+     * If the table isn't built yet, start building it and throw a
+     * DistanceTableNotReadyException.  Throw a SearchLimitExceededException
+     * if the table ran past the limit when it was built, or a
+     * RejectedExecutionException if too many decks are waiting for their
+     * tables already.
+     */
+    public <T> T withTable(Deck deck, Function<DistanceTable, T> function) {
+        OpenTable openTable = acquire(fileName(deck), deck);
+        try {
+            return function.apply(openTable.table);
+        } finally {
+            release(openTable);
+        }
+    }
+
+    /**
+     * Start building the deck's table unless it's built or being built, and
+     * return the build, which is already done if the table is built.
+     */
+    CompletableFuture<Void> build(Deck deck) {
+        String key = fileName(deck);
+        Path file = directory.resolve(key);
+        if (Files.exists(file)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String failure = failedBuilds.get(key);
+        if (failure != null) {
+            throw new SearchLimitExceededException(failure);
+        }
+        CompletableFuture<Void> building = new CompletableFuture<>();
+        CompletableFuture<Void> otherBuilding = buildingTables.putIfAbsent(key, building);
+        if (otherBuilding != null) {
+            return otherBuilding;
+        }
+        try {
+            buildExecutor.execute(() -> {
+                try {
+                    Files.createDirectories(directory);
+                    if (!Files.exists(file)) {
+                        DistanceTable.build(deck, file, new SearchLimit(maxStates, timeBudgetMillis));
+                    }
+                    building.complete(null);
+                } catch (SearchLimitExceededException ex) {
+                    failedBuilds.put(key, ex.getMessage());
+                    building.completeExceptionally(ex);
+                } catch (IOException ex) {
+                    building.completeExceptionally(new UncheckedIOException(
+                            "Unable to create directory " + directory, ex));
+                } catch (Throwable ex) {
+                    building.completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    buildingTables.remove(key, building);
+                }
+            });
+        } catch (RuntimeException ex) {
+            buildingTables.remove(key, building);
+            building.completeExceptionally(ex);
+            throw ex;
+        }
+        return building;
+    }
+
+    // Return the open table for the key, opening it if needed, and count the
+    // caller as one of its users.
+    private OpenTable acquire(String key, Deck deck) {
+        while (true) {
+            synchronized (openTables) {
+                OpenTable openTable = openTables.get(key);
+                if (openTable != null) {
+                    openTable.numUsers++;
+                    return openTable;
+                }
+            }
+            CompletableFuture<Void> building = build(deck);
+            if (!building.isDone()) {
+                throw new DistanceTableNotReadyException("The distance table for the deck is being built");
+            }
+            await(building);
+            CompletableFuture<Void> loading = new CompletableFuture<>();
+            CompletableFuture<Void> otherLoading = loadingTables.putIfAbsent(key, loading);
+            if (otherLoading != null) {
+                // wait for the other request to open it, then look again
+                await(otherLoading);
+                continue;
+            }
+            try {
+                OpenTable openTable = new OpenTable(DistanceTable.open(deck, directory.resolve(key)));
+                synchronized (openTables) {
+                    OpenTable existing = openTables.get(key);
+                    if (existing != null) {
+                        // another request opened it just before this one
+                        openTable.table.close();
+                        openTable = existing;
+                    } else {
+                        openTables.put(key, openTable);
+                    }
+                    openTable.numUsers++;
+                }
+                loading.complete(null);
+                return openTable;
+            } catch (Throwable ex) {
+                // even an Error has to reach the requests waiting on this
+                // one, and the entry is removed so a later request tries
+                // again
+                loading.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                loadingTables.remove(key, loading);
+            }
+        }
+    }
+
+    private void release(OpenTable openTable) {
+        synchronized (openTables) {
+            openTable.numUsers--;
+            if (openTable.evicted && (openTable.numUsers == 0)) {
+                openTable.table.close();
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    // The cards of the deck in order, so each deck has its own file.
+    private static String fileName(Deck deck) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 52; i++) {
+            sb.append(deck.cardAt(i));
+        }
+        return sb.append(".distances").toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * A Pyramid Solitaire Board Challenge solver that heads straight for the goal.
+ * <p>
+ * Instead of searching every state one step at a time, it uses A* search
+ * where the heuristic is the deck's pyramid distance: the fewest steps to
+ * clear the pyramid if the stock and waste piles didn't matter.  That never
+ * overestimates, so the solution still takes the fewest steps possible, but
+ * states that can't clear the pyramid quickly are searched last.
+ */
+public class GoalDirectedBoardChallengeSolver extends BoardChallengeSolver {
+    @Override
+    protected SearchEngine newClearBoardSearchEngine(Deck deck) {
+        return useSearchEngine(new AStarSearch(deck::pyramidDistance, 28, getSeenStateTableFactory()));
+    }
+}
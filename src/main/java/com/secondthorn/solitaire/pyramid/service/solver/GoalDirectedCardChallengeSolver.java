@@ -0,0 +1,84 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Pyramid Solitaire Card Challenge solver that heads straight for the goal.
+ * <p>
+ * Instead of searching every state one step at a time, it uses A* search
+ * where the heuristic is the number of cards of the goal rank that still need
+ * to be removed.  Each step removes at most one card of the goal rank so the
+ * heuristic never overestimates, and the solution still takes the fewest
+ * steps possible.  States closest to the goal are searched first, so it
+ * doesn't have to look at every state that doesn't remove any cards of the
+ * goal rank.  States that can't reach the goal at all are not searched.
+ * <p>
+ * If the goal can't be reached, this falls back to CardChallengeSolver to find
+ * the best solutions with and without clearing the board.
+ */
+public class GoalDirectedCardChallengeSolver extends CardChallengeSolver {
+    /**
+     * Create a pyramid solitaire solver that tries to remove the cards of the
+     * goal rank.  Throws an IllegalArgumentException if the goal has already
+     * been reached or if the rank isn't valid.
+     */
+    public GoalDirectedCardChallengeSolver(int numToRemove, char rankToRemove) {
+        super(numToRemove, rankToRemove);
+    }
+
+    /**
+     * Solve the pyramid solitaire game using A* search to reach the goal.  If
+     * the goal can't be reached, return the same solutions as
+     * CardChallengeSolver.
+     */
+    @Override
+    public List<Solution> solve(Deck deck) {
+        SearchEngine engine = useSearchEngine(new AStarSearch(state -> distanceToGoal(state, deck), numToRemove,
+                getSeenStateTableFactory()));
+        long goalState = engine.search(deck, new GoalObjective(deck));
+        if (goalState == -1) {
+            return super.solve(deck);
+        }
+        List<Solution> solutions = new ArrayList<>();
+        solutions.add(goalReached(deck, engine, goalState, numToRemove));
+        return solutions;
+    }
+
+    // Return the number of cards of the goal rank that still need to be
+    // removed from the state, or -1 if the goal can't be reached from it.
+    private int distanceToGoal(long state, Deck deck) {
+        long blockedFlags = deck.blockedPyramidFlags(state);
+        if (maxCardsOfRankRemoved(state, blockedFlags, deck) < numToRemove) {
+            return -1;
+        }
+        return numToRemove - numCardsOfRankRemoved(state, rankValueToRemove, deck);
+    }
+
+    // The only thing that matters is reaching the goal, the heuristic already
+    // keeps the search away from states that can't reach it.
+    private class GoalObjective implements Objective {
+        private final Deck deck;
+
+        GoalObjective(Deck deck) {
+            this.deck = deck;
+        }
+
+        @Override
+        public boolean isGoal(long state) {
+            return numCardsOfRankRemoved(state, rankValueToRemove, deck) == numToRemove;
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.map.hash.TLongLongHashMap;
+
+/**
+ * The default SeenStateTable, a hash map from each state to its parent state.
+ * It's the fastest table but takes a long for both the state and its parent,
+ * plus the free space that keeps the hash map fast.
+ */
+public class HashSeenStateTable implements SeenStateTable {
+    private final TLongLongHashMap parents = new TLongLongHashMap();
+
+    @Override
+    public boolean containsKey(long state) {
+        return parents.containsKey(state);
+    }
+
+    @Override
+    public void put(long state, long parent) {
+        parents.put(state, parent);
+    }
+
+    @Override
+    public long getParent(long state) {
+        return parents.containsKey(state) ? parents.get(state) : -1;
+    }
+
+    @Override
+    public int size() {
+        return parents.size();
+    }
+
+    /**
+     * Remove every state, keeping the memory the table has grown to.
+     */
+    public void clear() {
+        parents.clear();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        // a key, a value, and a status byte for each slot
+        return parents.capacity() * 17L;
+    }
+}
@@ -1,50 +1,130 @@
 package com.secondthorn.solitaire.pyramid.service.solver;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.NoSuchElementException;
 
 /**
  * A FIFO Queue for primitive (unboxed) longs.  This is basically like
  * ArrayDeque but hardcoded to just handle longs and only provide
  * enqueue/dequeue/isEmpty methods.
+ * <p>
+ * Items are stored in fixed-size segments from a LongSegmentPool.  Growing
+ * the queue just takes another segment from the pool without copying
+ * anything, and segments go back to the pool as soon as they've been
+ * dequeued, so the queue shrinks again after a large breadth-first search
+ * layer is done.
+ * <p>
+ * A queue can also be given a directory to spill segments to when it holds
+ * more than a maximum number of segments in memory.  Full segments in the
+ * middle of the queue are written to a temporary file and read back in
+ * order when the front of the queue reaches them.  The file is deleted once
+ * everything in it has been read back, or when the queue is cleared.
  */
 public class LongFIFOQueue {
-    private long[] elements;
-    private int head;
-    private int tail;
+    // marks a segment that was written to the spill file
+    private static final long[] SPILLED = new long[0];
+
+    private final LongSegmentPool pool;
+    private final int segmentSize;
+    private final int maxSegmentsInMemory;
+    private final Path spillDirectory;
+
+    // the segment items are dequeued from and the segment items are
+    // enqueued to, which are the same when the queue fits in one segment
+    private long[] head;
+    private int headIndex;
+    private long[] tail;
+    private int tailIndex;
+    // the full segments between head and tail, in order
+    private final ArrayDeque<long[]> segments = new ArrayDeque<>();
+    private int numSegmentsInMemory;
+    private long size;
+
+    private FileChannel spillFile;
+    private ByteBuffer spillBuffer;
+    private long spillReadPosition;
+    private long spillWritePosition;
+    private int numSpilledSegments;
 
     /**
-     * Create a FIFO queue for primitive longs.
+     * Create a FIFO queue for primitive longs with its own pool of segments.
      */
     public LongFIFOQueue() {
-        this(128);
+        this(new LongSegmentPool());
+    }
+
+    /**
+     * Create a FIFO queue for primitive longs that shares a pool of segments
+     * with other queues.
+     */
+    public LongFIFOQueue(LongSegmentPool pool) {
+        this(pool, Integer.MAX_VALUE, null);
     }
 
     /**
-     * Create a FIFO queue for primitive longs big enough to hold the capacity
-     * without having to resize.  It will still grow if necessary later on.
+     * Create a FIFO queue for primitive longs that keeps at most
+     * maxSegmentsInMemory segments in memory, and writes the rest to a
+     * temporary file in spillDirectory.
      */
-    public LongFIFOQueue(int capacity) {
-        int size = Integer.max(16, nextPowerOf2(capacity - 1));
-        elements = new long[size];
-        head = 0;
-        tail = 0;
+    public LongFIFOQueue(LongSegmentPool pool, int maxSegmentsInMemory, Path spillDirectory) {
+        if (maxSegmentsInMemory < 2) {
+            throw new IllegalArgumentException("The queue needs at least 2 segments in memory");
+        }
+        this.pool = pool;
+        this.segmentSize = pool.getSegmentSize();
+        this.maxSegmentsInMemory = maxSegmentsInMemory;
+        this.spillDirectory = spillDirectory;
     }
 
     /**
      * Add an item to the rear of the queue.
      */
     void enqueue(long item) {
-        elements[tail] = item;
-        tail = (tail + 1) & (elements.length - 1);
-        if (tail == head)
-            doubleCapacity();
+        if (tail == null) {
+            tail = pool.acquire();
+            tailIndex = 0;
+            numSegmentsInMemory++;
+            if (head == null) {
+                head = tail;
+                headIndex = 0;
+            }
+        }
+        tail[tailIndex++] = item;
+        size++;
+        if (tailIndex == segmentSize) {
+            if (tail != head) {
+                addFullSegment(tail);
+            }
+            tail = null;
+        }
     }
 
     /**
      * Return true if the queue is empty.
      */
     public boolean isEmpty() {
-        return head == tail;
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items in the queue.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Return true if part of the queue is in a spill file on disk.
+     */
+    boolean hasSpillFile() {
+        return spillFile != null;
     }
 
     /**
@@ -54,35 +134,125 @@ public class LongFIFOQueue {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        long item = elements[head];
-        head = (head + 1) & (elements.length - 1);
+        long item = head[headIndex++];
+        size--;
+        int headLimit = (head == tail) ? tailIndex : segmentSize;
+        if (headIndex == headLimit) {
+            nextHead();
+        }
         return item;
     }
 
-    private static int nextPowerOf2(int num) {
-        num |= (num >>> 1);
-        num |= (num >>> 2);
-        num |= (num >>> 4);
-        num |= (num >>> 8);
-        num |= (num >>> 16);
-        num++;
-        if (num < 0)
-            num >>>= 1;
-        return num;
+    /**
+     * Remove every item from the queue, giving its segments back to the pool
+     * and deleting the spill file if there is one.
+     */
+    public void clear() {
+        if (head != null) {
+            pool.release(head);
+        }
+        if ((tail != null) && (tail != head)) {
+            pool.release(tail);
+        }
+        for (long[] segment : segments) {
+            if (segment != SPILLED) {
+                pool.release(segment);
+            }
+        }
+        segments.clear();
+        head = null;
+        headIndex = 0;
+        tail = null;
+        tailIndex = 0;
+        numSegmentsInMemory = 0;
+        size = 0;
+        numSpilledSegments = 0;
+        closeSpillFile();
     }
 
-    private void doubleCapacity() {
-        int p = head;
-        int n = elements.length;
-        int r = n - p;
-        int newCapacity = n << 1;
-        if (newCapacity < 0)
-            throw new IllegalStateException("LongFIFOQueue can't grow any further");
-        long[] a = new long[newCapacity];
-        System.arraycopy(elements, p, a, 0, r);
-        System.arraycopy(elements, 0, a, r, p);
-        elements = a;
-        head = 0;
-        tail = n;
+    // The head segment has been completely dequeued, give it back to the
+    // pool and move on to the next segment.
+    private void nextHead() {
+        boolean sharedWithTail = head == tail;
+        pool.release(head);
+        numSegmentsInMemory--;
+        headIndex = 0;
+        if (sharedWithTail) {
+            head = null;
+            tail = null;
+        } else if (!segments.isEmpty()) {
+            head = segments.pollFirst();
+            if (head == SPILLED) {
+                head = readSpilledSegment();
+            }
+        } else {
+            head = tail;
+        }
+    }
+
+    private void addFullSegment(long[] segment) {
+        if ((spillDirectory != null) && (numSegmentsInMemory > maxSegmentsInMemory)) {
+            writeSpilledSegment(segment);
+            pool.release(segment);
+            numSegmentsInMemory--;
+            segments.addLast(SPILLED);
+        } else {
+            segments.addLast(segment);
+        }
+    }
+
+    private void writeSpilledSegment(long[] segment) {
+        try {
+            if (spillFile == null) {
+                Path path = Files.createTempFile(spillDirectory, "fifo", ".queue");
+                spillFile = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+                spillBuffer = ByteBuffer.allocateDirect(segmentSize * 8);
+            }
+            spillBuffer.clear();
+            spillBuffer.asLongBuffer().put(segment);
+            while (spillBuffer.hasRemaining()) {
+                spillWritePosition += spillFile.write(spillBuffer, spillWritePosition);
+            }
+            numSpilledSegments++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to write queue segment to disk", ex);
+        }
+    }
+
+    private long[] readSpilledSegment() {
+        try {
+            spillBuffer.clear();
+            while (spillBuffer.hasRemaining()) {
+                spillReadPosition += spillFile.read(spillBuffer, spillReadPosition);
+            }
+            spillBuffer.flip();
+            long[] segment = pool.acquire();
+            spillBuffer.asLongBuffer().get(segment);
+            numSegmentsInMemory++;
+            if (--numSpilledSegments == 0) {
+                // everything on disk has been read, so the file can go
+                closeSpillFile();
+            }
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to read queue segment from disk", ex);
+        }
+    }
+
+    // Close the spill file, which deletes it.
+    private void closeSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            spillFile.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to delete queue segments on disk", ex);
+        } finally {
+            spillFile = null;
+            spillReadPosition = 0;
+            spillWritePosition = 0;
+        }
     }
 }
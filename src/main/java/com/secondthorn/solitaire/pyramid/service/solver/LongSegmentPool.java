@@ -0,0 +1,77 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of fixed-size arrays of longs for LongFIFOQueue to store its items
+ * in.  Queues take segments from the pool as they grow and give them back
+ * as they drain, so queues sharing a pool reuse each other's memory instead
+ * of allocating more.  Only up to a maximum number of free segments are
+ * kept, the rest are left for the garbage collector.
+ * <p>
+ * Pools can be shared by queues used from different threads.
+ */
+public class LongSegmentPool {
+    /**
+     * The number of longs in each segment unless the pool is created with a
+     * different size.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 8192;
+
+    private static final int DEFAULT_MAX_FREE_SEGMENTS = 16;
+
+    private final int segmentSize;
+    private final int maxFreeSegments;
+    private final ArrayDeque<long[]> freeSegments = new ArrayDeque<>();
+
+    /**
+     * Create a pool of segments with the default size.
+     */
+    public LongSegmentPool() {
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_FREE_SEGMENTS);
+    }
+
+    /**
+     * Create a pool of segments holding segmentSize longs each, keeping at
+     * most maxFreeSegments of them when they're not being used.
+     */
+    public LongSegmentPool(int segmentSize, int maxFreeSegments) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive");
+        }
+        this.segmentSize = segmentSize;
+        this.maxFreeSegments = maxFreeSegments;
+    }
+
+    /**
+     * Return the number of longs in each segment.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Return a segment that isn't being used, allocating a new one if the
+     * pool is empty.
+     */
+    public synchronized long[] acquire() {
+        long[] segment = freeSegments.pollLast();
+        return (segment == null) ? new long[segmentSize] : segment;
+    }
+
+    /**
+     * Give a segment back to the pool once it's no longer used.
+     */
+    public synchronized void release(long[] segment) {
+        if (freeSegments.size() < maxFreeSegments) {
+            freeSegments.addLast(segment);
+        }
+    }
+
+    /**
+     * Return the number of free segments kept in the pool.
+     */
+    public synchronized int getNumFreeSegments() {
+        return freeSegments.size();
+    }
+}
@@ -0,0 +1,117 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the searches running at the same time within a memory budget.  Before
+ * a search starts, reserve() waits until the memory it's expected to need
+ * fits in what's left of the budget, and release() gives it back when the
+ * search is done.  A search is always let in when nothing else is running,
+ * even if it's expected to need more than the whole budget, so no search
+ * waits forever.
+ * <p>
+ * The memory a search is expected to need comes from what the last few
+ * searches of the same kind needed at their peak (see
+ * SolverStats.getPeakMemoryUsage()) plus some headroom, or a default until
+ * one of them has finished.  Taking the largest of the last few instead of
+ * all of them means one hard deck doesn't hold back every search after it.
+ */
+public class MemoryBudget {
+    private static final int NUM_RECENT_PEAKS = 16;
+    private static final double HEADROOM = 1.5;
+
+    private final long budget;
+    private final long defaultEstimate;
+    private final Map<String, long[]> recentPeaks = new HashMap<>();
+    private final Map<String, Integer> numRecorded = new HashMap<>();
+    private long numReservedBytes = 0L;
+    private int numRunning = 0;
+
+    /**
+     * Create a budget of the given number of bytes, expecting a search to
+     * need defaultEstimate bytes until searches of its kind have finished.
+     */
+    public MemoryBudget(long budget, long defaultEstimate) {
+        if ((budget <= 0) || (defaultEstimate < 0)) {
+            throw new IllegalArgumentException("The budget must be positive and the default estimate can't be negative");
+        }
+        this.budget = budget;
+        this.defaultEstimate = defaultEstimate;
+    }
+
+    /**
+     * Create a budget of the given fraction of the maximum heap size.
+     */
+    public static MemoryBudget ofMaxHeap(double fraction, long defaultEstimate) {
+        return new MemoryBudget((long) (Runtime.getRuntime().maxMemory() * fraction), defaultEstimate);
+    }
+
+    /**
+     * Return how many bytes a search of the given kind is expected to need.
+     */
+    public synchronized long estimate(String kind) {
+        long[] peaks = recentPeaks.get(kind);
+        if (peaks == null) {
+            return defaultEstimate;
+        }
+        long largest = 0L;
+        for (long peak : peaks) {
+            largest = Math.max(largest, peak);
+        }
+        return (long) (largest * HEADROOM);
+    }
+
+    /**
+     * Record the memory a finished search of the given kind needed.
+     */
+    public synchronized void record(String kind, SolverStats stats) {
+        long[] peaks = recentPeaks.computeIfAbsent(kind, k -> new long[NUM_RECENT_PEAKS]);
+        int count = numRecorded.getOrDefault(kind, 0);
+        peaks[count % NUM_RECENT_PEAKS] = stats.getPeakMemoryUsage();
+        numRecorded.put(kind, count + 1);
+    }
+
+    /**
+     * Wait up to timeoutMillis for the number of bytes to fit in the budget,
+     * then reserve them.  Return true if they were reserved, or false if the
+     * wait timed out.  Every successful reserve() must be followed by a
+     * release() with the same number of bytes.
+     */
+    public synchronized boolean reserve(long numBytes, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while ((numRunning > 0) && (numReservedBytes + numBytes > budget)) {
+            long waitMillis = deadline - System.currentTimeMillis();
+            if (waitMillis <= 0) {
+                return false;
+            }
+            wait(waitMillis);
+        }
+        numReservedBytes += numBytes;
+        numRunning++;
+        return true;
+    }
+
+    /**
+     * Give back bytes reserved for a search that's done.
+     */
+    public synchronized void release(long numBytes) {
+        numReservedBytes -= numBytes;
+        numRunning--;
+        notifyAll();
+    }
+
+    /**
+     * Return the number of bytes reserved by the searches running now.
+     */
+    public synchronized long getNumReservedBytes() {
+        return numReservedBytes;
+    }
+
+    /**
+     * Return the number of searches running now.
+     */
+    public synchronized int getNumRunning() {
+        return numRunning;
+    }
+}
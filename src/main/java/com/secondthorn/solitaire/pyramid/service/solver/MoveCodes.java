@@ -0,0 +1,127 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.Arrays;
+
+/**
+ * Encodes the move from a parent state to a successor state in a single
+ * byte, and recovers the parent state from the successor and its move code.
+ * <p>
+ * A move either draws a card, recycles the waste pile, or removes a king or
+ * a pair of cards adding up to 13.  A deck only has 100 of those cards or
+ * pairs of cards, and the parent state follows from the successor once you
+ * know which cards were removed and whether one of them was the top card of
+ * the stock pile.  That's less than 256 different moves for a deck.
+ */
+final class MoveCodes {
+    /**
+     * The code for the initial state, which wasn't reached by any move.
+     */
+    static final int NO_MOVE = 255;
+
+    private static final long STOCK_INDEX_MASK = 0x3FL << 52;
+
+    private final int drawCode;
+    private final int recycleCode;
+    // the codes for removing the cards at index i and j (i <= j), indexed
+    // by [((i * 52) + j) * 2 + 1 if a stock card was removed else 0]
+    private final int[] removalCodes = new int[52 * 52 * 2];
+    // the cards removed by each code and if one came from the stock pile
+    private final long[] removedFlags = new long[256];
+    private final boolean[] fromStock = new boolean[256];
+
+    MoveCodes(Deck deck) {
+        Arrays.fill(removalCodes, -1);
+        int code = 0;
+        for (int i = 0; i < 52; i++) {
+            int value = deck.cardValue(i);
+            for (int j = i; j < 52; j++) {
+                boolean removable = (i == j) ? (value == 13) : (deck.cardValue(j) + value == 13);
+                if (removable) {
+                    code = addRemovalCodes(i, j, code);
+                }
+            }
+        }
+        drawCode = code;
+        recycleCode = code + 1;
+    }
+
+    // Add the codes for removing the cards at index i and j.  When exactly
+    // one of the cards is a stock/waste card, or it's a king from the
+    // stock/waste, it could have been the top of either pile, and those are
+    // two different moves.  When both are, the higher index was the top of
+    // the stock pile.
+    private int addRemovalCodes(int i, int j, int code) {
+        long flags = (1L << i) | (1L << j);
+        if ((j >= 28) && ((i < 28) || (i == j))) {
+            addRemovalCode(i, j, false, flags, code++);
+            addRemovalCode(i, j, true, flags, code++);
+        } else {
+            addRemovalCode(i, j, i >= 28, flags, code++);
+        }
+        return code;
+    }
+
+    private void addRemovalCode(int i, int j, boolean stockRemoved, long flags, int code) {
+        removalCodes[removalIndex(i, j, stockRemoved)] = code;
+        removedFlags[code] = flags;
+        fromStock[code] = stockRemoved;
+    }
+
+    private static int removalIndex(int i, int j, boolean stockRemoved) {
+        return (((i * 52) + j) << 1) | (stockRemoved ? 1 : 0);
+    }
+
+    /**
+     * Return the code for the move from the parent state to the state, or
+     * NO_MOVE if the parent is -1.  Throws an IllegalArgumentException if
+     * there's no such move.
+     */
+    int encode(long parent, long state) {
+        if (parent == -1) {
+            return NO_MOVE;
+        }
+        if (State.getRecycleCount(parent) != State.getRecycleCount(state)) {
+            return recycleCode;
+        }
+        long removed = State.getDeckFlags(parent) & ~state;
+        if (removed == 0) {
+            return drawCode;
+        }
+        boolean stockRemoved = (removed & (1L << State.getStockIndex(parent))) != 0;
+        int i = Long.numberOfTrailingZeros(removed);
+        int j = 63 - Long.numberOfLeadingZeros(removed);
+        int code = removalCodes[removalIndex(i, j, stockRemoved)];
+        if (code == -1) {
+            throw new IllegalArgumentException("There's no move from state " + Long.toHexString(parent) +
+                    " to state " + Long.toHexString(state));
+        }
+        return code;
+    }
+
+    /**
+     * Return the parent state that the state was reached from with the move,
+     * or -1 if the code is NO_MOVE.
+     */
+    long decode(long state, int code) {
+        if (code == NO_MOVE) {
+            return -1;
+        }
+        int stockIndex = State.getStockIndex(state);
+        long parent = state & ~STOCK_INDEX_MASK;
+        if (code == drawCode) {
+            // the drawn card is the top of the waste pile now
+            stockIndex = State.getWasteIndex(state, stockIndex);
+        } else if (code == recycleCode) {
+            // the stock pile had to be empty to recycle the waste pile
+            stockIndex = 52;
+            parent -= 1L << 58;
+        } else {
+            long removed = removedFlags[code];
+            parent |= removed;
+            if (fromStock[code]) {
+                stockIndex = 63 - Long.numberOfLeadingZeros(removed);
+            }
+        }
+        return parent | ((long) stockIndex << 52);
+    }
+}
@@ -0,0 +1,18 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * A MoveGenerator finds the moves that can be made from a state, as masks to
+ * XOR with the state.  Each result after XOR has to have its stock index
+ * adjusted by calling State.adjustStockIndex().
+ * <p>
+ * Deck looks the masks up in a table it builds for every possible state,
+ * and BitboardMoveGenerator calculates them for each state instead.  Both
+ * return the same masks in the same order.
+ */
+public interface MoveGenerator {
+    /**
+     * Return an array of masks to XOR with the given state to get its
+     * successor states.
+     */
+    long[] getSuccessorMasks(long state);
+}
@@ -0,0 +1,48 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * An Objective tells a SearchEngine what the solver is looking for.  Each
+ * solver implements its own Objective and the search engine calls it as it
+ * searches: to check for the goal, to decide whether to search beyond a
+ * state, and to check if the search can stop without reaching the goal.
+ */
+public interface Objective {
+    /**
+     * Return true if the state reaches the goal.  Breadth-first search engines
+     * check this when a state is generated, so the search stops without
+     * generating the rest of the goal's layer.  The first goal found ends
+     * the search.
+     */
+    boolean isGoal(long state);
+
+    /**
+     * Return true if the engine should generate the successors of the state.
+     * This is called once for each state the engine takes off the fringe,
+     * with the state's successor masks.  Objectives that are looking for the
+     * best state they can find record it here, and return false for states
+     * that have no successors worth searching.
+     */
+    boolean expand(long state, long[] successorMasks);
+
+    /**
+     * Return true if the objective already has the best answer it can get and
+     * the search can stop.  This is checked after each call to expand().
+     */
+    boolean isFinished();
+
+    /**
+     * Return what the objective has kept track of so far, for a
+     * SearchCheckpoint to save.  Objectives that only look for the goal have
+     * nothing to save.
+     */
+    default long[] getProgress() {
+        return new long[0];
+    }
+
+    /**
+     * Pick up where an earlier search left off, with the values its
+     * objective returned from getProgress().
+     */
+    default void setProgress(long[] progress) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.map.hash.TIntByteHashMap;
+
+/**
+ * A SeenStateTable split into a separate table for each of the 1430 possible
+ * arrangements of pyramid cards.  The rest of the state fits in an int: 24
+ * stock/waste card flags, the stock index as a 5-bit offset from 28, and the
+ * 2-bit recycle count.  Each state is stored as that int and a one byte code
+ * for the move from its parent, see MoveCodes, so the keys are half the size
+ * of the ones in HashSeenStateTable and the parent state isn't stored at all.
+ * <p>
+ * States with different pyramid cards never share a table, so each table
+ * could be owned by a single thread without locking.  See partitionOf().
+ */
+public class PartitionedSeenStateTable implements SeenStateTable {
+    private final MoveCodes moveCodes;
+    private final TIntByteHashMap[] partitions = new TIntByteHashMap[Pyramid.allPyramidFlags.length];
+    private int size;
+
+    /**
+     * Create an empty table for the states of a game with the given deck.
+     */
+    public PartitionedSeenStateTable(Deck deck) {
+        moveCodes = new MoveCodes(deck);
+    }
+
+    /**
+     * Return the index of the table a state is stored in, from 0 to 1429.
+     */
+    public static int partitionOf(long state) {
+        return Pyramid.indexOf(State.getPyramidFlags(state));
+    }
+
+    @Override
+    public boolean containsKey(long state) {
+        TIntByteHashMap partition = partitions[partitionOf(state)];
+        return (partition != null) && partition.containsKey(subKey(state));
+    }
+
+    @Override
+    public void put(long state, long parent) {
+        int index = partitionOf(state);
+        TIntByteHashMap partition = partitions[index];
+        if (partition == null) {
+            partition = new TIntByteHashMap();
+            partitions[index] = partition;
+        }
+        int subKey = subKey(state);
+        if (!partition.containsKey(subKey)) {
+            size++;
+        }
+        partition.put(subKey, (byte) moveCodes.encode(parent, state));
+    }
+
+    @Override
+    public long getParent(long state) {
+        TIntByteHashMap partition = partitions[partitionOf(state)];
+        int subKey = subKey(state);
+        if ((partition == null) || !partition.containsKey(subKey)) {
+            return -1;
+        }
+        return moveCodes.decode(state, partition.get(subKey) & 0xFF);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        // a key, a value, and a status byte for each slot, plus the array
+        long memoryUsage = partitions.length * 8L;
+        for (TIntByteHashMap partition : partitions) {
+            if (partition != null) {
+                memoryUsage += partition.capacity() * 6L;
+            }
+        }
+        return memoryUsage;
+    }
+
+    // Return the part of the state that isn't the pyramid flags, in 31 bits.
+    private static int subKey(long state) {
+        int stockFlags = (int) (State.getDeckFlags(state) >>> 28);
+        int stockOffset = State.getStockIndex(state) - 28;
+        return (State.getRecycleCount(state) << 29) | (stockOffset << 24) | stockFlags;
+    }
+}
@@ -0,0 +1,140 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.exception.InvalidParameterException;
+
+import java.util.List;
+
+/**
+ * A position in the middle of a game, described the way a player sees it:
+ * the cards removed so far, the card on top of the stock pile, and how many
+ * times the waste pile has been recycled.  The stock card is blank if no
+ * cards have been drawn since the start or the last recycle, or "none" if
+ * the stock pile is empty.
+ * <p>
+ * Use validate() to check the position against a deck, then toState() to
+ * get the state to search from.  The state is the same for every way of
+ * writing the same position, so it's what saved solutions are looked up by.
+ */
+public class Position {
+    private static final String EMPTY_STOCK = "none";
+
+    private final String removedCardsString;
+    private final String stockCardString;
+    private final int recycleCount;
+
+    public Position(String removedCardsString, String stockCardString, int recycleCount) {
+        this.removedCardsString = (removedCardsString == null) ? "" : removedCardsString.trim();
+        this.stockCardString = (stockCardString == null) ? "" : stockCardString.trim();
+        this.recycleCount = recycleCount;
+    }
+
+    /**
+     * Return the position a state is at in a game with the deck.
+     */
+    public static Position fromState(Deck deck, long state) {
+        StringBuilder removedCards = new StringBuilder();
+        for (int i = 0; i < 52; i++) {
+            if ((state & (1L << i)) == 0) {
+                removedCards.append(deck.cardAt(i));
+            }
+        }
+        int stockIndex = State.getStockIndex(state);
+        String stockCard = State.isStockEmpty(stockIndex) ? EMPTY_STOCK : deck.cardAt(stockIndex).toString();
+        return new Position(removedCards.toString(), stockCard, State.getRecycleCount(state));
+    }
+
+    /**
+     * Return true if the position doesn't say anything has happened yet, so
+     * it's the start of the game.
+     */
+    public boolean isInitial() {
+        return removedCardsString.isEmpty() && stockCardString.isEmpty() && (recycleCount == 0);
+    }
+
+    /**
+     * Return the URI query parameters for the position, each followed by an
+     * ampersand.
+     */
+    public String getUriQuery() {
+        return "removedCards=" + removedCardsString + "&" +
+                "stockCard=" + stockCardString + "&" +
+                "recycleCount=" + recycleCount + "&";
+    }
+
+    /**
+     * Check the position is one that can come up while playing with the deck,
+     * and throw an InvalidParameterException if it can't.
+     */
+    public void validate(Deck deck) throws InvalidParameterException {
+        if ((recycleCount < 0) || (recycleCount > 2)) {
+            throw new InvalidParameterException("recycleCount (" + recycleCount + ") must be 0, 1, or 2.");
+        }
+        long removedFlags = removedFlags(deck);
+        if (!Pyramid.isValid(State.getPyramidFlags(~removedFlags))) {
+            throw new InvalidParameterException("removedCards (" + removedCardsString +
+                    ") has pyramid cards that are still covered by other pyramid cards.");
+        }
+        // cards other than kings are removed in pairs adding up to 13
+        for (int value = 1; value <= 6; value++) {
+            int numRemoved = Long.bitCount(removedFlags & deck.cardRankMask(value));
+            int numMatchesRemoved = Long.bitCount(removedFlags & deck.cardRankMask(13 - value));
+            if (numRemoved != numMatchesRemoved) {
+                throw new InvalidParameterException("removedCards (" + removedCardsString +
+                        ") can't be removed in pairs adding up to 13.");
+            }
+        }
+        if (!stockCardString.isEmpty() && !stockCardString.equals(EMPTY_STOCK)) {
+            int stockIndex = stockIndex(deck);
+            if ((stockIndex < 28) || ((removedFlags & (1L << stockIndex)) != 0)) {
+                throw new InvalidParameterException("stockCard (" + stockCardString +
+                        ") must be a card remaining in the stock or waste pile, or " + EMPTY_STOCK + ".");
+            }
+        }
+    }
+
+    /**
+     * Return the state for the position in a game with the deck.  The
+     * position must be valid.
+     */
+    public long toState(Deck deck) {
+        long deckFlags = State.getDeckFlags(~removedFlags(deck));
+        int stockIndex;
+        if (stockCardString.isEmpty()) {
+            stockIndex = 28;
+        } else if (stockCardString.equals(EMPTY_STOCK)) {
+            stockIndex = 52;
+        } else {
+            stockIndex = stockIndex(deck);
+        }
+        return State.create(deckFlags, stockIndex, recycleCount);
+    }
+
+    @Override
+    public String toString() {
+        return "removed cards (" + removedCardsString + "), stock card (" + stockCardString +
+                "), recycle count " + recycleCount;
+    }
+
+    // Return the flags of the removed cards, throwing an
+    // InvalidParameterException if a card is listed twice.
+    private long removedFlags(Deck deck) {
+        long flags = 0L;
+        for (Card card : Deck.readCards(removedCardsString)) {
+            long flag = 1L << deck.indexOf(card);
+            if ((flags & flag) != 0) {
+                throw new InvalidParameterException("removedCards (" + removedCardsString +
+                        ") has " + card + " more than once.");
+            }
+            flags |= flag;
+        }
+        return flags;
+    }
+
+    private int stockIndex(Deck deck) {
+        List<Card> cards = Deck.readCards(stockCardString);
+        if (cards.size() != 1) {
+            throw new InvalidParameterException("stockCard (" + stockCardString + ") must be a single card.");
+        }
+        return deck.indexOf(cards.get(0));
+    }
+}
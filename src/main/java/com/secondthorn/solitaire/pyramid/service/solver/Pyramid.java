@@ -2,6 +2,8 @@ package com.secondthorn.solitaire.pyramid.service.solver;
 
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
 
 import java.util.Arrays;
 import java.util.List;
@@ -46,6 +48,12 @@ public class Pyramid {
      */
     public static final List<int[]> allUncoveredIndexes;
 
+    // the index of each pyramid flags value in allPyramidFlags
+    private static final TLongIntMap pyramidFlagsIndexes;
+
+    // for each value in allPyramidFlags, the flags of the uncovered cards
+    private static final long[] allUncoveredFlags;
+
     /**
      * For each pyramid card index, a mask that excludes the cards that are
      * covering or covered by it.  The nth card in the pyramid can't be removed
@@ -124,6 +132,51 @@ public class Pyramid {
         allExistingIndexes = Arrays.stream(allPyramidFlags)
                 .mapToObj(Pyramid::existingIndexes)
                 .collect(Collectors.toList());
+        pyramidFlagsIndexes = new TLongIntHashMap(allPyramidFlags.length);
+        for (int i = 0; i < allPyramidFlags.length; i++) {
+            pyramidFlagsIndexes.put(allPyramidFlags[i], i);
+        }
+        allUncoveredFlags = allUncoveredIndexes.stream()
+                .mapToLong(indexes -> Arrays.stream(indexes).mapToLong(i -> 1L << i).sum())
+                .toArray();
+    }
+
+    /**
+     * Return the index of the pyramid flags in allPyramidFlags.
+     */
+    static int indexOf(long pyramidFlags) {
+        return pyramidFlagsIndexes.get(pyramidFlags);
+    }
+
+    /**
+     * Return true if the pyramid flags are one of allPyramidFlags, that is,
+     * no card has been removed while a card covering it remains.
+     */
+    static boolean isValid(long pyramidFlags) {
+        return pyramidFlagsIndexes.containsKey(pyramidFlags);
+    }
+
+    /**
+     * Return the flags for the cards in the pyramid flags that are uncovered
+     * and available for removal.
+     */
+    static long uncoveredFlags(long pyramidFlags) {
+        return allUncoveredFlags[indexOf(pyramidFlags)];
+    }
+
+    /**
+     * Return the flags for the pyramid cards that are covering or covered by
+     * any of the cards in the given pyramid flags, including those cards.
+     * Removing the given cards can't change whether any other pyramid card is
+     * covered.
+     */
+    static long relatedPyramidFlags(long pyramidFlags) {
+        long unrelatedMask = -1L;
+        while (pyramidFlags != 0) {
+            unrelatedMask &= UNRELATED_CARD_MASKS[Long.numberOfTrailingZeros(pyramidFlags)];
+            pyramidFlags &= pyramidFlags - 1;
+        }
+        return ~unrelatedMask & 0xFFFFFFFL;
     }
 
     private static long[] everyPyramidFlags() {
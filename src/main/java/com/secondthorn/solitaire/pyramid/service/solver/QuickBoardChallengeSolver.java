@@ -0,0 +1,106 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.model.Step;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Pyramid Solitaire Board Challenge solver that answers right away instead
+ * of finding the fewest steps.  It uses beam search, so the solution can take
+ * more steps than the BoardChallengeSolver's, and it can miss a solution that
+ * exists.  It's for showing the player something to work with while the
+ * BoardChallengeSolver finds the best solution.
+ * <p>
+ * States are ranked by the pyramid distance (the fewest steps to clear the
+ * pyramid if every stock/waste card were always available), then by the
+ * number of pyramid cards left, then by how many moves there are that remove
+ * pyramid cards.  A wider beam finds shorter solutions more often but takes
+ * longer.
+ */
+public class QuickBoardChallengeSolver extends BFSSolver {
+    /**
+     * The start of the description of every solution from this solver, short
+     * enough to fit the saved description along with the rest of it.
+     */
+    public static final String PROVISIONAL = "May not be fewest steps.";
+
+    private static final int DEFAULT_BEAM_WIDTH = 1024;
+
+    private final int beamWidth;
+
+    public QuickBoardChallengeSolver() {
+        this(DEFAULT_BEAM_WIDTH);
+    }
+
+    /**
+     * Create a solver keeping up to beamWidth states at each step.
+     */
+    public QuickBoardChallengeSolver(int beamWidth) {
+        if (beamWidth <= 0) {
+            throw new IllegalArgumentException("The beam width must be positive");
+        }
+        this.beamWidth = beamWidth;
+        // the beam only looks at a small part of the game, so working out
+        // the moves from each state is cheaper than building the deck's table
+        setMoveGeneratorFactory(BitboardMoveGenerator::new);
+    }
+
+    /**
+     * Search for a way to remove all 28 pyramid cards.  Return the solution
+     * found, or no solutions if the beam search didn't find one.  Unlike the
+     * BoardChallengeSolver, no solutions doesn't mean there is no way to
+     * clear the board.
+     */
+    public List<Solution> solve(Deck deck) {
+        List<Solution> solutions = new ArrayList<>();
+        if (deck.pyramidDistance(getStartState()) != -1) {
+            MoveGenerator moveGenerator = new BitboardMoveGenerator(deck);
+            SearchEngine engine = useSearchEngine(new BeamSearch(beamWidth, s -> heuristic(deck, moveGenerator, s)));
+            long state = engine.search(deck, new ClearBoardObjective());
+            if (state != -1) {
+                List<Step> steps = getSteps(engine, state, deck);
+                solutions.add(new Solution(PROVISIONAL, score(state, deck), true, steps));
+            }
+        }
+        return solutions;
+    }
+
+    // Return how far the state looks from clearing the pyramid, lower is
+    // better, or -1 if the pyramid can't be cleared.
+    static int heuristic(Deck deck, MoveGenerator moveGenerator, long state) {
+        int distance = deck.pyramidDistance(state);
+        if (distance == -1) {
+            return -1;
+        }
+        long pyramidFlags = State.getPyramidFlags(state);
+        int numPyramidMoves = 0;
+        for (long mask : moveGenerator.getSuccessorMasks(state)) {
+            if ((mask & pyramidFlags) != 0) {
+                numPyramidMoves++;
+            }
+        }
+        // at most 28 pyramid cards and 28 moves, so each fits in 6 bits
+        return (distance << 12) | (Long.bitCount(pyramidFlags) << 6) | (63 - numPyramidMoves);
+    }
+
+    // The goal is any state with the pyramid cleared.  The heuristic already
+    // drops the states that can't get there.
+    private static class ClearBoardObjective implements Objective {
+        @Override
+        public boolean isGoal(long state) {
+            return State.isPyramidClear(state);
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+    }
+}
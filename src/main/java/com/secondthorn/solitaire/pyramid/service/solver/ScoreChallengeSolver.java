@@ -2,8 +2,6 @@ package com.secondthorn.solitaire.pyramid.service.solver;
 
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
 import com.secondthorn.solitaire.pyramid.service.model.Step;
-import gnu.trove.map.TLongLongMap;
-import gnu.trove.map.hash.TLongLongHashMap;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +13,11 @@ import java.util.List;
  * steps.  Note that this may be more steps than the minimum required to clear
  * the board.  Because clearing the board maximizes the score, if it possible
  * to clear the board the solution will do it.
+ * <p>
+ * The search is pruned with an optimistic upper bound on the score that each
+ * state can still reach.  States that can't reach the goal score or beat the
+ * best score found so far are not expanded, so decks that can't reach the
+ * goal don't have to exhaust every reachable state.
  */
 public class ScoreChallengeSolver extends BFSSolver {
     public static final int MAX_POSSIBLE_SCORE = 1290;
@@ -43,21 +46,58 @@ public class ScoreChallengeSolver extends BFSSolver {
      */
     public List<Solution> solve(Deck deck) {
         List<Solution> solutions = new ArrayList<>();
-        LongFIFOQueue fringe = new LongFIFOQueue();
-        TLongLongMap seenStates = new TLongLongHashMap();
-        long bestState = -1;
-        int bestScore = 0;
-        fringe.enqueue(State.INITIAL_STATE);
-        while (!fringe.isEmpty()) {
-            long state = fringe.dequeue();
-            long[] successorMasks = deck.getSuccessorMasks(state);
+        SearchEngine engine = newSearchEngine();
+        ScoreObjective objective = new ScoreObjective(deck);
+        long bestState = engine.search(deck, objective);
+        int bestScore;
+        if (bestState != -1) {
+            // stop searching, we reached the goal score
+            bestScore = score(bestState, deck);
+        } else {
+            bestState = objective.bestState;
+            bestScore = objective.bestScore;
+        }
+
+        if (bestState != -1) {
+            List<Step> steps = getSteps(engine, bestState, deck);
+            boolean boardCleared = State.isPyramidClear(bestState);
+            solutions.add(new Solution("", bestScore, boardCleared, steps));
+        }
+
+        return solutions;
+    }
+
+    // The goal is to reach the goal score.  Until then, keep track of the
+    // best scoring state where the game ends.
+    private class ScoreObjective implements Objective {
+        private final Deck deck;
+        private long bestState = -1;
+        private int bestScore = 0;
+        // the score never goes down, so every state seen so far guarantees
+        // a solution scoring at least minScore, and nothing can beat maxScore
+        private int minScore = 0;
+        private final int maxScore;
+
+        ScoreObjective(Deck deck) {
+            this.deck = deck;
+            long startState = getStartState();
+            this.maxScore = maxPossibleScore(startState, score(startState, deck), deck);
+        }
+
+        @Override
+        public boolean isGoal(long state) {
+            return score(state, deck) >= numPoints;
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
             int score = score(state, deck);
-            if (score >= numPoints) {
-                // stop searching, we reached the goal score
-                bestState = state;
-                bestScore = score;
-                break;
+            int bound = maxPossibleScore(state, score, deck);
+            if ((bound < numPoints) && ((bound <= bestScore) || (bound < minScore))) {
+                // this state can't lead to a better solution
+                return false;
             }
+            minScore = Math.max(minScore, score);
             if (State.isPyramidClear(state) || (successorMasks.length == 0)) {
                 // if we clear the board we can't continue any further in
                 // the game, like removing stock + waste cards... but we should
@@ -66,17 +106,49 @@ public class ScoreChallengeSolver extends BFSSolver {
                     bestState = state;
                     bestScore = score;
                 }
-            } else {
-                addSuccessorStates(fringe, seenStates, state, successorMasks);
+                return false;
             }
+            return true;
         }
 
-        if (bestState != -1) {
-            List<Step> steps = getSteps(seenStates, bestState, deck);
-            boolean boardCleared = State.isPyramidClear(bestState);
-            solutions.add(new Solution("", bestScore, boardCleared, steps));
+        @Override
+        public boolean isFinished() {
+            return bestScore >= maxScore;
         }
 
-        return solutions;
+        @Override
+        public long[] getProgress() {
+            return new long[]{bestState, bestScore, minScore};
+        }
+
+        @Override
+        public void setProgress(long[] progress) {
+            bestState = progress[0];
+            bestScore = (int) progress[1];
+            minScore = (int) progress[2];
+        }
+    }
+
+    // Return an upper bound on the score reachable from the state: the
+    // current score, plus the bonus for each row that isn't cleared yet but
+    // still could be, plus 5 points for each remaining king and each pair of
+    // remaining cards that could still be removed together.  Pyramid cards
+    // that can never be removed don't count, and neither do their rows.
+    private int maxPossibleScore(long state, int score, Deck deck) {
+        long blockedFlags = deck.blockedPyramidFlags(state);
+        long removableFlags = State.getDeckFlags(state) & ~blockedFlags;
+        int bound = score;
+        for (int i = 0; i < ROW_CLEARED_MASKS.length; i++) {
+            if (((state & ROW_CLEARED_MASKS[i]) != 0) && ((blockedFlags & ROW_CLEARED_MASKS[i]) == 0)) {
+                bound += ROW_CLEARED_SCORES[i];
+            }
+        }
+        bound += 5 * Long.bitCount(removableFlags & deck.cardRankMask(13));
+        for (int value = 1; value <= 6; value++) {
+            int numCards = Long.bitCount(removableFlags & deck.cardRankMask(value));
+            int numMatches = Long.bitCount(removableFlags & deck.cardRankMask(13 - value));
+            bound += 5 * Math.min(numCards, numMatches);
+        }
+        return bound;
     }
 }
@@ -0,0 +1,239 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A file where a StateLogSearch saves its progress every so often, so a
+ * search that gets killed can pick up where it left off instead of starting
+ * over.  A checkpoint is taken between layers: every state in the log with
+ * its parent, where the next layer starts, and what the objective has kept
+ * track of so far (see Objective.getProgress()).
+ * <p>
+ * The log only ever has states added to the end, so the states already in
+ * it don't change while the search goes on.  The checkpoint is written by a
+ * background thread straight from the log's arrays while the search keeps
+ * going, with one sequential pass through a file channel.  Each state is
+ * written XORed with its parent, which leaves only the few bits a move
+ * changes, and each parent offset as the difference from the one before it,
+ * which is small because the log is in breadth-first order.  Then it's all
+ * compressed with Deflater.
+ * <p>
+ * A checkpoint is written to a temporary file and then moved over the last
+ * one, so there's always a complete checkpoint to resume from.  Checkpoints
+ * are only there to save time, so if one can't be written or read the
+ * search just goes on without it.  The file is deleted once the search
+ * finishes.
+ */
+public class SearchCheckpoint {
+    private static final long MAGIC = 0x50595243484B5031L;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path file;
+    private final long intervalMillis;
+    private long lastCheckpointMillis = System.currentTimeMillis();
+    private ExecutorService writer = null;
+    private Future<?> pendingWrite = null;
+    // only changed by the thread writing checkpoints
+    private volatile int numWritten = 0;
+    private boolean resumed = false;
+
+    /**
+     * Create a checkpoint kept in the file, written about once every
+     * intervalMillis while a search runs.
+     */
+    public SearchCheckpoint(Path file, long intervalMillis) {
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Return the number of checkpoints written so far.
+     */
+    public int getNumWritten() {
+        return numWritten;
+    }
+
+    /**
+     * Return true if the search resumed from an earlier checkpoint.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * What a search resumes with: the offset in the log where the next layer
+     * starts, and the objective's progress.
+     */
+    static class Resume {
+        final int layerStart;
+        final long[] progress;
+
+        Resume(int layerStart, long[] progress) {
+            this.layerStart = layerStart;
+            this.progress = progress;
+        }
+    }
+
+    /**
+     * Fill the empty log from the checkpoint file if there is one for a
+     * search from the start state, and return where to resume.  Return null
+     * and leave the log empty if there's nothing to resume from.
+     */
+    Resume restore(StateLog log, long startState) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(
+                     new InflaterInputStream(Channels.newInputStream(channel)), BUFFER_SIZE))) {
+            if ((in.readLong() != MAGIC) || (in.readLong() != startState)) {
+                return null;
+            }
+            int layerStart = in.readInt();
+            int size = in.readInt();
+            long[] progress = new long[in.readInt()];
+            for (int i = 0; i < progress.length; i++) {
+                progress[i] = in.readLong();
+            }
+            int parentOffset = -1;
+            for (int offset = 0; offset < size; offset++) {
+                parentOffset += in.readInt();
+                long state = in.readLong();
+                if (parentOffset != -1) {
+                    state ^= log.getState(parentOffset);
+                }
+                log.add(state, parentOffset);
+            }
+            resumed = true;
+            return new Resume(layerStart, progress);
+        } catch (IOException | RuntimeException e) {
+            log.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Return true if it's time for another checkpoint and the last one is
+     * done being written.
+     */
+    synchronized boolean isDue() {
+        return ((pendingWrite == null) || pendingWrite.isDone()) &&
+                (System.currentTimeMillis() - lastCheckpointMillis >= intervalMillis);
+    }
+
+    /**
+     * Start writing a checkpoint of the log in the background.  The states
+     * in the log up to its current size must not change until awaitWrites()
+     * returns, which is true as long as states are only added.
+     */
+    synchronized void save(StateLog log, long startState, int layerStart, long[] progress) {
+        long[] states = log.getStates();
+        int[] parentOffsets = log.getParentOffsets();
+        int size = log.size();
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "search-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        lastCheckpointMillis = System.currentTimeMillis();
+        pendingWrite = writer.submit(() -> write(states, parentOffsets, size, startState, layerStart, progress));
+    }
+
+    /**
+     * Wait for any checkpoint being written to finish.  This must be called
+     * before the search's log is cleared or reused.
+     */
+    synchronized void awaitWrites() {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        boolean interrupted = false;
+        while (!writer.isTerminated()) {
+            try {
+                writer.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        writer = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Delete the checkpoint file because the search is over.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // a leftover file is only resumed by a search from the same state
+        }
+    }
+
+    private void write(long[] states, int[] parentOffsets, int size, long startState, int layerStart, long[] progress) {
+        Path tempFile = null;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            // a temporary file of its own, in case another worker is writing
+            // a checkpoint for the same challenge to the same directory
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, file.getFileName() + "-", ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         new DeflaterOutputStream(Channels.newOutputStream(channel), deflater, BUFFER_SIZE),
+                         BUFFER_SIZE))) {
+                out.writeLong(MAGIC);
+                out.writeLong(startState);
+                out.writeInt(layerStart);
+                out.writeInt(size);
+                out.writeInt(progress.length);
+                for (long value : progress) {
+                    out.writeLong(value);
+                }
+                int previousParentOffset = -1;
+                for (int offset = 0; offset < size; offset++) {
+                    int parentOffset = parentOffsets[offset];
+                    out.writeInt(parentOffset - previousParentOffset);
+                    out.writeLong((parentOffset == -1) ? states[offset] : states[offset] ^ states[parentOffset]);
+                    previousParentOffset = parentOffset;
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            numWritten++;
+        } catch (IOException e) {
+            try {
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                }
+            } catch (IOException ignored) {
+                // the next checkpoint overwrites it anyway
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+
+import java.util.function.Function;
+
+/**
+ * A SearchEngine searches the states of a Pyramid Solitaire game for an
+ * Objective.  The solvers only decide what they're looking for, and engines
+ * decide how to search and how to store the states they've seen.  Each
+ * engine is used for one search.
+ * <p>
+ * Engines keep the loop that generates states in a single concrete class
+ * instead of calling out to other classes for each state, so the JIT compiler
+ * sees one implementation at each call site inside it.
+ * <p>
+ * Engines find the moves from each state with a MoveGenerator created for
+ * the deck being searched, the Deck's own table unless another one is set
+ * with setMoveGeneratorFactory().  Searches start from the initial state of
+ * the game unless another one is set with setStartState().
+ */
+public abstract class SearchEngine {
+    protected final SolverStats stats = new SolverStats();
+    private Function<Deck, MoveGenerator> moveGeneratorFactory = deck -> deck;
+    private long startState = State.INITIAL_STATE;
+
+    /**
+     * Search the game from the start state until the objective's goal is
+     * reached, the objective is finished, or there are no more states left.
+     * Return the goal state, or -1 if the goal wasn't reached.
+     */
+    public abstract long search(Deck deck, Objective objective);
+
+    /**
+     * Return the state that the search reached the given state from, or -1 if
+     * it's the start state.
+     */
+    public abstract long getParent(long state);
+
+    /**
+     * Set how to create the move generator for the deck being searched.
+     */
+    public void setMoveGeneratorFactory(Function<Deck, MoveGenerator> moveGeneratorFactory) {
+        this.moveGeneratorFactory = moveGeneratorFactory;
+    }
+
+    /**
+     * Set the state to start searching from, for games that are already
+     * under way.
+     */
+    public void setStartState(long startState) {
+        this.startState = startState;
+    }
+
+    // Return the state the search starts from.
+    protected long getStartState() {
+        return startState;
+    }
+
+    // Create the move generator to search the deck with.
+    protected MoveGenerator newMoveGenerator(Deck deck) {
+        return moveGeneratorFactory.apply(deck);
+    }
+
+    /**
+     * Return the states from the start state to the given state, in the
+     * order the search reached them.
+     */
+    public long[] getPath(long state) {
+        TLongList path = new TLongArrayList();
+        for (long pathState = state; pathState != -1; pathState = getParent(pathState)) {
+            path.add(pathState);
+        }
+        path.reverse();
+        return path.toArray();
+    }
+
+    /**
+     * Return the counters collected during the search.
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,58 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * A limit on how much searching a solve can do, for answering right away
+ * when the game turns out to be easy and handing it off to be solved later
+ * when it doesn't.  The limit counts the states expanded by every search in
+ * the solve, and the time since the limit was created, and once either runs
+ * out the search throws a SearchLimitExceededException.
+ * <p>
+ * The limit is checked each time a state's moves are found, by wrapping the
+ * search's MoveGenerator, so it works with any search engine.  The clock is
+ * only read every so often, so the search can go a little over the time.
+ */
+public class SearchLimit {
+    // how many states to expand between looking at the clock
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final long maxStates;
+    private final long deadline;
+    private long numStates = 0;
+
+    /**
+     * Create a limit of maxStates expanded states and timeBudgetMillis
+     * milliseconds from now.
+     */
+    public SearchLimit(long maxStates, long timeBudgetMillis) {
+        this.maxStates = maxStates;
+        this.deadline = System.currentTimeMillis() + timeBudgetMillis;
+    }
+
+    /**
+     * Return the number of states expanded so far.
+     */
+    public long getNumStates() {
+        return numStates;
+    }
+
+    /**
+     * Return a MoveGenerator that finds the same moves as the given one,
+     * counting each state against the limit.
+     */
+    MoveGenerator limit(MoveGenerator moveGenerator) {
+        return state -> {
+            countState();
+            return moveGenerator.getSuccessorMasks(state);
+        };
+    }
+
+    private void countState() {
+        numStates++;
+        if (numStates > maxStates) {
+            throw new SearchLimitExceededException("The search expanded more than " + maxStates + " states");
+        }
+        if (((numStates % CLOCK_INTERVAL) == 0) && (System.currentTimeMillis() > deadline)) {
+            throw new SearchLimitExceededException("The search ran out of time after " + numStates + " states");
+        }
+    }
+}
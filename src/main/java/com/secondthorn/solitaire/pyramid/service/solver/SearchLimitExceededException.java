@@ -0,0 +1,11 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * Thrown when a search runs past its SearchLimit before finishing, so there's
+ * no answer yet.
+ */
+public class SearchLimitExceededException extends RuntimeException {
+    public SearchLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * A SeenStateTable holds every state a search engine has seen, along with
+ * enough information to find the state each one was reached from.  Search
+ * engines create one for each search, and the solvers pick how they're
+ * stored to trade speed for memory.
+ */
+public interface SeenStateTable {
+    /**
+     * Return true if the state has been seen.
+     */
+    boolean containsKey(long state);
+
+    /**
+     * Add the state to the table, or if it's already there, replace the state
+     * it was reached from.  The parent is -1 for the initial state.
+     */
+    void put(long state, long parent);
+
+    /**
+     * Return the state that the state was reached from, or -1 if it's the
+     * initial state or hasn't been seen.
+     */
+    long getParent(long state);
+
+    /**
+     * Return the number of states in the table.
+     */
+    int size();
+
+    /**
+     * Return about how many bytes of memory the table is using.
+     */
+    long getMemoryUsage();
+}
@@ -0,0 +1,126 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * The working memory a worker thread reuses from one solve to the next.
+ * Searches take up to several gigabytes in a few huge arrays, and allocating
+ * them again for each challenge, growing them through copy after copy, then
+ * throwing them away leaves the garbage collector a lot of work to do.  A
+ * context keeps the state log, hash table, and queue segments the searches
+ * used last time and clears them in place for the next search.
+ * <p>
+ * Everything is only held through soft references, so when memory gets
+ * tight the garbage collector can take it back, and the next search just
+ * allocates again.
+ * <p>
+ * A context can also carry a SearchCheckpoint, so a long search can be
+ * saved as it goes and resumed if the worker is stopped before it finishes,
+ * and a SearchLimit, so a solve gives up if it turns out not to be quick.
+ * <p>
+ * A context must only be used by one thread, and only for one search at a
+ * time: getting the state log or hash table clears it for the new search.
+ */
+public class SolverContext {
+    private static final int DEFAULT_STATE_LOG_CAPACITY = 1 << 20;
+    private static final int MAX_FREE_SEGMENTS = 1024;
+
+    private final int stateLogCapacity;
+    private SoftReference<StateLog> stateLog = new SoftReference<>(null);
+    private SoftReference<HashSeenStateTable> hashSeenStateTable = new SoftReference<>(null);
+    private SoftReference<LongSegmentPool> segmentPool = new SoftReference<>(null);
+    private SearchCheckpoint checkpoint = null;
+    private SearchLimit searchLimit = null;
+
+    public SolverContext() {
+        this(DEFAULT_STATE_LOG_CAPACITY);
+    }
+
+    /**
+     * Create a context whose state log starts out with room for the given
+     * number of states.
+     */
+    public SolverContext(int stateLogCapacity) {
+        this.stateLogCapacity = stateLogCapacity;
+    }
+
+    /**
+     * Return an empty state log for a search.
+     */
+    StateLog stateLog() {
+        StateLog log = stateLog.get();
+        if (log == null) {
+            log = new StateLog(stateLogCapacity);
+            stateLog = new SoftReference<>(log);
+        } else {
+            log.clear();
+        }
+        return log;
+    }
+
+    /**
+     * Return an empty HashSeenStateTable for a search.
+     */
+    HashSeenStateTable hashSeenStateTable() {
+        HashSeenStateTable table = hashSeenStateTable.get();
+        if (table == null) {
+            table = new HashSeenStateTable();
+            hashSeenStateTable = new SoftReference<>(table);
+        } else {
+            table.clear();
+        }
+        return table;
+    }
+
+    /**
+     * Return the pool of segments for the search's queues.
+     */
+    LongSegmentPool segmentPool() {
+        LongSegmentPool pool = segmentPool.get();
+        if (pool == null) {
+            pool = new LongSegmentPool(LongSegmentPool.DEFAULT_SEGMENT_SIZE, MAX_FREE_SEGMENTS);
+            segmentPool = new SoftReference<>(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Set the checkpoint for the next searches using the state log, or null
+     * for none.
+     */
+    public void setCheckpoint(SearchCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Return the checkpoint for searches using the state log, or null if
+     * there isn't one.
+     */
+    public SearchCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Set the limit for the next solves using the context, or null for none.
+     */
+    public void setSearchLimit(SearchLimit searchLimit) {
+        this.searchLimit = searchLimit;
+    }
+
+    /**
+     * Return the limit for solves using the context, or null if there isn't
+     * one.
+     */
+    public SearchLimit getSearchLimit() {
+        return searchLimit;
+    }
+
+    /**
+     * Let go of all the memory held for the next search.
+     */
+    public void release() {
+        stateLog = new SoftReference<>(null);
+        hashSeenStateTable = new SoftReference<>(null);
+        segmentPool = new SoftReference<>(null);
+    }
+}
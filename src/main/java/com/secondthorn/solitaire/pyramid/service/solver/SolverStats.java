@@ -0,0 +1,119 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * Counters collected by a solver while it searches, to see how much work
+ * it did and how much it avoided.
+ */
+public class SolverStats {
+    private long numGeneratedStates;
+    private long numDuplicateStates;
+    private long numSkippedPermutations;
+    private int numLayers;
+    private long maxLayerSize;
+    private int numSeenStates;
+    private long seenStatesMemoryUsage;
+
+    /**
+     * Return the number of successor states generated, including duplicates.
+     */
+    public long getNumGeneratedStates() {
+        return numGeneratedStates;
+    }
+
+    /**
+     * Return the number of generated successor states that had already been
+     * seen before.
+     */
+    public long getNumDuplicateStates() {
+        return numDuplicateStates;
+    }
+
+    /**
+     * Return the number of successor states that weren't generated at all
+     * because another order of the same moves reaches them in the same
+     * number of steps.
+     */
+    public long getNumSkippedPermutations() {
+        return numSkippedPermutations;
+    }
+
+    /**
+     * Return the number of layers (states the same number of steps away from
+     * the initial state) that were completely generated.
+     */
+    public int getNumLayers() {
+        return numLayers;
+    }
+
+    /**
+     * Return the number of states in the largest layer.
+     */
+    public long getMaxLayerSize() {
+        return maxLayerSize;
+    }
+
+    /**
+     * Return the number of states kept in the seen state table.
+     */
+    public int getNumSeenStates() {
+        return numSeenStates;
+    }
+
+    /**
+     * Return about how many bytes of memory the seen state table used.
+     */
+    public long getSeenStatesMemoryUsage() {
+        return seenStatesMemoryUsage;
+    }
+
+    /**
+     * Return about how many bytes of memory the seen state table used for
+     * each state in it.
+     */
+    public double getBytesPerSeenState() {
+        return (numSeenStates == 0) ? 0.0 : (double) seenStatesMemoryUsage / numSeenStates;
+    }
+
+    /**
+     * Return about how many bytes of memory the search needed at its peak,
+     * the seen state table plus two of the largest layer of states (one
+     * being searched, the next one being generated).
+     */
+    public long getPeakMemoryUsage() {
+        return seenStatesMemoryUsage + (2L * 8L * maxLayerSize);
+    }
+
+    void addGeneratedState(boolean duplicate) {
+        numGeneratedStates++;
+        if (duplicate) {
+            numDuplicateStates++;
+        }
+    }
+
+    void addSkippedPermutation() {
+        numSkippedPermutations++;
+    }
+
+    void addLayer(long layerSize) {
+        if (layerSize > 0) {
+            numLayers++;
+            maxLayerSize = Math.max(maxLayerSize, layerSize);
+        }
+    }
+
+    void setSeenStates(int numStates, long memoryUsage) {
+        numSeenStates = numStates;
+        seenStatesMemoryUsage = memoryUsage;
+    }
+
+    @Override
+    public String toString() {
+        return "generated states: " + numGeneratedStates +
+                ", duplicate states: " + numDuplicateStates +
+                ", skipped permutations: " + numSkippedPermutations +
+                ", layers: " + numLayers +
+                ", max layer size: " + maxLayerSize +
+                ", seen states: " + numSeenStates +
+                String.format(" (%.1f bytes per state)", getBytesPerSeenState());
+    }
+}
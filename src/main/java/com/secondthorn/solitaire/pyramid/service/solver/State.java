@@ -99,12 +99,10 @@ public class State {
      * where the stock index points to the next available card (or 52 if empty).
      */
     public static long adjustStockIndex(long state) {
-        int stockIndex = getStockIndex(state);
-        long mask = 1L << stockIndex;
-        while (!isStockEmpty(stockIndex) && (mask & state) == 0) {
-            stockIndex++;
-            mask <<= 1;
-        }
+        // the stock cards remaining at or above the stock index, the lowest
+        // one is found with a single trailing zero count instead of a loop
+        long stockFlags = state & 0xFFFFFF0000000L & (-1L << getStockIndex(state));
+        int stockIndex = (stockFlags == 0) ? 52 : Long.numberOfTrailingZeros(stockFlags);
         return (state & 0xC0FFFFFFFFFFFFFL) | ((long) stockIndex << 52);
     }
 
@@ -0,0 +1,131 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.Arrays;
+
+/**
+ * An append-only log of states, each with the offset of its parent state in
+ * the log, plus an open-addressing index from each state to its offset.
+ * States are never removed, so the log also keeps the order the states
+ * were added in, and a breadth-first search can walk through it as its queue.
+ * <p>
+ * Each state takes a long for the state, an int for the parent's offset, and
+ * between one and two ints in the index.  A log can be cleared and used
+ * again for another search without giving up the memory it has grown to.
+ */
+final class StateLog {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] states;
+    private int[] parentOffsets;
+    private int size = 0;
+    // offset + 1 of the state hashed to each slot, or 0 if it's empty
+    private int[] index;
+
+    StateLog() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create a log with room for the given number of states (rounded up to a
+     * power of two) before it has to grow.
+     */
+    StateLog(int capacity) {
+        int size = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, capacity) - 1) << 1;
+        states = new long[size];
+        parentOffsets = new int[size];
+        index = new int[size * 2];
+    }
+
+    /**
+     * Add the state to the end of the log, with the offset of its parent or
+     * -1 if it doesn't have one.  Return the state's offset, or -1 if it was
+     * already in the log.
+     */
+    int add(long state, int parentOffset) {
+        int slot = findSlot(state);
+        if (index[slot] != 0) {
+            return -1;
+        }
+        if (size == states.length) {
+            states = Arrays.copyOf(states, size * 2);
+            parentOffsets = Arrays.copyOf(parentOffsets, size * 2);
+        }
+        int offset = size++;
+        states[offset] = state;
+        parentOffsets[offset] = parentOffset;
+        index[slot] = offset + 1;
+        if (size * 2 > index.length) {
+            rebuildIndex(index.length * 2);
+        }
+        return offset;
+    }
+
+    /**
+     * Return the offset of the state in the log, or -1 if it isn't there.
+     */
+    int offsetOf(long state) {
+        return index[findSlot(state)] - 1;
+    }
+
+    long getState(int offset) {
+        return states[offset];
+    }
+
+    int getParentOffset(int offset) {
+        return parentOffsets[offset];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The arrays holding the states and parent offsets, for a
+    // SearchCheckpoint to write out.  Only the first size() entries are in
+    // use, and they never change until the log is cleared, even after the
+    // log grows into new arrays.
+    long[] getStates() {
+        return states;
+    }
+
+    int[] getParentOffsets() {
+        return parentOffsets;
+    }
+
+    /**
+     * Remove every state, keeping the arrays at the size they've grown to.
+     */
+    void clear() {
+        Arrays.fill(index, 0);
+        size = 0;
+    }
+
+    /**
+     * Return about how many bytes of memory the log and its index are using.
+     */
+    long getMemoryUsage() {
+        return (states.length * 8L) + (parentOffsets.length * 4L) + (index.length * 4L);
+    }
+
+    // Return the slot in the index holding the state, or the empty slot
+    // where it would go.
+    private int findSlot(long state) {
+        int mask = index.length - 1;
+        int slot = hash(state) & mask;
+        while ((index[slot] != 0) && (states[index[slot] - 1] != state)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rebuildIndex(int capacity) {
+        index = new int[capacity];
+        for (int offset = 0; offset < size; offset++) {
+            index[findSlot(states[offset])] = offset + 1;
+        }
+    }
+
+    private static int hash(long state) {
+        long h = state * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,143 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+/**
+ * A SearchEngine for breadth-first search that keeps each state only once,
+ * in a StateLog.  The log holds the states in the order they were found, so
+ * instead of copying states into a separate queue, the search just walks
+ * through the log.  Each state's parent is kept as an offset into the log,
+ * so finding the path to a state only takes one index lookup.
+ * <p>
+ * It skips the same redundant orders of moves as BreadthFirstSearch, and
+ * finds the same solutions.
+ * <p>
+ * With a SearchCheckpoint set, the search saves the log and the objective's
+ * progress between layers every so often, and if there's already a
+ * checkpoint from an earlier search from the same state, it carries on from
+ * there.
+ */
+public final class StateLogSearch extends SearchEngine {
+    private final StateLog log;
+    private SearchCheckpoint checkpoint = null;
+
+    public StateLogSearch() {
+        this(new StateLog());
+    }
+
+    // Search with a log that's already been allocated, which must be empty.
+    StateLogSearch(StateLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Set the checkpoint to save the search to and resume it from, or null
+     * for none.
+     */
+    public void setCheckpoint(SearchCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public long search(Deck deck, Objective objective) {
+        long goalState;
+        try {
+            goalState = searchLog(newMoveGenerator(deck), objective);
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.awaitWrites();
+            }
+        }
+        if (checkpoint != null) {
+            checkpoint.delete();
+        }
+        stats.setSeenStates(log.size(), log.getMemoryUsage());
+        return goalState;
+    }
+
+    private long searchLog(MoveGenerator moveGenerator, Objective objective) {
+        long initialState = getStartState();
+        if (objective.isGoal(initialState)) {
+            return initialState;
+        }
+        int layerStart = 0;
+        SearchCheckpoint.Resume resume = (checkpoint == null) ? null : checkpoint.restore(log, initialState);
+        if (resume == null) {
+            log.add(initialState, -1);
+        } else {
+            layerStart = resume.layerStart;
+            objective.setProgress(resume.progress);
+            if (objective.isFinished()) {
+                return -1;
+            }
+        }
+        int layerEnd = Math.max(1, log.size());
+        for (int offset = layerStart; offset < log.size(); offset++) {
+            long state = log.getState(offset);
+            long[] successorMasks = moveGenerator.getSuccessorMasks(state);
+            if (objective.expand(state, successorMasks)) {
+                long goalState = addSuccessorStates(offset, state, successorMasks, objective);
+                if (goalState != -1) {
+                    return goalState;
+                }
+            }
+            if (objective.isFinished()) {
+                break;
+            }
+            if (offset + 1 == layerEnd) {
+                // every state in the next layer has been generated now
+                stats.addLayer(log.size() - layerEnd);
+                layerEnd = log.size();
+                if ((checkpoint != null) && checkpoint.isDue()) {
+                    checkpoint.save(log, initialState, offset + 1, objective.getProgress());
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long getParent(long state) {
+        int offset = log.offsetOf(state);
+        if (offset == -1) {
+            return -1;
+        }
+        int parentOffset = log.getParentOffset(offset);
+        return (parentOffset == -1) ? -1 : log.getState(parentOffset);
+    }
+
+    @Override
+    public long[] getPath(long state) {
+        int length = 0;
+        for (int offset = log.offsetOf(state); offset != -1; offset = log.getParentOffset(offset)) {
+            length++;
+        }
+        long[] path = new long[length];
+        for (int offset = log.offsetOf(state); offset != -1; offset = log.getParentOffset(offset)) {
+            path[--length] = log.getState(offset);
+        }
+        return path;
+    }
+
+    // Add the successors of the state at the offset to the end of the log,
+    // skipping redundant orders of moves the same way BreadthFirstSearch
+    // does.  Return the first successor that reaches the goal, or -1 if there
+    // isn't one.
+    private long addSuccessorStates(int offset, long state, long[] successorMasks, Objective objective) {
+        int parentOffset = log.getParentOffset(offset);
+        long previousMask = (parentOffset == -1) ? -1L : state ^ log.getState(parentOffset);
+        boolean canSkip = BreadthFirstSearch.isPyramidMask(previousMask);
+        long relatedFlags = canSkip ? Pyramid.relatedPyramidFlags(previousMask) : 0L;
+        for (long mask : successorMasks) {
+            if (canSkip && ((mask & relatedFlags) == 0) && (!BreadthFirstSearch.isPyramidMask(mask) || (mask < previousMask))) {
+                stats.addSkippedPermutation();
+                continue;
+            }
+            long nextState = State.adjustStockIndex(state ^ mask);
+            boolean duplicate = log.add(nextState, offset) == -1;
+            stats.addGeneratedState(duplicate);
+            if (!duplicate && objective.isGoal(nextState)) {
+                return nextState;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,78 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.model.Step;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Pyramid Solitaire solver that only finds out if the board can be cleared,
+ * for players deciding whether to ask for a new deal.  It runs depth-first
+ * search, stopping at the first way it finds to clear the 28 pyramid cards,
+ * so the steps it returns are usually far more than the fewest.
+ * <p>
+ * Like the BoardChallengeSolver, states whose pyramid can't be cleared even if
+ * every stock/waste card were always available aren't expanded.  That cuts
+ * off most of the game for decks that can't be won, so the answer comes back
+ * quickly either way.
+ */
+public class WinnableChallengeSolver extends BFSSolver {
+    /**
+     * The start of the description of the solution when the board can be
+     * cleared.
+     */
+    public static final String WINNABLE = "Winnable.";
+
+    public WinnableChallengeSolver() {
+        // the search only looks at a small part of the game, so working out
+        // the moves from each state is cheaper than building the deck's table
+        setMoveGeneratorFactory(BitboardMoveGenerator::new);
+    }
+
+    /**
+     * Find out if the board can be cleared.  Return a solution with the steps
+     * to clear it, or one saying to ask for a new deal if it can't be done.
+     */
+    public List<Solution> solve(Deck deck) {
+        List<Solution> solutions = new ArrayList<>();
+        if (deck.pyramidDistance(getStartState()) != -1) {
+            SearchEngine engine = useSearchEngine(new DepthFirstSearch(getSeenStateTableFactory().apply(deck)));
+            long state = engine.search(deck, new ClearBoardObjective(deck));
+            if (state != -1) {
+                List<Step> steps = getSteps(engine, state, deck);
+                solutions.add(new Solution(WINNABLE, score(state, deck), true, steps));
+                return solutions;
+            }
+        }
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step(1, "Ask for a New Deal"));
+        solutions.add(new Solution("There is no way to clear the board.", 0, false, steps));
+        return solutions;
+    }
+
+    // The goal is any state with the pyramid cleared, and every other state
+    // that could still clear the pyramid is searched.
+    private static class ClearBoardObjective implements Objective {
+        private final Deck deck;
+
+        ClearBoardObjective(Deck deck) {
+            this.deck = deck;
+        }
+
+        @Override
+        public boolean isGoal(long state) {
+            return State.isPyramidClear(state);
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            return deck.pyramidDistance(state) != -1;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.secondthorn.solitaire.pyramid.service.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChallengeControllerTest {
+    @Test
+    public void errorSavingReachesTheRequestsWaitingOnIt() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(1);
+        ChallengeController controller = new FailingController(saving, waiting);
+        ChallengeController.ChallengeParameters params = () -> {
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Challenge> first = executor.submit(() -> controller.saveNewChallengeOnce(params));
+            assertThat(saving.await(10, TimeUnit.SECONDS), is(true));
+            Future<Challenge> second = executor.submit(() -> controller.saveNewChallengeOnce(params));
+            // give the second request time to start waiting on the first
+            Thread.sleep(100);
+            waiting.countDown();
+            assertThat(failure(first), is(instanceOf(OutOfMemoryError.class)));
+            assertThat(failure(second), is(instanceOf(OutOfMemoryError.class)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void provisionalSolutionsAreFoundOnceForAChallenge() {
+        Challenge challenge = mock(Challenge.class);
+        when(challenge.getId()).thenReturn(7L);
+        when(challenge.getSolutions()).thenReturn(Collections.emptyList());
+        List<Solution> provisionalSolutions = Collections.singletonList(
+                new Solution("Clear the board", 0, true, Collections.emptyList()));
+        ProvisionalController controller = new ProvisionalController(challenge, provisionalSolutions);
+        ChallengeController.ChallengeParameters params = () -> {
+        };
+        for (int i = 0; i < 3; i++) {
+            ResponseEntity<JsonNode> response = controller.postChallenge(params, UriComponentsBuilder.newInstance());
+            assertThat(response.getStatusCode(), is(equalTo(HttpStatus.ACCEPTED)));
+            assertThat(response.getBody().has("provisional_solutions"), is(true));
+        }
+        assertThat(controller.numSaved, is(equalTo(1)));
+        assertThat(controller.numProvisionalSearches, is(equalTo(1)));
+    }
+
+    private static Throwable failure(Future<Challenge> future) throws InterruptedException {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            throw new AssertionError("The request is still waiting", e);
+        }
+        throw new AssertionError("The request should fail");
+    }
+
+    // A controller whose save runs out of memory once the test says so.
+    private static class FailingController extends ChallengeController {
+        private final CountDownLatch saving;
+        private final CountDownLatch waiting;
+
+        private FailingController(CountDownLatch saving, CountDownLatch waiting) {
+            this.saving = saving;
+            this.waiting = waiting;
+        }
+
+        @Override
+        protected Challenge queryChallenge(ChallengeParameters params) {
+            return null;
+        }
+
+        @Override
+        protected String challengeDescription(ChallengeParameters params) {
+            return "Board Challenge";
+        }
+
+        @Override
+        protected Challenge saveNewChallenge(ChallengeParameters params) {
+            saving.countDown();
+            try {
+                waiting.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new OutOfMemoryError("Out of memory saving the challenge");
+        }
+
+        @Override
+        protected Challenge newChallenge(ChallengeParameters params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Challenge saveSolvedChallenge(Challenge challenge) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // A controller that saves the challenge the first time it's posted, and
+    // counts how often it searches for provisional solutions.
+    private static class ProvisionalController extends ChallengeController {
+        private final Challenge challenge;
+        private final List<Solution> provisionalSolutions;
+        private int numSaved = 0;
+        private int numProvisionalSearches = 0;
+
+        private ProvisionalController(Challenge challenge, List<Solution> provisionalSolutions) {
+            this.challenge = challenge;
+            this.provisionalSolutions = provisionalSolutions;
+        }
+
+        @Override
+        protected Challenge queryChallenge(ChallengeParameters params) {
+            return (numSaved > 0) ? challenge : null;
+        }
+
+        @Override
+        protected String challengeDescription(ChallengeParameters params) {
+            return "Board Challenge";
+        }
+
+        @Override
+        protected Challenge saveNewChallenge(ChallengeParameters params) {
+            numSaved++;
+            return challenge;
+        }
+
+        @Override
+        protected Challenge newChallenge(ChallengeParameters params) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Challenge saveSolvedChallenge(Challenge challenge) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected List<Solution> provisionalSolutions(ChallengeParameters params) {
+            numProvisionalSearches++;
+            return provisionalSolutions;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChallengeBatcherTest {
+    @Test
+    public void challengesReceivedTogetherAreLoadedTogether() {
+        ChallengeRepository repository = mock(ChallengeRepository.class);
+        Challenge first = challenge(1L);
+        Challenge second = challenge(2L);
+        when(repository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+        ChallengeBatcher batcher = new ChallengeBatcher(repository, 2, 10000);
+        ChallengeBatcher.Batch batch = batcher.join(1L);
+        assertThat(batcher.join(2L), is(sameInstance(batch)));
+        assertThat(batch.load(1L), is(sameInstance(first)));
+        assertThat(batch.load(2L), is(sameInstance(second)));
+        verify(repository, times(1)).findAllById(any());
+    }
+
+    @Test
+    public void quickChallengeIsSavedWithoutWaitingForASlowOne() throws Exception {
+        ChallengeRepository repository = mock(ChallengeRepository.class);
+        Challenge quick = challenge(1L);
+        Challenge slow = challenge(2L);
+        when(repository.findAllById(any())).thenReturn(Arrays.asList(quick, slow));
+        ChallengeBatcher batcher = new ChallengeBatcher(repository, 2, 50);
+        CountDownLatch quickSaved = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> quickSave = executor.submit(() -> {
+                batcher.join(1L).load(1L);
+                int numSaved = batcher.save(quick);
+                quickSaved.countDown();
+                return numSaved;
+            });
+            Future<Integer> slowSave = executor.submit(() -> {
+                batcher.join(2L).load(2L);
+                // the slow challenge is still being solved until the quick one is saved
+                if (!quickSaved.await(10, TimeUnit.SECONDS)) {
+                    throw new AssertionError("The quick challenge wasn't saved while the slow one was solving");
+                }
+                return batcher.save(slow);
+            });
+            assertThat(quickSave.get(), is(equalTo(1)));
+            assertThat(slowSave.get(), is(equalTo(1)));
+            verify(repository).saveAll(Collections.singletonList(quick));
+            verify(repository).saveAll(Collections.singletonList(slow));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Challenge challenge(Long id) {
+        Challenge challenge = mock(Challenge.class);
+        when(challenge.getId()).thenReturn(id);
+        return challenge;
+    }
+}
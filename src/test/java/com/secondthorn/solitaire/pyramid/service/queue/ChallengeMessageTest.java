@@ -0,0 +1,99 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.BoardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.CardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.model.ScoreChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.WinnableChallenge;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ChallengeMessageTest {
+    private static final String DECK = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+    private static final long START_STATE = 0x1efffffd24fffffL;
+
+    @Test
+    public void boardChallengeRoundTrips() {
+        String json = toJson(new BoardChallenge(DECK, START_STATE));
+        assertThat(json, not(containsString("numPoints")));
+        assertThat(json, not(containsString("goalRank")));
+        assertThat(json, not(containsString("numToRemove")));
+        ChallengeMessage message = ChallengeMessage.fromJson(json);
+        assertThat(message.getId(), is(equalTo(7L)));
+        Challenge challenge = message.toChallenge();
+        assertThat(challenge, is(instanceOf(BoardChallenge.class)));
+        assertSameGame(challenge);
+    }
+
+    @Test
+    public void scoreChallengeRoundTrips() {
+        Challenge challenge = ChallengeMessage.fromJson(toJson(new ScoreChallenge(DECK, 1225, START_STATE)))
+                .toChallenge();
+        assertThat(challenge, is(instanceOf(ScoreChallenge.class)));
+        assertThat(((ScoreChallenge) challenge).getNumPoints(), is(equalTo(1225)));
+        assertSameGame(challenge);
+    }
+
+    @Test
+    public void scoreChallengeWithoutAGoalRoundTrips() {
+        String json = toJson(new ScoreChallenge(DECK, null, START_STATE));
+        assertThat(json, not(containsString("numPoints")));
+        Challenge challenge = ChallengeMessage.fromJson(json).toChallenge();
+        assertThat(((ScoreChallenge) challenge).getNumPoints(), is(nullValue()));
+        assertSameGame(challenge);
+    }
+
+    @Test
+    public void cardChallengeRoundTrips() {
+        String json = toJson(new CardChallenge(DECK, 'K', 3, START_STATE));
+        assertThat(json, not(containsString("numPoints")));
+        Challenge challenge = ChallengeMessage.fromJson(json).toChallenge();
+        assertThat(challenge, is(instanceOf(CardChallenge.class)));
+        assertThat(((CardChallenge) challenge).getGoalRank(), is(equalTo('K')));
+        assertThat(((CardChallenge) challenge).getNumToRemove(), is(equalTo(3)));
+        assertSameGame(challenge);
+    }
+
+    @Test
+    public void winnableChallengeRoundTrips() {
+        Challenge challenge = ChallengeMessage.fromJson(toJson(new WinnableChallenge(DECK, START_STATE)))
+                .toChallenge();
+        assertThat(challenge, is(instanceOf(WinnableChallenge.class)));
+        assertSameGame(challenge);
+    }
+
+    @Test
+    public void nullParametersReadTheSameAsAbsentOnes() {
+        String json = "{\"id\":7,\"type\":\"score\",\"deck\":\"" + DECK + "\",\"startState\":" + START_STATE +
+                ",\"numPoints\":null,\"goalRank\":null,\"numToRemove\":null}";
+        ChallengeMessage message = ChallengeMessage.fromJson(json);
+        assertThat(message.getNumPoints(), is(nullValue()));
+        assertThat(message.getGoalRank(), is(nullValue()));
+        assertThat(message.getNumToRemove(), is(nullValue()));
+        assertThat(message.toJson(), is(equalTo(toJson(new ScoreChallenge(DECK, null, START_STATE)))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownTypeIsRejected() {
+        ChallengeMessage.fromJson("{\"type\":\"klondike\",\"deck\":\"" + DECK + "\"}").toChallenge();
+    }
+
+    private static String toJson(Challenge challenge) {
+        ChallengeMessage message = ChallengeMessage.of(challenge);
+        message.setId(7L);
+        return message.toJson();
+    }
+
+    private static void assertSameGame(Challenge challenge) {
+        assertThat(challenge.getDeckString(), is(equalTo(DECK)));
+        assertThat(challenge.getStartState(), is(equalTo(START_STATE)));
+    }
+}
@@ -0,0 +1,66 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.BoardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ChallengeProcessMainTest {
+    private static final String DECK = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+    // a few pairs into the game, so the search takes a fraction of a second
+    private static final long START_STATE = 0x1efffffd24fffffL;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void solutionsAreWrittenAsTheResult() throws Exception {
+        ChallengeResultMessage result = run(new String[0]);
+        assertThat(result.getId(), is(equalTo(7L)));
+        assertSameSolutions(result.toSolutions());
+    }
+
+    @Test
+    public void checkpointIsDeletedWhenTheSearchFinishes() throws Exception {
+        Path checkpointFile = folder.getRoot().toPath().resolve("challenge-7.checkpoint");
+        ChallengeResultMessage result = run(new String[]{checkpointFile.toString(), "0"});
+        assertSameSolutions(result.toSolutions());
+        assertThat(Files.exists(checkpointFile), is(false));
+    }
+
+    private static ChallengeResultMessage run(String[] args) throws Exception {
+        ChallengeMessage message = ChallengeMessage.of(new BoardChallenge(DECK, START_STATE));
+        message.setId(7L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitStatus = ChallengeProcessMain.run(args,
+                new ByteArrayInputStream(message.toJson().getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(out, true, "UTF-8"));
+        assertThat(exitStatus, is(equalTo(0)));
+        return ChallengeResultMessage.fromJson(new String(out.toByteArray(), StandardCharsets.UTF_8).trim());
+    }
+
+    private static void assertSameSolutions(List<Solution> actual) {
+        BoardChallenge challenge = new BoardChallenge(DECK, START_STATE);
+        challenge.solve();
+        List<Solution> expected = challenge.getSolutions();
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getDescription(), is(equalTo(expected.get(i).getDescription())));
+            assertThat(actual.get(i).getSteps().size(), is(equalTo(expected.get(i).getSteps().size())));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.model.Step;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ChallengeResultMessageTest {
+    @Test
+    public void solutionsRoundTrip() {
+        List<Solution> solutions = Arrays.asList(
+                new Solution("", 1290, true, steps("Draw", "Remove Kd", "Remove 5h and 8c")),
+                new Solution("There is no way to clear the board.", 0, false, new ArrayList<>()));
+        String json = ChallengeResultMessage.of(7L, solutions).toJson();
+        ChallengeResultMessage message = ChallengeResultMessage.fromJson(json);
+        assertThat(message.getId(), is(equalTo(7L)));
+        List<Solution> roundTripped = message.toSolutions();
+        assertThat(roundTripped.size(), is(equalTo(2)));
+        for (int i = 0; i < solutions.size(); i++) {
+            Solution expected = solutions.get(i);
+            Solution actual = roundTripped.get(i);
+            // the description isn't completed a second time
+            assertThat(actual.getDescription(), is(equalTo(expected.getDescription())));
+            assertThat(actual.getScore(), is(equalTo(expected.getScore())));
+            assertThat(actual.isBoardCleared(), is(equalTo(expected.isBoardCleared())));
+            assertThat(actual.getSteps().size(), is(equalTo(expected.getSteps().size())));
+            for (int j = 0; j < expected.getSteps().size(); j++) {
+                Step step = actual.getSteps().get(j);
+                assertThat(step.getStepNumber(), is(equalTo(j + 1)));
+                assertThat(step.getAction(), is(equalTo(expected.getSteps().get(j).getAction())));
+                assertThat(step.getSolution(), is(actual));
+            }
+        }
+        assertThat(roundTripped.get(0).getDescription(),
+                is(equalTo("Get 1290 points in 3 steps while clearing the board.")));
+    }
+
+    @Test
+    public void noSolutionsRoundTrip() {
+        String json = ChallengeResultMessage.of(7L, Collections.emptyList()).toJson();
+        assertThat(ChallengeResultMessage.fromJson(json).toSolutions(), is(empty()));
+    }
+
+    @Test
+    public void fullDescriptionIsKeptAsIs() {
+        Solution solution = Solution.withFullDescription("Get 5 points in 1 step without clearing the board.", 5,
+                false, steps("Remove Kd"));
+        assertThat(solution.getDescription(), is(equalTo("Get 5 points in 1 step without clearing the board.")));
+        assertThat(solution.getSteps().get(0).getSolution(), is(solution));
+    }
+
+    private static List<Step> steps(String... actions) {
+        List<Step> steps = new ArrayList<>();
+        for (String action : actions) {
+            steps.add(new Step(steps.size() + 1, action));
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,142 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.BoardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChallengeResultReceiverTest {
+    private static final String DECK = "Tc Ac Js 5d 2h 3h As Th Qd 7h 3c Td 8s Kh 6d Ks 5c 6h 9h 3d " +
+            "5h Jh Kc 8d Jd 8c 7d 7c 2d Qs 9s 2c 3s 7s Ah Ad 4h 6s 6c 4c 2s 4d Qh 9d Jc 4s Qc Ts Kd 5s 9c 8h";
+
+    private ChallengeRepository repository;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        repository = mock(ChallengeRepository.class);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void resultIsSaved() {
+        Challenge challenge = challenge(1L);
+        when(repository.findUnsolvedByIds(any())).thenReturn(Collections.singletonList(challenge));
+        new ChallengeResultReceiver(repository, 1, 0).receive(result(1L));
+        verify(challenge).setSolutions(any());
+        verify(repository).saveAll(Collections.singletonList(challenge));
+    }
+
+    @Test
+    public void failureIsSaved() {
+        Challenge challenge = challenge(1L);
+        when(repository.findUnsolvedByIds(any())).thenReturn(Collections.singletonList(challenge));
+        new ChallengeResultReceiver(repository, 1, 0)
+                .receive(ChallengeResultMessage.failed(1L, "The solver gave up.").toJson());
+        verify(challenge).setFailure("The solver gave up.");
+        verify(challenge, never()).setSolutions(any());
+        verify(repository).saveAll(Collections.singletonList(challenge));
+    }
+
+    @Test
+    public void resultAfterAFailureClearsTheFailure() {
+        Challenge challenge = spy(new BoardChallenge(DECK));
+        doReturn(1L).when(challenge).getId();
+        challenge.setFailure("The solver gave up.");
+        when(repository.findUnsolvedByIds(any())).thenReturn(Collections.singletonList(challenge));
+        new ChallengeResultReceiver(repository, 1, 0).receive(result(1L));
+        assertThat(challenge.getFailure(), is(nullValue()));
+        verify(repository).saveAll(Collections.singletonList(challenge));
+    }
+
+    @Test
+    public void resultForASolvedChallengeIsDropped() {
+        when(repository.findUnsolvedByIds(any())).thenReturn(Collections.emptyList());
+        new ChallengeResultReceiver(repository, 1, 0).receive(result(1L));
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    public void duplicateResultIsDropped() throws Exception {
+        Challenge challenge = challenge(1L);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch duplicateReceived = new CountDownLatch(1);
+        when(repository.findUnsolvedByIds(any())).thenAnswer(invocation -> {
+            loading.countDown();
+            duplicateReceived.await(10, TimeUnit.SECONDS);
+            return Collections.singletonList(challenge);
+        });
+        ChallengeResultReceiver receiver = new ChallengeResultReceiver(repository, 1, 0);
+        Future<?> first = executor.submit(() -> receiver.receive(result(1L)));
+        loading.await(10, TimeUnit.SECONDS);
+        // the same result comes again while the first is being saved
+        receiver.receive(result(1L));
+        duplicateReceived.countDown();
+        first.get();
+        verify(repository, times(1)).findUnsolvedByIds(any());
+        verify(repository, times(1)).saveAll(any());
+    }
+
+    @Test
+    public void saveErrorIsThrownForEveryResultInTheBatch() throws Exception {
+        Challenge first = challenge(1L);
+        Challenge second = challenge(2L);
+        when(repository.findUnsolvedByIds(any())).thenReturn(Arrays.asList(first, second));
+        RuntimeException saveError = new IllegalStateException("database is down");
+        when(repository.saveAll(any())).thenThrow(saveError);
+        ChallengeResultReceiver receiver = new ChallengeResultReceiver(repository, 2, 10000);
+        Future<?> firstReceived = executor.submit(() -> receiver.receive(result(1L)));
+        Future<?> secondReceived = executor.submit(() -> receiver.receive(result(2L)));
+        assertThat(failure(firstReceived), is(sameInstance(saveError)));
+        assertThat(failure(secondReceived), is(sameInstance(saveError)));
+        verify(repository, times(1)).saveAll(any());
+    }
+
+    private static Challenge challenge(Long id) {
+        Challenge challenge = mock(Challenge.class);
+        when(challenge.getId()).thenReturn(id);
+        return challenge;
+    }
+
+    private static String result(Long id) {
+        return ChallengeResultMessage.of(id, Collections.emptyList()).toJson();
+    }
+
+    private static Throwable failure(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The save error should be thrown");
+    }
+}
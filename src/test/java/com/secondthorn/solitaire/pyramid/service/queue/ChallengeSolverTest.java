@@ -0,0 +1,186 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import com.secondthorn.solitaire.pyramid.service.repository.ChallengeRepository;
+import com.secondthorn.solitaire.pyramid.service.solver.MemoryBudget;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverContext;
+import com.secondthorn.solitaire.pyramid.service.solver.SolverStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChallengeSolverTest {
+    private static final Long ID = 42L;
+    private static final long CLAIM_TIMEOUT_MILLIS = 60000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ChallengeRepository repository;
+    private ChallengeRetrier retrier;
+    private Challenge challenge;
+    private ChallengeSolver solver;
+
+    @Before
+    public void setUp() {
+        repository = mock(ChallengeRepository.class);
+        retrier = mock(ChallengeRetrier.class);
+        challenge = mock(Challenge.class);
+        when(challenge.getId()).thenReturn(ID);
+        when(challenge.getSolutions()).thenReturn(Collections.emptyList());
+        when(challenge.getSolverStats()).thenReturn(new SolverStats());
+        when(repository.findAllById(any())).thenReturn(Collections.singletonList(challenge));
+        solver = newSolver(CLAIM_TIMEOUT_MILLIS, null);
+    }
+
+    @After
+    public void tearDown() {
+        solver.shutdown();
+    }
+
+    @Test
+    public void challengeClaimedElsewhereIsRetriedLater() {
+        when(repository.claim(eq(ID), anyLong(), anyLong(), anyString())).thenReturn(0);
+        solver.receiveQuick(ID.toString());
+        verify(retrier).retryLater(ID.toString(), true);
+        verify(challenge, never()).solve(any(SolverContext.class));
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    public void solvedChallengeIsSkipped() {
+        when(challenge.getSolutions()).thenReturn(Collections.singletonList(mock(Solution.class)));
+        solver.receive(ID.toString());
+        verify(repository, never()).claim(any(), anyLong(), anyLong(), anyString());
+        verify(retrier, never()).retryLater(anyString(), anyBoolean());
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    public void failedChallengeIsNotClaimed() {
+        when(challenge.getFailure()).thenReturn("The solver ran out of memory");
+        solver.receive(ID.toString());
+        verify(repository, never()).claim(any(), anyLong(), anyLong(), anyString());
+        verify(retrier, never()).retryLater(anyString(), anyBoolean());
+        verify(challenge, never()).solve(any(SolverContext.class));
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    public void checkpointDoesNotTakeOverALiveClaim() throws Exception {
+        solver.shutdown();
+        Path checkpointDirectory = folder.getRoot().toPath();
+        Files.createFile(checkpointDirectory.resolve("challenge-" + ID + ".checkpoint"));
+        solver = newSolver(CLAIM_TIMEOUT_MILLIS, checkpointDirectory);
+        when(repository.claim(eq(ID), anyLong(), anyLong(), anyString())).thenReturn(0);
+        solver.receive(ID.toString());
+        ArgumentCaptor<Long> now = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Long> staleBefore = ArgumentCaptor.forClass(Long.class);
+        verify(repository).claim(eq(ID), now.capture(), staleBefore.capture(), anyString());
+        assertThat(staleBefore.getValue(), is(equalTo(now.getValue() - CLAIM_TIMEOUT_MILLIS)));
+        verify(retrier).retryLater(ID.toString(), false);
+    }
+
+    @Test
+    public void claimIsRenewedWhileSolving() {
+        solver.shutdown();
+        solver = newSolver(300, null);
+        when(repository.claim(eq(ID), anyLong(), anyLong(), anyString())).thenReturn(1);
+        when(repository.renew(eq(ID), anyLong(), anyString())).thenReturn(1);
+        doAnswer(invocation -> {
+            Thread.sleep(500);
+            return null;
+        }).when(challenge).solve(any(SolverContext.class));
+        solver.receive(ID.toString());
+        ArgumentCaptor<String> worker = ArgumentCaptor.forClass(String.class);
+        verify(repository).claim(eq(ID), anyLong(), anyLong(), worker.capture());
+        verify(repository, atLeastOnce()).renew(eq(ID), anyLong(), eq(worker.getValue()));
+        verify(repository).saveAll(Collections.singletonList(challenge));
+    }
+
+    @Test
+    public void challengeIsUnclaimedWhenSolvingRunsOutOfMemory() {
+        when(repository.claim(eq(ID), anyLong(), anyLong(), anyString())).thenReturn(1);
+        doThrow(new OutOfMemoryError()).when(challenge).solve(any(SolverContext.class));
+        try {
+            solver.receive(ID.toString());
+            throw new AssertionError("The OutOfMemoryError should be rethrown");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        ArgumentCaptor<String> worker = ArgumentCaptor.forClass(String.class);
+        verify(repository).claim(eq(ID), anyLong(), anyLong(), worker.capture());
+        verify(repository).unclaim(ID, worker.getValue());
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    public void givenUpChallengeIsMarkedFailed() {
+        when(repository.claim(eq(ID), anyLong(), anyLong(), anyString())).thenReturn(1);
+        when(repository.markFailed(eq(ID), anyString(), anyString())).thenReturn(1);
+        doThrow(new ChallengeGivenUpException("The solver ran out of memory with 4096 MB of heap."))
+                .when(challenge).solve(any(SolverContext.class));
+        solver.receive(ID.toString());
+        ArgumentCaptor<String> worker = ArgumentCaptor.forClass(String.class);
+        verify(repository).claim(eq(ID), anyLong(), anyLong(), worker.capture());
+        verify(repository).markFailed(ID, "The solver ran out of memory with 4096 MB of heap.", worker.getValue());
+        verify(repository, never()).unclaim(any(), anyString());
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    public void redeliveredChallengeIsSolvedAfterAFailure() {
+        when(repository.claim(eq(ID), anyLong(), anyLong(), anyString())).thenReturn(1);
+        doThrow(new IllegalStateException("solver failed"))
+                .doNothing()
+                .when(challenge).solve(any(SolverContext.class));
+        try {
+            solver.receive(ID.toString());
+            throw new AssertionError("The failure should be rethrown");
+        } catch (IllegalStateException e) {
+            // expected, the message goes back on the queue
+        }
+        verify(repository).unclaim(eq(ID), anyString());
+        solver.receive(ID.toString());
+        verify(repository, times(2)).claim(eq(ID), anyLong(), anyLong(), anyString());
+        verify(repository).saveAll(Collections.singletonList(challenge));
+        verify(repository, times(1)).unclaim(eq(ID), anyString());
+    }
+
+    @Test
+    public void givingUpMarksTheChallengeFailed() {
+        when(repository.markFailed(eq(ID), anyString(), anyString())).thenReturn(1);
+        solver.giveUp(ID.toString(), "The solver failed on the challenge 3 times.");
+        verify(repository).markFailed(eq(ID), eq("The solver failed on the challenge 3 times."), anyString());
+    }
+
+    private ChallengeSolver newSolver(long claimTimeoutMillis, Path checkpointDirectory) {
+        return new ChallengeSolver(repository, retrier, new MemoryBudget(1L << 30, 1L << 20), 1000,
+                claimTimeoutMillis, 1, 0, checkpointDirectory, 60000, null);
+    }
+}
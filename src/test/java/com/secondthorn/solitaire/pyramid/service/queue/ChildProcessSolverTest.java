@@ -0,0 +1,75 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.BoardChallenge;
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ChildProcessSolverTest {
+    private static final String DECK = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+    // a few pairs into the game, so the search takes a fraction of a second
+    private static final long START_STATE = 0x1efffffd24fffffL;
+    private static final long TIMEOUT_MILLIS = 60000;
+
+    @Test
+    public void challengeIsSolvedInAChildProcess() {
+        ChildProcessSolver solver = new ChildProcessSolver(true, 256, 256, TIMEOUT_MILLIS);
+        ChallengeResultMessage result = solver.solve(message(START_STATE), null, 0);
+        assertThat(result.getId(), is(equalTo(7L)));
+        BoardChallenge challenge = new BoardChallenge(DECK, START_STATE);
+        challenge.solve();
+        List<Solution> expected = challenge.getSolutions();
+        List<Solution> actual = result.toSolutions();
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getDescription(), is(equalTo(expected.get(i).getDescription())));
+        }
+    }
+
+    @Test
+    public void challengeIsGivenUpOnWhenItRunsOutOfMemoryAtTheMaximumHeap() {
+        // the whole game doesn't fit in a few megabytes, even after doubling
+        ChildProcessSolver solver = new ChildProcessSolver(true, 8, 16, TIMEOUT_MILLIS);
+        try {
+            solver.solve(message(new BoardChallenge(DECK).getStartState()), null, 0);
+        } catch (ChallengeGivenUpException e) {
+            assertThat(e.getMessage(), containsString("16 MB"));
+            return;
+        }
+        throw new AssertionError("The challenge should be given up on");
+    }
+
+    @Test(expected = ChallengeGivenUpException.class)
+    public void challengeIsGivenUpOnWhenItTimesOut() {
+        ChildProcessSolver solver = new ChildProcessSolver(true, 256, 256, 1);
+        solver.solve(message(START_STATE), null, 0);
+    }
+
+    @Test
+    public void interruptedSolveFails() {
+        ChildProcessSolver solver = new ChildProcessSolver(true, 256, 256, TIMEOUT_MILLIS);
+        Thread.currentThread().interrupt();
+        try {
+            solver.solve(message(START_STATE), null, 0);
+        } catch (IllegalStateException e) {
+            assertThat(Thread.interrupted(), is(true));
+            return;
+        } finally {
+            Thread.interrupted();
+        }
+        throw new AssertionError("The interrupted solve should fail");
+    }
+
+    private static ChallengeMessage message(long startState) {
+        ChallengeMessage message = ChallengeMessage.of(new BoardChallenge(DECK, startState));
+        message.setId(7L);
+        return message;
+    }
+}
@@ -0,0 +1,57 @@
+package com.secondthorn.solitaire.pyramid.service.queue;
+
+import com.secondthorn.solitaire.pyramid.service.model.Challenge;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExecutorChallengeSenderTest {
+    private static final Long ID = 42L;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private ChallengeSolver solver;
+    private Challenge challenge;
+    private ExecutorChallengeSender sender;
+
+    @Before
+    public void setUp() {
+        solver = mock(ChallengeSolver.class);
+        challenge = mock(Challenge.class);
+        when(challenge.getId()).thenReturn(ID);
+        sender = new ExecutorChallengeSender(retrier -> solver, 1, 1, 10, 10, MAX_ATTEMPTS);
+    }
+
+    @After
+    public void tearDown() {
+        sender.shutdown();
+    }
+
+    @Test
+    public void failingChallengeIsRetriedAndThenGivenUpOn() {
+        doThrow(new IllegalStateException("database is down")).when(solver).receive(ID.toString());
+        sender.send(challenge);
+        verify(solver, timeout(5000)).giveUp(anyString(), anyString());
+        verify(solver, times(MAX_ATTEMPTS)).receive(ID.toString());
+        verify(solver).giveUp(ID.toString(), "The solver failed on the challenge 3 times.");
+    }
+
+    @Test
+    public void challengeIsSolvedWhenARetrySucceeds() {
+        doThrow(new OutOfMemoryError("Java heap space")).doNothing().when(solver).receiveQuick(ID.toString());
+        when(challenge.isQuickToSolve()).thenReturn(true);
+        sender.send(challenge);
+        verify(solver, timeout(5000).times(2)).receiveQuick(ID.toString());
+        verify(solver, after(200).times(2)).receiveQuick(ID.toString());
+        verify(solver, never()).giveUp(anyString(), anyString());
+    }
+}
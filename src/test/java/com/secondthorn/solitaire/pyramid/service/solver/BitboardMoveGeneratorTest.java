@@ -0,0 +1,58 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class BitboardMoveGeneratorTest {
+    private void assertSameMasksAsDeck(String cards, int maxStates) {
+        Deck deck = new Deck(cards);
+        BitboardMoveGenerator generator = new BitboardMoveGenerator(deck);
+        TLongSet seenStates = new TLongHashSet();
+        LongFIFOQueue fringe = new LongFIFOQueue();
+        fringe.enqueue(State.INITIAL_STATE);
+        seenStates.add(State.INITIAL_STATE);
+        while (!fringe.isEmpty() && (seenStates.size() < maxStates)) {
+            long state = fringe.dequeue();
+            long[] masks = deck.getSuccessorMasks(state);
+            assertThat(generator.getSuccessorMasks(state), is(equalTo(masks)));
+            for (long mask : masks) {
+                long nextState = State.adjustStockIndex(state ^ mask);
+                if (seenStates.add(nextState)) {
+                    fringe.enqueue(nextState);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameMasksAsDeck() {
+        assertSameMasksAsDeck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+                "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad", 300000);
+    }
+
+    @Test
+    public void sameMasksAsDeckWithKingsAndRecycling() {
+        assertSameMasksAsDeck("Kd Kc Qh Ah 7d 6d 8d 5d 9d 4d Td 3d Jd 2d Qd Ad 7c 6c 8c 5c 9c 4c Tc 3c Jc 2c " +
+                "Qc Ac 6h 7h 5h 8h 4h 9h 3h Th 2h Jh Kh As 2s 3s 4s 5s 6s 7s 8s 9s Ts Js Qs Ks", 300000);
+    }
+
+    @Test
+    public void solverFindsSameSolution() {
+        String cards = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc Ah Qh Tc 9s Kd 8s " +
+                "4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+        BoardChallengeSolver solver = new BoardChallengeSolver();
+        solver.setMoveGeneratorFactory(BitboardMoveGenerator::new);
+        List<Solution> solutions = solver.solve(new Deck(cards));
+        assertThat(solutions.size(), is(equalTo(1)));
+        assertThat(solutions.get(0).getSteps().size(), is(equalTo(44)));
+        assertThat(solutions.get(0).getScore(), is(equalTo(1275)));
+    }
+}
@@ -1,15 +1,21 @@
 package com.secondthorn.solitaire.pyramid.service.solver;
 
 import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 
 public class BoardChallengeSolverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void solvableDeck() {
         String cards = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc Ah Qh Tc 9s Kd 8s " +
@@ -23,6 +29,27 @@ public class BoardChallengeSolverTest {
         assertThat(solution.getScore(), is(equalTo(1275)));
         assertThat(solution.isBoardCleared(), is(equalTo(true)));
         assertThat(solution.getDescription(), is(equalTo("Get 1275 points in 44 steps while clearing the board.")));
+        assertThat(solver.getStats().getNumSkippedPermutations(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void solvableDeckFromMiddleOfGame() {
+        String cards = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc Ah Qh Tc 9s Kd 8s " +
+                "4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+        Deck deck = new Deck(cards);
+        DistanceTable table = DistanceTable.open(deck, folder.getRoot().toPath().resolve("distances"));
+        long state = State.INITIAL_STATE;
+        for (int i = 0; i < 10; i++) {
+            state = table.nextState(state);
+        }
+        BoardChallengeSolver solver = new BoardChallengeSolver();
+        solver.setStartState(state);
+        List<Solution> solutions = solver.solve(deck);
+        assertThat(solutions.size(), is(equalTo(1)));
+        Solution solution = solutions.get(0);
+        assertThat(solution.getSteps().size(), is(equalTo(34)));
+        assertThat(solution.getScore(), is(equalTo(1275)));
+        assertThat(solution.isBoardCleared(), is(equalTo(true)));
     }
 
     @Test
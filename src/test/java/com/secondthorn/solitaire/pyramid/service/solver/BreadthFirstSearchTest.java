@@ -0,0 +1,77 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import org.junit.Test;
+
+import java.util.function.LongPredicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class BreadthFirstSearchTest {
+    private static final Deck DECK = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+
+    @Test
+    public void goalFoundWhenGenerated() {
+        BreadthFirstSearch engine = new BreadthFirstSearch();
+        long goalState = engine.search(DECK, new StepObjective(State::isPyramidClear));
+        assertThat(State.isPyramidClear(goalState), is(equalTo(true)));
+        assertThat(numSteps(engine, goalState), is(equalTo(44)));
+        // the layer with the goal isn't finished
+        assertThat(engine.getStats().getNumLayers(), is(equalTo(43)));
+    }
+
+    @Test
+    public void initialStateIsGoal() {
+        BreadthFirstSearch engine = new BreadthFirstSearch();
+        long goalState = engine.search(DECK, new StepObjective(state -> true));
+        assertThat(goalState, is(equalTo(State.INITIAL_STATE)));
+        assertThat(engine.getParent(goalState), is(equalTo(-1L)));
+        assertThat(engine.getStats().getNumGeneratedStates(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void finishedObjectiveStopsSearch() {
+        BreadthFirstSearch engine = new BreadthFirstSearch();
+        StepObjective objective = new StepObjective(state -> false);
+        objective.finished = true;
+        long goalState = engine.search(DECK, objective);
+        assertThat(goalState, is(equalTo(-1L)));
+        assertThat(objective.numExpanded, is(equalTo(1)));
+    }
+
+    private int numSteps(SearchEngine engine, long state) {
+        int numSteps = 0;
+        for (long parent = engine.getParent(state); parent != -1; parent = engine.getParent(parent)) {
+            numSteps++;
+        }
+        return numSteps;
+    }
+
+    private static class StepObjective implements Objective {
+        private final LongPredicate goal;
+        private boolean finished = false;
+        private int numExpanded = 0;
+
+        StepObjective(LongPredicate goal) {
+            this.goal = goal;
+        }
+
+        @Override
+        public boolean isGoal(long state) {
+            return goal.test(state);
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            numExpanded++;
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class CompactSeenStateTableTest {
+    private static final Deck DECK = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+
+    @Test
+    public void parentsAreRecoveredFromMoves() {
+        CompactSeenStateTable table = new CompactSeenStateTable(DECK);
+        LongFIFOQueue fringe = new LongFIFOQueue();
+        table.put(State.INITIAL_STATE, -1);
+        fringe.enqueue(State.INITIAL_STATE);
+        int numStates = 1;
+        while (!fringe.isEmpty() && (numStates < 200000)) {
+            long state = fringe.dequeue();
+            for (long mask : DECK.getSuccessorMasks(state)) {
+                long nextState = State.adjustStockIndex(state ^ mask);
+                if (!table.containsKey(nextState)) {
+                    table.put(nextState, state);
+                    assertThat(table.getParent(nextState), is(equalTo(state)));
+                    fringe.enqueue(nextState);
+                    numStates++;
+                }
+            }
+        }
+        assertThat(table.size(), is(equalTo(numStates)));
+        assertThat(table.getParent(State.INITIAL_STATE), is(equalTo(-1L)));
+        assertThat(table.containsKey(State.INITIAL_STATE ^ 1L), is(equalTo(false)));
+    }
+
+    @Test
+    public void parentIsReplaced() {
+        CompactSeenStateTable table = new CompactSeenStateTable(DECK);
+        long drawnState = State.create(0xFFFFFFFFFFFFFL, 29, 0);
+        long drawnTwiceState = State.create(0xFFFFFFFFFFFFFL, 30, 0);
+        table.put(drawnTwiceState, drawnState);
+        table.put(drawnTwiceState, -1);
+        assertThat(table.size(), is(equalTo(1)));
+        assertThat(table.getParent(drawnTwiceState), is(equalTo(-1L)));
+    }
+
+    @Test
+    public void solverUsesLessMemory() {
+        BoardChallengeSolver solver = new BoardChallengeSolver();
+        solver.setSeenStateTableFactory(CompactSeenStateTable::new);
+        List<Solution> solutions = solver.solve(DECK);
+        assertThat(solutions.size(), is(equalTo(1)));
+        assertThat(solutions.get(0).getSteps().size(), is(equalTo(44)));
+        assertThat(solutions.get(0).getScore(), is(equalTo(1275)));
+        assertThat(solver.getStats().getNumSeenStates(), is(greaterThan(0)));
+        assertThat(solver.getStats().getBytesPerSeenState(), is(lessThan(17.0)));
+    }
+}
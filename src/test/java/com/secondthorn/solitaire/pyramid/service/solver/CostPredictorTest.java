@@ -0,0 +1,42 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class CostPredictorTest {
+    private static final Deck SOLVABLE_DECK = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d " +
+            "8c Kc Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+
+    @Test
+    public void startOfGameIsSlow() {
+        assertThat(CostPredictor.isQuick(State.INITIAL_STATE), is(equalTo(false)));
+        assertThat(CostPredictor.isQuickBoardChallenge(SOLVABLE_DECK, State.INITIAL_STATE), is(equalTo(false)));
+    }
+
+    @Test
+    public void middleOfGameIsQuick() {
+        // the cards removed in the first steps of the solution
+        long state = State.INITIAL_STATE;
+        for (String cards : new String[]{"4s 9s", "Kd", "2c Jc", "Ah Qh"}) {
+            for (Card card : Deck.readCards(cards)) {
+                state &= ~(1L << SOLVABLE_DECK.indexOf(card));
+            }
+        }
+        state = State.adjustStockIndex(state);
+        assertThat(Long.bitCount(State.getDeckFlags(state)), is(equalTo(45)));
+        assertThat(CostPredictor.isQuick(state), is(equalTo(false)));
+        state = State.adjustStockIndex(state & ~(1L << SOLVABLE_DECK.indexOf(Deck.readCards("Kh").get(0))));
+        assertThat(CostPredictor.isQuick(state), is(equalTo(true)));
+    }
+
+    @Test
+    public void unwinnableBoardChallengeIsQuick() {
+        Deck deck = new Deck("2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c Qd Qh 4c 8h Ks 7d " +
+                "Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh");
+        assertThat(CostPredictor.isQuick(State.INITIAL_STATE), is(equalTo(false)));
+        assertThat(CostPredictor.isQuickBoardChallenge(deck, State.INITIAL_STATE), is(equalTo(true)));
+    }
+}
@@ -142,6 +142,14 @@ public class DeckTest {
         }
     }
 
+    @Test
+    public void blockedPyramidFlagsOnSortedDeck() {
+        assertThat(sortedDeck.blockedPyramidFlags(State.INITIAL_STATE), is(equalTo(0L)));
+        // with Qh and Qs gone, Ac can only be removed by the Queens covering it
+        long state = State.INITIAL_STATE ^ removalMask(37, 50);
+        assertThat(sortedDeck.blockedPyramidFlags(state), is(equalTo(removalMask(0))));
+    }
+
     // An alternate implementation of creating successor masks for testing
     private long[] masks(Deck deck, int[] uncoveredIndexes, int stockIndex, int wasteIndex, int recycleCount) {
         TLongList masks = new TLongArrayList();
@@ -195,4 +203,36 @@ public class DeckTest {
             }
         }
     }
+
+    @Test
+    public void pyramidDistanceOnClearedPyramid() {
+        assertThat(sortedDeck.pyramidDistance(State.create(0xFFFFFF0000000L, 28, 0)), is(equalTo(0)));
+    }
+
+    @Test
+    public void pyramidDistanceOfUnclearableDeck() {
+        Deck deck = new Deck("2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c Qd Qh 4c 8h Ks 7d " +
+                "Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh");
+        assertThat(deck.pyramidDistance(State.INITIAL_STATE), is(equalTo(-1)));
+    }
+
+    @Test
+    public void pyramidDistanceNeverOverestimates() {
+        // each step removes at most two pyramid cards, and removing pyramid
+        // cards can't get the pyramid more than one step closer to clear
+        for (long pyramidFlags : Pyramid.allPyramidFlags) {
+            long state = State.create(pyramidFlags | 0xFFFFFF0000000L, 28, 0);
+            int distance = sortedDeck.pyramidDistance(state);
+            if (distance != -1) {
+                assertThat(distance >= (Long.bitCount(pyramidFlags) + 1) / 2, is(equalTo(true)));
+                assertThat(distance <= Long.bitCount(pyramidFlags), is(equalTo(true)));
+            }
+            for (long mask : sortedDeck.getSuccessorMasks(state)) {
+                int nextDistance = sortedDeck.pyramidDistance(state ^ mask);
+                if (nextDistance != -1) {
+                    assertThat(distance != -1 && distance <= nextDistance + 1, is(equalTo(true)));
+                }
+            }
+        }
+    }
 }
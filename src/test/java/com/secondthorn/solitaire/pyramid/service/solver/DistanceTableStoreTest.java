@@ -0,0 +1,131 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DistanceTableStoreTest {
+    // this deck takes a few seconds to build a table for
+    private static final String SOLVABLE_DECK = "Tc Ac Js 5d 2h 3h As Th Qd 7h 3c Td 8s Kh 6d Ks 5c 6h 9h 3d " +
+            "5h Jh Kc 8d Jd 8c 7d 7c 2d Qs 9s 2c 3s 7s Ah Ad 4h 6s 6c 4c 2s 4d Qh 9d Jc 4s Qc Ts Kd 5s 9c 8h";
+    // the pyramid can't be cleared with these decks, so their tables are quick to build
+    private static final String UNSOLVABLE_DECK = "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c " +
+            "Qd Qh 4c 8h Ks 7d Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh";
+    private static final String OTHER_UNSOLVABLE_DECK = "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c " +
+            "Qd Qh 4c 8h Ks 7d Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h Kh 9c";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void evictedTableIsClosedAfterItsLastUse() {
+        DistanceTableStore store = newStore(1, 16);
+        store.build(new Deck(UNSOLVABLE_DECK)).join();
+        store.build(new Deck(OTHER_UNSOLVABLE_DECK)).join();
+        DistanceTable table = store.withTable(new Deck(UNSOLVABLE_DECK), t -> {
+            // opening another deck pushes this one out while it's in use
+            store.withTable(new Deck(OTHER_UNSOLVABLE_DECK), DistanceTable::size);
+            assertThat(t.distance(State.INITIAL_STATE), is(equalTo(-1)));
+            return t;
+        });
+        try {
+            table.distance(State.INITIAL_STATE);
+        } catch (IllegalStateException e) {
+            return;
+        }
+        throw new AssertionError("The evicted table should be closed");
+    }
+
+    @Test
+    public void concurrentRequestsShareOneTable() throws Exception {
+        DistanceTableStore store = newStore(8, 16);
+        store.build(new Deck(UNSOLVABLE_DECK)).join();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<DistanceTable>> tables = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tables.add(executor.submit(() -> store.withTable(new Deck(UNSOLVABLE_DECK), t -> t)));
+            }
+            DistanceTable first = tables.get(0).get();
+            for (Future<DistanceTable> table : tables) {
+                assertThat(table.get(), is(sameInstance(first)));
+            }
+            assertThat(folder.getRoot().list().length, is(equalTo(1)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void tableIsBuiltInTheBackground() {
+        DistanceTableStore store = newStore(8, 16);
+        Deck deck = new Deck(SOLVABLE_DECK);
+        try {
+            store.withTable(deck, DistanceTable::size);
+            throw new AssertionError("The table shouldn't be built on the caller's thread");
+        } catch (DistanceTableNotReadyException e) {
+            // expected
+        }
+        store.build(deck).join();
+        assertThat(store.withTable(deck, t -> t.distance(State.INITIAL_STATE) > 0), is(true));
+    }
+
+    @Test
+    public void tableOverTheLimitIsNotBuilt() {
+        DistanceTableStore store = new DistanceTableStore(folder.getRoot().toPath(), 8, 1000, 60000, 16);
+        Deck deck = new Deck(SOLVABLE_DECK);
+        try {
+            store.build(deck).join();
+            throw new AssertionError("The build should run past the limit");
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), is(instanceOf(SearchLimitExceededException.class)));
+        }
+        try {
+            store.withTable(deck, DistanceTable::size);
+            throw new AssertionError("The deck shouldn't be built again");
+        } catch (SearchLimitExceededException e) {
+            // expected
+        }
+        assertThat(folder.getRoot().list().length, is(equalTo(0)));
+    }
+
+    @Test
+    public void tooManyWaitingBuildsAreRejected() {
+        DistanceTableStore store = newStore(8, 1);
+        // the first takes a while to build, the second waits for it, and
+        // there's no room for the third to wait
+        CompletableFuture<Void> first = store.build(new Deck(SOLVABLE_DECK));
+        CompletableFuture<Void> second = store.build(new Deck(UNSOLVABLE_DECK));
+        try {
+            store.build(new Deck(OTHER_UNSOLVABLE_DECK));
+            throw new AssertionError("The third build should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        } finally {
+            first.join();
+            second.join();
+        }
+        store.build(new Deck(OTHER_UNSOLVABLE_DECK)).join();
+        assertThat(folder.getRoot().list().length, is(equalTo(3)));
+    }
+
+    private DistanceTableStore newStore(int maxOpenTables, int maxQueuedBuilds) {
+        return new DistanceTableStore(folder.getRoot().toPath(), maxOpenTables, Long.MAX_VALUE, Long.MAX_VALUE / 2,
+                maxQueuedBuilds);
+    }
+}
@@ -0,0 +1,69 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class DistanceTableTest {
+    private static final String SOLVABLE_DECK = "Tc Ac Js 5d 2h 3h As Th Qd 7h 3c Td 8s Kh 6d Ks 5c 6h 9h 3d " +
+            "5h Jh Kc 8d Jd 8c 7d 7c 2d Qs 9s 2c 3s 7s Ah Ad 4h 6s 6c 4c 2s 4d Qh 9d Jc 4s Qc Ts Kd 5s 9c 8h";
+    private static final String UNSOLVABLE_DECK = "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c " +
+            "Qd Qh 4c 8h Ks 7d Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hintsClearTheBoardInTheFewestSteps() {
+        Deck deck = new Deck(SOLVABLE_DECK);
+        List<Solution> solutions = new BoardChallengeSolver().solve(deck);
+        DistanceTable table = DistanceTable.open(deck, folder.getRoot().toPath().resolve("solvable"));
+        int distance = table.distance(State.INITIAL_STATE);
+        assertThat(distance, is(equalTo(solutions.get(0).getSteps().size())));
+        long state = State.INITIAL_STATE;
+        for (int steps = distance; steps > 0; steps--) {
+            assertThat(table.distance(state), is(equalTo(steps)));
+            state = table.nextState(state);
+        }
+        assertThat(State.isPyramidClear(state), is(true));
+        assertThat(table.distance(state), is(equalTo(0)));
+        assertThat(table.nextAction(state), is(nullValue()));
+    }
+
+    @Test
+    public void tableIsReadBackFromTheFile() throws Exception {
+        Deck deck = new Deck(SOLVABLE_DECK);
+        Path file = folder.getRoot().toPath().resolve("solvable");
+        DistanceTable table = DistanceTable.open(deck, file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        DistanceTable reopened = DistanceTable.open(deck, file);
+        assertThat(Files.getLastModifiedTime(file).toMillis(), is(equalTo(modified)));
+        assertThat(reopened.size(), is(equalTo(table.size())));
+        long state = State.INITIAL_STATE;
+        while (table.distance(state) > 0) {
+            assertThat(reopened.distance(state), is(equalTo(table.distance(state))));
+            assertThat(reopened.nextAction(state), is(equalTo(table.nextAction(state))));
+            state = table.nextState(state);
+        }
+    }
+
+    @Test
+    public void unsolvableDeckHasNoHints() {
+        Deck deck = new Deck(UNSOLVABLE_DECK);
+        DistanceTable table = DistanceTable.open(deck, folder.getRoot().toPath().resolve("unsolvable"));
+        assertThat(table.size(), is(equalTo(0L)));
+        assertThat(table.distance(State.INITIAL_STATE), is(equalTo(-1)));
+        assertThat(table.nextState(State.INITIAL_STATE), is(equalTo(-1L)));
+        assertThat(table.nextAction(State.INITIAL_STATE), is(nullValue()));
+    }
+}
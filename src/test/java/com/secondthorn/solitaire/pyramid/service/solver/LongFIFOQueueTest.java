@@ -0,0 +1,143 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class LongFIFOQueueTest {
+    @Rule
+    public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    @Test
+    public void itemsComeOutInOrderAcrossSegments() {
+        LongFIFOQueue queue = new LongFIFOQueue(new LongSegmentPool(16, 4));
+        for (long i = 0; i < 1000; i++) {
+            queue.enqueue(i);
+        }
+        assertThat(queue.size(), is(equalTo(1000L)));
+        for (long i = 0; i < 1000; i++) {
+            assertThat(queue.dequeue(), is(equalTo(i)));
+        }
+        assertThat(queue.isEmpty(), is(true));
+    }
+
+    @Test
+    public void interleavedEnqueueAndDequeue() {
+        LongFIFOQueue queue = new LongFIFOQueue(new LongSegmentPool(8, 4));
+        long next = 0;
+        long expected = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < round % 13; i++) {
+                queue.enqueue(next++);
+            }
+            for (int i = 0; i < round % 7 && !queue.isEmpty(); i++) {
+                assertThat(queue.dequeue(), is(equalTo(expected++)));
+            }
+        }
+        while (!queue.isEmpty()) {
+            assertThat(queue.dequeue(), is(equalTo(expected++)));
+        }
+        assertThat(expected, is(equalTo(next)));
+    }
+
+    @Test
+    public void drainedSegmentsGoBackToThePool() {
+        LongSegmentPool pool = new LongSegmentPool(16, 100);
+        LongFIFOQueue queue = new LongFIFOQueue(pool);
+        for (long i = 0; i < 160; i++) {
+            queue.enqueue(i);
+        }
+        assertThat(pool.getNumFreeSegments(), is(equalTo(0)));
+        for (int i = 0; i < 80; i++) {
+            queue.dequeue();
+        }
+        assertThat(pool.getNumFreeSegments(), is(equalTo(5)));
+        while (!queue.isEmpty()) {
+            queue.dequeue();
+        }
+        assertThat(pool.getNumFreeSegments(), is(equalTo(10)));
+    }
+
+    @Test
+    public void spilledSegmentsAreReadBackInOrder() throws Exception {
+        LongSegmentPool pool = new LongSegmentPool(16, 100);
+        LongFIFOQueue queue = new LongFIFOQueue(pool, 3, spillDirectory.getRoot().toPath());
+        for (long i = 0; i < 10000; i++) {
+            queue.enqueue(i * 7);
+        }
+        // only a few segments are in memory, the rest were written to disk
+        assertThat(pool.getNumFreeSegments() <= 4, is(true));
+        for (long i = 0; i < 5000; i++) {
+            assertThat(queue.dequeue(), is(equalTo(i * 7)));
+        }
+        for (long i = 10000; i < 20000; i++) {
+            queue.enqueue(i * 7);
+        }
+        for (long i = 5000; i < 20000; i++) {
+            assertThat(queue.dequeue(), is(equalTo(i * 7)));
+        }
+        assertThat(queue.isEmpty(), is(true));
+    }
+
+    @Test
+    public void clearDeletesTheSpillFile() throws Exception {
+        LongSegmentPool pool = new LongSegmentPool(16, 100);
+        LongFIFOQueue queue = new LongFIFOQueue(pool, 3, spillDirectory.getRoot().toPath());
+        for (long i = 0; i < 10000; i++) {
+            queue.enqueue(i);
+        }
+        assertThat(queue.hasSpillFile(), is(true));
+        queue.clear();
+        assertThat(queue.isEmpty(), is(true));
+        assertThat(queue.hasSpillFile(), is(false));
+        queue.enqueue(5L);
+        assertThat(queue.dequeue(), is(equalTo(5L)));
+    }
+
+    @Test
+    public void failedSearchDeletesTheSpillFile() {
+        Deck deck = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+                "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+        LongFIFOQueue fringe = new LongFIFOQueue(new LongSegmentPool(16, 100), 3, spillDirectory.getRoot().toPath());
+        BreadthFirstSearch engine = new BreadthFirstSearch(d -> new HashSeenStateTable(), fringe);
+        SearchLimit limit = new SearchLimit(5000, 60000);
+        engine.setMoveGeneratorFactory(limit::limit);
+        try {
+            engine.search(deck, new Objective() {
+                @Override
+                public boolean isGoal(long state) {
+                    return false;
+                }
+
+                @Override
+                public boolean expand(long state, long[] successorMasks) {
+                    return true;
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return false;
+                }
+            });
+        } catch (SearchLimitExceededException e) {
+            assertThat(fringe.isEmpty(), is(true));
+            assertThat(fringe.hasSpillFile(), is(false));
+            return;
+        }
+        throw new AssertionError("The search should have run past its limit");
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void dequeueFromEmptyQueue() {
+        LongFIFOQueue queue = new LongFIFOQueue();
+        queue.enqueue(1L);
+        queue.dequeue();
+        queue.dequeue();
+    }
+}
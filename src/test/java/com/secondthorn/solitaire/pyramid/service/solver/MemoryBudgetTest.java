@@ -0,0 +1,75 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class MemoryBudgetTest {
+    @Test
+    public void defaultEstimateUntilRecorded() {
+        MemoryBudget budget = new MemoryBudget(1000L, 300L);
+        assertThat(budget.estimate("BoardChallenge"), is(equalTo(300L)));
+        SolverStats stats = new SolverStats();
+        stats.setSeenStates(10, 100L);
+        budget.record("BoardChallenge", stats);
+        assertThat(budget.estimate("BoardChallenge"), is(equalTo(150L)));
+        assertThat(budget.estimate("ScoreChallenge"), is(equalTo(300L)));
+    }
+
+    @Test
+    public void estimateForgetsOldPeaks() {
+        MemoryBudget budget = new MemoryBudget(1000L, 300L);
+        SolverStats hard = new SolverStats();
+        hard.setSeenStates(10, 600L);
+        budget.record("BoardChallenge", hard);
+        SolverStats easy = new SolverStats();
+        easy.setSeenStates(10, 10L);
+        for (int i = 0; i < 15; i++) {
+            budget.record("BoardChallenge", easy);
+        }
+        assertThat(budget.estimate("BoardChallenge"), is(equalTo(900L)));
+        budget.record("BoardChallenge", easy);
+        assertThat(budget.estimate("BoardChallenge"), is(equalTo(15L)));
+    }
+
+    @Test
+    public void reserveWithinBudget() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000L, 300L);
+        assertThat(budget.reserve(600L, 0L), is(equalTo(true)));
+        assertThat(budget.reserve(400L, 0L), is(equalTo(true)));
+        assertThat(budget.reserve(1L, 10L), is(equalTo(false)));
+        assertThat(budget.getNumRunning(), is(equalTo(2)));
+        budget.release(400L);
+        assertThat(budget.getNumReservedBytes(), is(equalTo(600L)));
+        assertThat(budget.reserve(400L, 0L), is(equalTo(true)));
+    }
+
+    @Test
+    public void reserveMoreThanBudgetWhenNothingRuns() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000L, 300L);
+        assertThat(budget.reserve(5000L, 0L), is(equalTo(true)));
+        assertThat(budget.reserve(1L, 0L), is(equalTo(false)));
+        budget.release(5000L);
+        assertThat(budget.getNumRunning(), is(equalTo(0)));
+    }
+
+    @Test
+    public void releaseWakesWaitingReserve() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1000L, 300L);
+        budget.reserve(800L, 0L);
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            budget.release(800L);
+        });
+        releaser.start();
+        assertThat(budget.reserve(500L, 10000L), is(equalTo(true)));
+        releaser.join();
+        assertThat(budget.getNumReservedBytes(), is(equalTo(500L)));
+    }
+}
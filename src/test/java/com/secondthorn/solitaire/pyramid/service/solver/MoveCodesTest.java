@@ -0,0 +1,65 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class MoveCodesTest {
+    private static final Deck DECK = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+    // a game with 45 cards left, small enough to search every state of
+    private static final long START_STATE = 0x1efffffd24fffffL;
+
+    @Test
+    public void everyMoveOfAFullSearchIsDecoded() {
+        MoveCodes moveCodes = new MoveCodes(DECK);
+        TLongHashSet seen = new TLongHashSet();
+        LongFIFOQueue fringe = new LongFIFOQueue();
+        seen.add(START_STATE);
+        fringe.enqueue(START_STATE);
+        int numWasteKingMoves = 0;
+        while (!fringe.isEmpty()) {
+            long state = fringe.dequeue();
+            for (long mask : DECK.getSuccessorMasks(state)) {
+                long nextState = State.adjustStockIndex(state ^ mask);
+                int code = moveCodes.encode(state, nextState);
+                assertThat(code, is(not(MoveCodes.NO_MOVE)));
+                assertThat(moveCodes.decode(nextState, code), is(equalTo(state)));
+                if (isWasteKingMove(state, nextState)) {
+                    numWasteKingMoves++;
+                }
+                if (seen.add(nextState)) {
+                    fringe.enqueue(nextState);
+                }
+            }
+        }
+        assertThat(numWasteKingMoves, is(greaterThan(0)));
+    }
+
+    @Test
+    public void initialStateHasNoMove() {
+        MoveCodes moveCodes = new MoveCodes(DECK);
+        assertThat(moveCodes.encode(-1, State.INITIAL_STATE), is(equalTo(MoveCodes.NO_MOVE)));
+        assertThat(moveCodes.decode(State.INITIAL_STATE, MoveCodes.NO_MOVE), is(equalTo(-1L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cardsNotAddingUpTo13HaveNoMove() {
+        MoveCodes moveCodes = new MoveCodes(DECK);
+        // the Th and Js aren't a pair
+        long state = State.create(0xFFFFFFFFFFFFCL, 28, 0);
+        moveCodes.encode(State.INITIAL_STATE, state);
+    }
+
+    // Return true if the move removes a king from the top of the waste pile.
+    private static boolean isWasteKingMove(long state, long nextState) {
+        long removed = State.getDeckFlags(state) & ~nextState;
+        int index = Long.numberOfTrailingZeros(removed);
+        return (Long.bitCount(removed) == 1) && (index >= 28) && (index != State.getStockIndex(state));
+    }
+}
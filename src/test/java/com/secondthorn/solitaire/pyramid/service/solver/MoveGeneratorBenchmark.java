@@ -0,0 +1,66 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Compares solving with Deck's table of successor masks against
+ * BitboardMoveGenerator, over the decks used in the unit tests.  Each deck
+ * is created fresh for every solve so the table build time is included.
+ * Run it with "gradle benchmark".
+ */
+public class MoveGeneratorBenchmark {
+    private static final String[] DECKS = {
+            "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc Ah Qh Tc 9s Kd 8s " +
+                    "4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad",
+            "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c Qd Qh 4c 8h Ks 7d " +
+                    "Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh",
+            "Tc Ac Js 5d 2h 3h As Th Qd 7h 3c Td 8s Kh 6d Ks 5c 6h 9h 3d 5h Jh Kc 8d Jd 8c " +
+                    "7d 7c 2d Qs 9s 2c 3s 7s Ah Ad 4h 6s 6c 4c 2s 4d Qh 9d Jc 4s Qc Ts Kd 5s 9c 8h",
+            "Kd Kc Qh Ah 7d 6d 8d 5d 9d 4d Td 3d Jd 2d Qd Ad 7c 6c 8c 5c 9c 4c Tc 3c Jc 2c " +
+                    "Qc Ac 6h 7h 5h 8h 4h 9h 3h Th 2h Jh Kh As 2s 3s 4s 5s 6s 7s 8s 9s Ts Js Qs Ks",
+            "As 5d 4s 7h 7s Kh 7d Tc 5c Qh 2d Kc 9c 6h Th 6s 5h Ks Jc 6c 2c 4h 8h 8s 7c Ac " +
+                    "Jh Js Kd Td 2s 9d 8c 6d Qc 9h 8d 3d 9s 2h 4d 3s 3c 3h Qd Ad Jd 5s 4c Ts Ah Qs",
+            "4s 4d 4h Ah As 4c Qh Qd Qc Ad Th Ts 3s Ac Qs Jc Jd Jh Js Tc Td 2c 2d 2h 2s 3c " +
+                    "3d 3h Kc Kd Kh Ks 5c 6c 7c 8c 9c 5d 6d 7d 8d 9d 5h 6h 7h 8h 9h 5s 6s 7s 8s 9s",
+            "Ac 2c 3c 4c 5c 6c 7c 8c 9c Tc Jc Qc Kc Ad 2d 3d 4d 5d 6d 7d 8d 9d Td Jd Qd Kd " +
+                    "Ah 2h 3h 4h 5h 6h 7h 8h 9h Th Jh Qh Kh As 2s 3s 4s 5s 6s 7s 8s 9s Ts Js Qs Ks"
+    };
+    private static final int NUM_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        run("board", BoardChallengeSolver::new);
+        run("score", ScoreChallengeSolver::new);
+        run("card", () -> new CardChallengeSolver(1, 'A'));
+    }
+
+    // Solve each deck with both move generators and print the fastest time
+    // out of NUM_ROUNDS for each.
+    private static void run(String name, Supplier<BFSSolver> solverFactory) {
+        long totalTableMillis = 0;
+        long totalBitboardMillis = 0;
+        for (String cards : DECKS) {
+            long tableMillis = bestMillis(solverFactory, cards, deck -> deck);
+            long bitboardMillis = bestMillis(solverFactory, cards, BitboardMoveGenerator::new);
+            System.out.printf("%-6s %s...  table: %6d ms  bitboard: %6d ms%n",
+                    name, cards.substring(0, 8), tableMillis, bitboardMillis);
+            totalTableMillis += tableMillis;
+            totalBitboardMillis += bitboardMillis;
+        }
+        System.out.printf("%-6s total        table: %6d ms  bitboard: %6d ms%n",
+                name, totalTableMillis, totalBitboardMillis);
+    }
+
+    private static long bestMillis(Supplier<BFSSolver> solverFactory, String cards,
+                                   Function<Deck, MoveGenerator> moveGeneratorFactory) {
+        long bestMillis = Long.MAX_VALUE;
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            long start = System.nanoTime();
+            BFSSolver solver = solverFactory.get();
+            solver.setMoveGeneratorFactory(moveGeneratorFactory);
+            solver.solve(new Deck(cards));
+            bestMillis = Math.min(bestMillis, (System.nanoTime() - start) / 1000000);
+        }
+        return bestMillis;
+    }
+}
@@ -0,0 +1,117 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class PartitionedSeenStateTableTest {
+    private static final Deck DECK = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+
+    @Test
+    public void parentsAreRecoveredFromMoves() {
+        PartitionedSeenStateTable table = new PartitionedSeenStateTable(DECK);
+        LongFIFOQueue fringe = new LongFIFOQueue();
+        table.put(State.INITIAL_STATE, -1);
+        fringe.enqueue(State.INITIAL_STATE);
+        int numStates = 1;
+        while (!fringe.isEmpty() && (numStates < 200000)) {
+            long state = fringe.dequeue();
+            for (long mask : DECK.getSuccessorMasks(state)) {
+                long nextState = State.adjustStockIndex(state ^ mask);
+                if (!table.containsKey(nextState)) {
+                    table.put(nextState, state);
+                    assertThat(table.getParent(nextState), is(equalTo(state)));
+                    fringe.enqueue(nextState);
+                    numStates++;
+                }
+            }
+        }
+        assertThat(table.size(), is(equalTo(numStates)));
+        assertThat(table.getParent(State.INITIAL_STATE), is(equalTo(-1L)));
+        assertThat(table.containsKey(State.create(0xFFFFFFFFFFFFFL, 52, 2)), is(equalTo(false)));
+    }
+
+    @Test
+    public void statesWithTheSameStockAreKeptApart() {
+        PartitionedSeenStateTable table = new PartitionedSeenStateTable(DECK);
+        long state = State.create(0xFFFFFFFFFFFFFL, 52, 1);
+        long otherState = State.create(0xFFFFFF7FFFFFFL, 52, 1);
+        table.put(state, -1);
+        assertThat(PartitionedSeenStateTable.partitionOf(state),
+                is(equalTo(Pyramid.indexOf(0xFFFFFFFL))));
+        assertThat(table.containsKey(state), is(equalTo(true)));
+        assertThat(table.containsKey(otherState), is(equalTo(false)));
+    }
+
+    @Test
+    public void solverFindsSameSolution() {
+        BoardChallengeSolver solver = new BoardChallengeSolver();
+        solver.setSeenStateTableFactory(PartitionedSeenStateTable::new);
+        List<Solution> solutions = solver.solve(DECK);
+        assertThat(solutions.size(), is(equalTo(1)));
+        assertThat(solutions.get(0).getSteps().size(), is(equalTo(44)));
+        assertThat(solutions.get(0).getScore(), is(equalTo(1275)));
+        assertThat(solver.getStats().getNumSeenStates(), is(greaterThan(0)));
+    }
+
+    @Test
+    public void pathThroughWasteKingIsRecovered() {
+        long startState = 0x1efffffd24fffffL;
+        PartitionedSeenStateTable table = new PartitionedSeenStateTable(DECK);
+        LongFIFOQueue fringe = new LongFIFOQueue();
+        table.put(startState, -1);
+        fringe.enqueue(startState);
+        long wasteKingState = -1;
+        while (wasteKingState == -1) {
+            long state = fringe.dequeue();
+            for (long mask : DECK.getSuccessorMasks(state)) {
+                long nextState = State.adjustStockIndex(state ^ mask);
+                if (isWasteKingMove(state, nextState)) {
+                    // replace the parent even if the state was reached
+                    // another way first
+                    table.put(nextState, state);
+                    wasteKingState = nextState;
+                    break;
+                }
+                if (!table.containsKey(nextState)) {
+                    table.put(nextState, state);
+                    fringe.enqueue(nextState);
+                }
+            }
+        }
+        assertThat(isWasteKingMove(table.getParent(wasteKingState), wasteKingState), is(equalTo(true)));
+        int numMoves = 0;
+        long state = wasteKingState;
+        while (state != startState) {
+            long parent = table.getParent(state);
+            assertThat(isSuccessor(parent, state), is(equalTo(true)));
+            state = parent;
+            numMoves++;
+        }
+        assertThat(numMoves, is(greaterThan(0)));
+        assertThat(table.getParent(startState), is(equalTo(-1L)));
+    }
+
+    // Return true if the move removes a king from the top of the waste pile.
+    private static boolean isWasteKingMove(long state, long nextState) {
+        long removed = State.getDeckFlags(state) & ~nextState;
+        int index = Long.numberOfTrailingZeros(removed);
+        return (Long.bitCount(removed) == 1) && (index >= 28) && (index != State.getStockIndex(state));
+    }
+
+    private static boolean isSuccessor(long state, long nextState) {
+        for (long mask : DECK.getSuccessorMasks(state)) {
+            if (State.adjustStockIndex(state ^ mask) == nextState) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
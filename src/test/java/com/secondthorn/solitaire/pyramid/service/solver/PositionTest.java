@@ -0,0 +1,73 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.exception.InvalidParameterException;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class PositionTest {
+    private static final Deck deck = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+            "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+
+    @Test
+    public void startOfTheGame() {
+        Position position = new Position("", "", 0);
+        position.validate(deck);
+        assertThat(position.toState(deck), is(equalTo(State.INITIAL_STATE)));
+    }
+
+    @Test
+    public void middleOfTheGame() {
+        // Kd, 9s, and 4s removed from the bottom row, a few cards drawn, and
+        // 5d removed with 8h
+        Position position = new Position("Kd 9s 4s 5d 8h", "6s", 1);
+        position.validate(deck);
+        long removedFlags = (1L << 24) | (1L << 23) | (1L << 26) | (1L << 34) | (1L << 32);
+        long expected = State.create(0xFFFFFFFFFFFFFL & ~removedFlags, 33, 1);
+        assertThat(position.toState(deck), is(equalTo(expected)));
+    }
+
+    @Test
+    public void emptyStockPile() {
+        Position position = new Position("", "none", 2);
+        position.validate(deck);
+        assertThat(State.getStockIndex(position.toState(deck)), is(equalTo(52)));
+        assertThat(State.getRecycleCount(position.toState(deck)), is(equalTo(2)));
+    }
+
+    @Test
+    public void positionFromState() {
+        long state = new Position("8h 5d 9s Kd 4s", "6s", 1).toState(deck);
+        Position position = Position.fromState(deck, state);
+        assertThat(position.getUriQuery(), is(equalTo("removedCards=9sKd4s8h5d&stockCard=6s&recycleCount=1&")));
+        assertThat(position.toState(deck), is(equalTo(state)));
+        assertThat(Position.fromState(deck, State.INITIAL_STATE).toState(deck), is(equalTo(State.INITIAL_STATE)));
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void coveredPyramidCard() {
+        new Position("Th", "", 0).validate(deck);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void unmatchedCard() {
+        new Position("Kd 9s", "", 0).validate(deck);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void stockCardRemoved() {
+        new Position("5d 8h", "5d", 0).validate(deck);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void stockCardInPyramid() {
+        new Position("", "Th", 0).validate(deck);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void tooManyRecycles() {
+        new Position("", "", 3).validate(deck);
+    }
+}
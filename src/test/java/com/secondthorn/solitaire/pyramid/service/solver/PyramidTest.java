@@ -29,6 +29,13 @@ public class PyramidTest {
                 .noneMatch(i -> !cardExists(i, pyramidFlags) && !allDescendantsAreRemoved(i, pyramidFlags));
     }
 
+    @Test
+    public void indexOfFindsEveryPyramidFlags() {
+        for (int i = 0; i < Pyramid.allPyramidFlags.length; i++) {
+            assertThat(Pyramid.indexOf(Pyramid.allPyramidFlags[i]), is(equalTo(i)));
+        }
+    }
+
     @Test
     public void allPyramidFlagsAreValid() {
         assertThat(Pyramid.allPyramidFlags.length, is(equalTo(1430)));
@@ -81,6 +88,21 @@ public class PyramidTest {
         }
     }
 
+    @Test
+    public void relatedPyramidFlagsAreValid() {
+        for (int i = 0; i < 28; i++) {
+            for (int j = 0; j < 28; j++) {
+                long flags = (1L << i) | (1L << j);
+                long unrelated = Pyramid.UNRELATED_CARD_MASKS[i] & Pyramid.UNRELATED_CARD_MASKS[j];
+                for (int k = 0; k < 28; k++) {
+                    boolean isRelated = !cardExists(k, unrelated);
+                    assertThat(cardExists(k, Pyramid.relatedPyramidFlags(flags)), is(equalTo(isRelated)));
+                }
+            }
+        }
+        assertThat(Pyramid.relatedPyramidFlags(0L), is(equalTo(0L)));
+    }
+
     static class PyramidLocation {
         // Pyramid indexes arranged in the order they are in pyramid flags.
         //             00
@@ -0,0 +1,69 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class QuickBoardChallengeSolverTest {
+    private static final String SOLVABLE_CARDS =
+            "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc Ah Qh Tc 9s Kd 8s " +
+            "4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+
+    @Test
+    public void solvableDeck() {
+        Deck deck = new Deck(SOLVABLE_CARDS);
+        List<Solution> solutions = new QuickBoardChallengeSolver().solve(deck);
+        assertThat(solutions.size(), is(equalTo(1)));
+        Solution solution = solutions.get(0);
+        assertThat(solution.getSteps().size(), is(greaterThanOrEqualTo(44)));
+        assertThat(solution.isBoardCleared(), is(equalTo(true)));
+        assertThat(solution.getDescription(), startsWith(QuickBoardChallengeSolver.PROVISIONAL));
+    }
+
+    @Test
+    public void solvableDeckFromMiddleOfGame() {
+        Deck deck = new Deck(SOLVABLE_CARDS);
+        QuickBoardChallengeSolver solver = new QuickBoardChallengeSolver();
+        long state = State.INITIAL_STATE;
+        for (int i = 0; i < 10; i++) {
+            state = State.adjustStockIndex(state ^ deck.getSuccessorMasks(state)[0]);
+        }
+        solver.setStartState(state);
+        List<Solution> solutions = solver.solve(deck);
+        assertThat(solutions.size(), is(equalTo(1)));
+        assertThat(solutions.get(0).isBoardCleared(), is(equalTo(true)));
+    }
+
+    @Test
+    public void deckSuccessorTableIsNotBuilt() {
+        Deck deck = new Deck(SOLVABLE_CARDS) {
+            @Override
+            public long[] getSuccessorMasks(long state) {
+                throw new AssertionError("The quick solver shouldn't build the deck's successor table");
+            }
+        };
+        List<Solution> solutions = new QuickBoardChallengeSolver().solve(deck);
+        assertThat(solutions.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void unsolvableDeck() {
+        String cards = "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c Qd Qh 4c 8h Ks 7d " +
+                "Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh";
+        Deck deck = new Deck(cards);
+        List<Solution> solutions = new QuickBoardChallengeSolver().solve(deck);
+        assertThat(solutions.size(), is(equalTo(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void beamWidthMustBePositive() {
+        new QuickBoardChallengeSolver(0);
+    }
+}
@@ -63,4 +63,19 @@ public class ScoreChallengeSolverTest {
         assertThat(solution.getDescription().contains("Goal reached."), is(equalTo(false)));
         assertThat(solution.getDescription(), is(equalTo("Get 1290 points in 29 steps while clearing the board.")));
     }
+
+    @Test
+    public void testForMaximumScoreOnUnclearableDeck() {
+        ScoreChallengeSolver solver = new ScoreChallengeSolver();
+        String cards = "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c Qd Qh 4c 8h Ks 7d " +
+                "Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh";
+        Deck deck = new Deck(cards);
+        List<Solution> solutions = solver.solve(deck);
+        assertThat(solutions.size(), is(equalTo(1)));
+        Solution solution = solutions.get(0);
+        assertThat(solution.getSteps().size(), is(equalTo(47)));
+        assertThat(solution.getScore(), is(equalTo(275)));
+        assertThat(solution.isBoardCleared(), is(equalTo(false)));
+        assertThat(solution.getDescription(), is(equalTo("Get 275 points in 47 steps without clearing the board.")));
+    }
 }
@@ -0,0 +1,147 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+public class SearchCheckpointTest {
+    private static final String CARDS =
+            "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+                    "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+    // a few pairs into the game, so the searches take a fraction of a second
+    private static final long START_STATE = 0x1efffffd24fffffL;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void boardChallengeResumesWithTheSameSolutions() throws Exception {
+        assertResumesWithTheSameSolutions(() -> startedSolver(new BoardChallengeSolver()));
+    }
+
+    @Test
+    public void scoreChallengeResumesWithTheSameSolutions() throws Exception {
+        assertResumesWithTheSameSolutions(() -> startedSolver(new ScoreChallengeSolver(1225)));
+    }
+
+    @Test
+    public void cardChallengeResumesWithTheSameSolutions() throws Exception {
+        assertResumesWithTheSameSolutions(() -> startedSolver(new CardChallengeSolver(4, 'J')));
+    }
+
+    @Test
+    public void checkpointIsDeletedWhenTheSearchFinishes() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("challenge.checkpoint");
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, 0);
+        SolverContext context = new SolverContext();
+        context.setCheckpoint(checkpoint);
+        BFSSolver solver = startedSolver(new BoardChallengeSolver());
+        solver.setSolverContext(context);
+        solver.solve(new Deck(CARDS));
+        assertThat(checkpoint.getNumWritten(), is(greaterThan(0)));
+        assertThat(checkpoint.isResumed(), is(false));
+        assertThat(Files.exists(file), is(false));
+    }
+
+    @Test
+    public void checkpointFromAnotherStartStateIsIgnored() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("challenge.checkpoint");
+        Deck deck = new Deck(CARDS);
+        interruptedSolve(startedSolver(new BoardChallengeSolver()), file, deck);
+        long startState = State.adjustStockIndex(START_STATE ^ deck.getSuccessorMasks(START_STATE)[0]);
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, Long.MAX_VALUE);
+        SolverContext context = new SolverContext();
+        context.setCheckpoint(checkpoint);
+        BoardChallengeSolver solver = new BoardChallengeSolver();
+        solver.setStartState(startState);
+        solver.setSolverContext(context);
+        BoardChallengeSolver expectedSolver = new BoardChallengeSolver();
+        expectedSolver.setStartState(startState);
+        assertSameSolutions(solver.solve(deck), expectedSolver.solve(deck));
+        assertThat(checkpoint.isResumed(), is(false));
+    }
+
+    @Test
+    public void otherWritersTemporaryFileIsLeftAlone() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("challenge.checkpoint");
+        // what another worker sharing the directory might be in the middle of writing
+        Path otherTempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        byte[] otherContents = {1, 2, 3};
+        Files.write(otherTempFile, otherContents);
+        interruptedSolve(startedSolver(new BoardChallengeSolver()), file, new Deck(CARDS));
+        assertThat(Files.readAllBytes(otherTempFile), is(equalTo(otherContents)));
+        assertThat(folder.getRoot().list().length, is(equalTo(2)));
+    }
+
+    private static BFSSolver startedSolver(BFSSolver solver) {
+        solver.setStartState(START_STATE);
+        return solver;
+    }
+
+    // Stop a search partway through with checkpoints written at every layer
+    // it can, then resume it with a new solver and check the solutions are
+    // the same as from a search that ran all the way through.
+    private void assertResumesWithTheSameSolutions(Supplier<BFSSolver> solverFactory) throws Exception {
+        Path file = folder.getRoot().toPath().resolve("challenge.checkpoint");
+        Deck deck = new Deck(CARDS);
+        interruptedSolve(solverFactory.get(), file, deck);
+        assertThat(Files.exists(file), is(true));
+
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, Long.MAX_VALUE);
+        SolverContext context = new SolverContext();
+        context.setCheckpoint(checkpoint);
+        BFSSolver solver = solverFactory.get();
+        solver.setSolverContext(context);
+        List<Solution> solutions = solver.solve(deck);
+        assertThat(checkpoint.isResumed(), is(true));
+        assertThat(Files.exists(file), is(false));
+        assertSameSolutions(solutions, solverFactory.get().solve(deck));
+    }
+
+    // Run the solver until its move generator has been called a few thousand
+    // times, then throw, leaving the last checkpoint behind.
+    private void interruptedSolve(BFSSolver solver, Path file, Deck deck) {
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, 0);
+        SolverContext context = new SolverContext();
+        context.setCheckpoint(checkpoint);
+        solver.setSolverContext(context);
+        int[] numCalls = {0};
+        solver.setMoveGeneratorFactory(d -> state -> {
+            if (++numCalls[0] > 5000) {
+                throw new IllegalStateException("Stopped");
+            }
+            return d.getSuccessorMasks(state);
+        });
+        String message = null;
+        try {
+            solver.solve(deck);
+        } catch (IllegalStateException e) {
+            message = e.getMessage();
+        }
+        assertThat(message, is(equalTo("Stopped")));
+        assertThat(checkpoint.getNumWritten(), is(greaterThan(0)));
+    }
+
+    private static void assertSameSolutions(List<Solution> actual, List<Solution> expected) {
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getDescription(), is(equalTo(expected.get(i).getDescription())));
+            assertThat(actual.get(i).getSteps().size(), is(equalTo(expected.get(i).getSteps().size())));
+            for (int j = 0; j < expected.get(i).getSteps().size(); j++) {
+                assertThat(actual.get(i).getSteps().get(j).getAction(),
+                        is(equalTo(expected.get(i).getSteps().get(j).getAction())));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SearchLimitTest {
+    private static final String CARDS =
+            "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+                    "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+    // a few pairs into the game, so the searches take a fraction of a second
+    private static final long START_STATE = 0x1efffffd24fffffL;
+
+    @Test
+    public void solveWithinTheLimitFindsTheSameSolutions() {
+        Deck deck = new Deck(CARDS);
+        SearchLimit limit = new SearchLimit(1000000, 60000);
+        List<Solution> solutions = limitedSolver(new BoardChallengeSolver(), limit).solve(deck);
+        BFSSolver expectedSolver = new BoardChallengeSolver();
+        expectedSolver.setStartState(START_STATE);
+        assertSameSolutions(solutions, expectedSolver.solve(deck));
+        assertThat(limit.getNumStates(), is(greaterThan(0L)));
+    }
+
+    @Test(expected = SearchLimitExceededException.class)
+    public void solvePastTheStateLimitThrows() {
+        limitedSolver(new BoardChallengeSolver(), new SearchLimit(1000, 60000)).solve(new Deck(CARDS));
+    }
+
+    @Test
+    public void stateLimitStopsTheSearchRightAway() {
+        SearchLimit limit = new SearchLimit(1000, 60000);
+        try {
+            limitedSolver(new ScoreChallengeSolver(1225), limit).solve(new Deck(CARDS));
+        } catch (SearchLimitExceededException e) {
+            // expected
+        }
+        assertThat(limit.getNumStates(), is(equalTo(1001L)));
+    }
+
+    @Test(expected = SearchLimitExceededException.class)
+    public void solvePastTheTimeLimitThrows() {
+        BFSSolver solver = new CardChallengeSolver(4, 'J');
+        solver.setSolverContext(limitedContext(new SearchLimit(Long.MAX_VALUE, 0)));
+        solver.solve(new Deck(CARDS));
+    }
+
+    @Test
+    public void limitCoversEverySearchInTheSolve() {
+        SearchLimit limit = new SearchLimit(1000000, 60000);
+        limitedSolver(new BoardChallengeSolver(), limit).solve(new Deck(CARDS));
+        long numStates = limit.getNumStates();
+        limitedSolver(new BoardChallengeSolver(), limit).solve(new Deck(CARDS));
+        assertThat(limit.getNumStates(), is(equalTo(2 * numStates)));
+        assertThat(limit.getNumStates(), is(lessThanOrEqualTo(1000000L)));
+    }
+
+    private static BFSSolver limitedSolver(BFSSolver solver, SearchLimit limit) {
+        solver.setStartState(START_STATE);
+        solver.setSolverContext(limitedContext(limit));
+        return solver;
+    }
+
+    private static SolverContext limitedContext(SearchLimit limit) {
+        SolverContext context = new SolverContext(16);
+        context.setSearchLimit(limit);
+        return context;
+    }
+
+    private static void assertSameSolutions(List<Solution> actual, List<Solution> expected) {
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getDescription(), is(equalTo(expected.get(i).getDescription())));
+            assertThat(actual.get(i).getSteps().size(), is(equalTo(expected.get(i).getSteps().size())));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SolverContextTest {
+    private static final String[] DECKS = {
+            "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+                    "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad",
+            "Tc Ac Js 5d 2h 3h As Th Qd 7h 3c Td 8s Kh 6d Ks 5c 6h 9h 3d " +
+                    "5h Jh Kc 8d Jd 8c 7d 7c 2d Qs 9s 2c 3s 7s Ah Ad 4h 6s 6c 4c 2s 4d Qh 9d Jc 4s Qc Ts Kd 5s 9c 8h"
+    };
+
+    @Test
+    public void reusedMemoryFindsTheSameSolutions() {
+        SolverContext context = new SolverContext();
+        for (int round = 0; round < 2; round++) {
+            for (String cards : DECKS) {
+                Deck deck = new Deck(cards);
+                BoardChallengeSolver solver = new BoardChallengeSolver();
+                solver.setSolverContext(context);
+                assertSameSolutions(solver.solve(deck), new BoardChallengeSolver().solve(deck));
+                CardChallengeSolver cardSolver = new CardChallengeSolver(3, '7');
+                cardSolver.setSolverContext(context);
+                cardSolver.setSeenStateTableFactory(d -> context.hashSeenStateTable());
+                assertSameSolutions(cardSolver.solve(deck), new CardChallengeSolver(3, '7').solve(deck));
+            }
+        }
+    }
+
+    @Test
+    public void stateLogIsClearedAndReused() {
+        SolverContext context = new SolverContext(16);
+        StateLog log = context.stateLog();
+        log.add(State.INITIAL_STATE, -1);
+        assertThat(context.stateLog(), is(sameInstance(log)));
+        assertThat(log.size(), is(equalTo(0)));
+        assertThat(log.offsetOf(State.INITIAL_STATE), is(equalTo(-1)));
+        context.release();
+        assertThat(context.stateLog(), is(not(sameInstance(log))));
+    }
+
+    @Test
+    public void hashSeenStateTableIsClearedAndReused() {
+        SolverContext context = new SolverContext();
+        HashSeenStateTable table = context.hashSeenStateTable();
+        table.put(State.INITIAL_STATE, -1);
+        assertThat(context.hashSeenStateTable(), is(sameInstance(table)));
+        assertThat(table.size(), is(equalTo(0)));
+        assertThat(table.containsKey(State.INITIAL_STATE), is(false));
+    }
+
+    private static void assertSameSolutions(List<Solution> actual, List<Solution> expected) {
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        for (int i = 0; i < actual.size(); i++) {
+            assertThat(actual.get(i).getDescription(), is(equalTo(expected.get(i).getDescription())));
+            assertThat(actual.get(i).getSteps().size(), is(equalTo(expected.get(i).getSteps().size())));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class StateLogTest {
+    @Test
+    public void statesKeepTheirOrder() {
+        StateLog log = new StateLog();
+        for (int i = 0; i < 100000; i++) {
+            assertThat(log.add(i * 31L, i - 1), is(equalTo(i)));
+        }
+        assertThat(log.size(), is(equalTo(100000)));
+        for (int i = 0; i < 100000; i++) {
+            assertThat(log.getState(i), is(equalTo(i * 31L)));
+            assertThat(log.getParentOffset(i), is(equalTo(i - 1)));
+            assertThat(log.offsetOf(i * 31L), is(equalTo(i)));
+        }
+    }
+
+    @Test
+    public void duplicatesAreNotAdded() {
+        StateLog log = new StateLog();
+        assertThat(log.add(State.INITIAL_STATE, -1), is(equalTo(0)));
+        assertThat(log.add(State.INITIAL_STATE, 0), is(equalTo(-1)));
+        assertThat(log.size(), is(equalTo(1)));
+        assertThat(log.getParentOffset(0), is(equalTo(-1)));
+        assertThat(log.offsetOf(State.INITIAL_STATE ^ 1L), is(equalTo(-1)));
+    }
+
+    @Test
+    public void searchFindsSameSolutionAsBreadthFirstSearch() {
+        Deck deck = new Deck("Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc " +
+                "Ah Qh Tc 9s Kd 8s 4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad");
+        StateLogSearch logSearch = new StateLogSearch();
+        BreadthFirstSearch breadthFirstSearch = new BreadthFirstSearch();
+        long goalState = logSearch.search(deck, new ClearObjective());
+        long expectedGoalState = breadthFirstSearch.search(deck, new ClearObjective());
+        assertThat(goalState, is(equalTo(expectedGoalState)));
+        assertThat(logSearch.getPath(goalState), is(equalTo(breadthFirstSearch.getPath(expectedGoalState))));
+        assertThat(logSearch.getStats().getNumSeenStates(),
+                is(equalTo(breadthFirstSearch.getStats().getNumSeenStates())));
+    }
+
+    private static class ClearObjective implements Objective {
+        @Override
+        public boolean isGoal(long state) {
+            return State.isPyramidClear(state);
+        }
+
+        @Override
+        public boolean expand(long state, long[] successorMasks) {
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+    }
+}
@@ -60,6 +60,17 @@ public class StateTest {
     @Test
     public void adjustStockIndex() {
         assertThat(State.adjustStockIndex(unadjustedState(0x0L, 28, 2)), is(equalTo(END_STATE)));
+        assertThat(State.adjustStockIndex(FULL_STATE), is(equalTo(FULL_STATE)));
+        // cards 28-30 and 41 removed, the next card at or above the stock index is 31
+        long deckFlags = FULL_DECK_FLAGS & ~(0b111L << 28) & ~(1L << 41);
+        assertThat(State.adjustStockIndex(unadjustedState(deckFlags, 28, 1)),
+                is(equalTo(unadjustedState(deckFlags, 31, 1))));
+        assertThat(State.adjustStockIndex(unadjustedState(deckFlags, 41, 1)),
+                is(equalTo(unadjustedState(deckFlags, 42, 1))));
+        // only cards below the stock index remain in the stock/waste piles
+        long wasteOnlyFlags = FULL_DECK_FLAGS & ~(0xFFFFL << 36);
+        assertThat(State.adjustStockIndex(unadjustedState(wasteOnlyFlags, 40, 0)),
+                is(equalTo(unadjustedState(wasteOnlyFlags, 52, 0))));
     }
 
     @Test
@@ -0,0 +1,54 @@
+package com.secondthorn.solitaire.pyramid.service.solver;
+
+import com.secondthorn.solitaire.pyramid.service.model.Solution;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class WinnableChallengeSolverTest {
+    @Test
+    public void winnableDeck() {
+        String cards = "Th Js Jh 9c Qd 5c 2d 9h Td 4h Qs 9d 3s 8d Kh 6c 3h 6d 8c Kc Ah Qh Tc 9s Kd 8s " +
+                "4s 2c 4c Jc 7c Jd 8h 6s 5d 3c 4d 3d 6h Ts 5s Ks 7d Ac 7s 2s Qc 2h 5h As 7h Ad";
+        Deck deck = new Deck(cards);
+        List<Solution> solutions = new WinnableChallengeSolver().solve(deck);
+        assertThat(solutions.size(), is(equalTo(1)));
+        Solution solution = solutions.get(0);
+        assertThat(solution.getSteps().size(), is(greaterThanOrEqualTo(44)));
+        assertThat(solution.isBoardCleared(), is(equalTo(true)));
+        assertThat(solution.getDescription(), startsWith(WinnableChallengeSolver.WINNABLE));
+    }
+
+    @Test
+    public void unwinnableDeckWithoutSearching() {
+        String cards = "2d 9s 7c 5d 2s Qc Jd 5c Jc Td 4s 6s 8c 8s Jh 5h As Js 6d 2c Qd Qh 4c 8h Ks 7d " +
+                "Ah 4d 9h 3d 5s 4h Th Ad 3s 8d Ts Tc 9d Kc 7h Kd 6h Qs 2h Ac 7s 6c 3c 3h 9c Kh";
+        WinnableChallengeSolver solver = new WinnableChallengeSolver();
+        assertUnwinnable(solver.solve(new Deck(cards)));
+        assertThat(solver.getStats().getNumGeneratedStates(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void unwinnableDeckAfterSearching() {
+        String cards = "As 5d 4s 7h 7s Kh 7d Tc 5c Qh 2d Kc 9c 6h Th 6s 5h Ks Jc 6c 2c 4h 8h 8s 7c Ac " +
+                "Jh Js Kd Td 2s 9d 8c 6d Qc 9h 8d 3d 9s 2h 4d 3s 3c 3h Qd Ad Jd 5s 4c Ts Ah Qs";
+        WinnableChallengeSolver solver = new WinnableChallengeSolver();
+        assertUnwinnable(solver.solve(new Deck(cards)));
+        assertThat(solver.getStats().getNumGeneratedStates(), is(greaterThan(0L)));
+    }
+
+    private void assertUnwinnable(List<Solution> solutions) {
+        assertThat(solutions.size(), is(equalTo(1)));
+        Solution solution = solutions.get(0);
+        assertThat(solution.getSteps().size(), is(equalTo(1)));
+        assertThat(solution.getSteps().get(0).getAction(), is(equalTo("Ask for a New Deal")));
+        assertThat(solution.isBoardCleared(), is(equalTo(false)));
+    }
+}